@@ -0,0 +1,228 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Pool of reusable render-target bitmaps, bucketed by exact size and config.
+ * Pages of one document almost always share a size, so a fling settles into reusing
+ * the same few bitmaps instead of allocating and recycling one per page.
+ * The pool holds at most maxBytes of idle bitmaps; anything beyond that is recycled.
+ */
+public class BitmapPool {
+
+    private static BitmapPool instance;
+
+    private final Map<BucketKey, ArrayDeque<Bitmap>> buckets = new HashMap<>();
+    // Every pooled bitmap in release order, oldest first, used for trimming
+    private final ArrayDeque<Bitmap> releaseOrder = new ArrayDeque<>();
+    private long maxBytes;
+    private long sizeBytes;
+
+    private long allocationCount;
+    private long reuseCount;
+    private long returnCount;
+    private long discardCount;
+
+    /**
+     * Get the process-wide pool, sized by the {@link MemoryGovernor} on first use
+     */
+    public static synchronized BitmapPool getInstance(Context context) {
+        if (instance == null) {
+            instance = new BitmapPool(MemoryGovernor.getInstance(context).getBitmapPoolBytes());
+        }
+        return instance;
+    }
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a mutable ARGB_8888 bitmap of exactly this size, erased to white and ready to render into
+     */
+    @NonNull
+    public Bitmap acquire(int width, int height) {
+        return acquire(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    @NonNull
+    public Bitmap acquire(int width, int height, @NonNull Bitmap.Config config) {
+        Bitmap bitmap = acquireForOverwrite(width, height, config);
+        // PdfRenderer draws on top of existing content, so wipe the previous page
+        bitmap.eraseColor(Color.WHITE);
+        return bitmap;
+    }
+
+    /**
+     * Like {@link #acquire(int, int)} but skips erasing, for callers that replace every pixel
+     */
+    @NonNull
+    public Bitmap acquireForOverwrite(int width, int height) {
+        return acquireForOverwrite(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    @NonNull
+    private Bitmap acquireForOverwrite(int width, int height, @NonNull Bitmap.Config config) {
+        Bitmap bitmap = null;
+        synchronized (this) {
+            ArrayDeque<Bitmap> bucket = buckets.get(new BucketKey(width, height, config));
+            if (bucket != null && !bucket.isEmpty()) {
+                bitmap = bucket.pollLast();
+                releaseOrder.removeLastOccurrence(bitmap);
+                sizeBytes -= bitmap.getAllocationByteCount();
+                reuseCount++;
+            } else {
+                allocationCount++;
+            }
+        }
+
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Hand a bitmap back for reuse. The caller must no longer draw or display it.
+     */
+    public synchronized void release(@NonNull Bitmap bitmap) {
+        if (bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || bitmap.getAllocationByteCount() > maxBytes) {
+            discardCount++;
+            bitmap.recycle();
+            return;
+        }
+
+        BucketKey key = new BucketKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque<Bitmap> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(key, bucket);
+        }
+        bucket.addLast(bitmap);
+        releaseOrder.addLast(bitmap);
+        sizeBytes += bitmap.getAllocationByteCount();
+        returnCount++;
+
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Recycle idle bitmaps, oldest first, until the pool holds at most targetBytes
+     * @return number of bytes freed
+     */
+    public synchronized long trimToSize(long targetBytes) {
+        long freed = 0;
+        while (sizeBytes > targetBytes && !releaseOrder.isEmpty()) {
+            Bitmap bitmap = releaseOrder.pollFirst();
+            BucketKey key = new BucketKey(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            ArrayDeque<Bitmap> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.removeFirstOccurrence(bitmap);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+            int bytes = bitmap.getAllocationByteCount();
+            sizeBytes -= bytes;
+            freed += bytes;
+            discardCount++;
+            bitmap.recycle();
+        }
+        return freed;
+    }
+
+    /**
+     * Recycle every idle bitmap
+     */
+    public synchronized long trim() {
+        return trimToSize(0);
+    }
+
+    /**
+     * Change the hard cap, trimming immediately if the pool is now over it
+     */
+    public synchronized void resize(long newMaxBytes) {
+        maxBytes = newMaxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Number of acquire calls that had to allocate a new bitmap
+     */
+    public synchronized long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Number of acquire calls served from the pool
+     */
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    public synchronized long getReturnCount() {
+        return returnCount;
+    }
+
+    public synchronized long getDiscardCount() {
+        return discardCount;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        int bitmaps = 0;
+        Iterator<ArrayDeque<Bitmap>> it = buckets.values().iterator();
+        while (it.hasNext()) {
+            bitmaps += it.next().size();
+        }
+        return String.format("BitmapPool[size=%dKB, max=%dKB, idle=%d, allocations=%d, reuses=%d, discards=%d]",
+                sizeBytes / 1024, maxBytes / 1024, bitmaps, allocationCount, reuseCount, discardCount);
+    }
+
+    private static final class BucketKey {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+
+        BucketKey(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BucketKey)) return false;
+            BucketKey that = (BucketKey) o;
+            return width == that.width && height == that.height && config == that.config;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + (config != null ? config.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of rendered pages under the app cache dir, one file per document fingerprint.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   header  magic "JRPC", version, document page count, slot count           4 x int
+ *   slots   slotCount x { pageIndex, scaleBits, width, height,
+ *                         pageWidthPt, pageHeightPt, dataOffset (long), dataLength }
+ *   data    raw ARGB_8888 pixels of each entry, appended
+ * </pre>
+ * Entries are read by memory-mapping their data region and copying it straight into a pooled
+ * bitmap, and written by mapping a fresh region at the end of the file. The cache is capped in
+ * bytes and evicts whole documents, least recently used first.
+ */
+public class DiskPageCache {
+
+    private static final int MAGIC = 0x4a525043; // "JRPC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 36;
+    // Room for a full-quality and a preview render of every page, within reason
+    private static final int SLOTS_PER_PAGE = 2;
+    private static final int MAX_SLOTS = 8192;
+    private static final int MAX_OPEN_FILES = 4;
+    private static final String DIRECTORY = "pages";
+    private static final String SUFFIX = ".pages";
+    private static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+    // Touch a file for LRU at most this often, not on every read
+    private static final long TOUCH_INTERVAL_MS = 60 * 1000;
+
+    private static DiskPageCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, PageFile> openFiles = new LinkedHashMap<>(8, 0.75f, true);
+    private long sizeBytes = -1;
+
+    public static synchronized DiskPageCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY);
+            // Never take more than a tenth of the free space
+            long maxBytes = Math.min(DEFAULT_MAX_BYTES, directory.getParentFile().getUsableSpace() / 10);
+            instance = new DiskPageCache(directory, maxBytes);
+        }
+        return instance;
+    }
+
+    public DiskPageCache(@NonNull File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Read a cached page into a pooled bitmap.
+     * @param pageSizeOut if not null, receives the page width and height in points
+     * @return the bitmap, owned by the caller, or null if the page is not cached
+     */
+    @Nullable
+    public Bitmap read(@NonNull String fingerprint, @NonNull PageKey key, @NonNull BitmapPool pool,
+                       @Nullable int[] pageSizeOut) {
+        Slot slot;
+        FileChannel channel;
+        synchronized (this) {
+            PageFile pageFile = openFile(fingerprint, 0);
+            if (pageFile == null) return null;
+            slot = pageFile.slots.get(slotKey(key));
+            if (slot == null) return null;
+            channel = pageFile.channel;
+            pageFile.touch();
+        }
+
+        Bitmap bitmap = pool.acquireForOverwrite(slot.width, slot.height);
+        try {
+            MappedByteBuffer pixels = channel.map(FileChannel.MapMode.READ_ONLY, slot.offset, slot.length);
+            bitmap.copyPixelsFromBuffer(pixels);
+        } catch (IOException | RuntimeException e) {
+            // Evicted meanwhile, or a damaged file
+            e.printStackTrace();
+            pool.release(bitmap);
+            return null;
+        }
+        if (pageSizeOut != null) {
+            pageSizeOut[0] = slot.pageWidth;
+            pageSizeOut[1] = slot.pageHeight;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Store a rendered page. The bitmap is only read and stays owned by the caller.
+     * @param pageCount page count of the document, kept in the file header
+     */
+    public void write(@NonNull String fingerprint, int pageCount, @NonNull PageKey key,
+                      @NonNull Bitmap bitmap, int pageWidth, int pageHeight) {
+        if (key.isTile() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) return;
+
+        int length = bitmap.getByteCount();
+        PageFile pageFile;
+        Slot slot;
+        synchronized (this) {
+            pageFile = openFile(fingerprint, pageCount);
+            if (pageFile == null || pageFile.slots.containsKey(slotKey(key))
+                    || pageFile.usedSlots >= pageFile.slotCount) {
+                return;
+            }
+            // Reserve the slot and data region; the slot is published once the data is written
+            slot = new Slot(pageFile.usedSlots++, key.getPageIndex(), Float.floatToIntBits(key.getScale()),
+                    bitmap.getWidth(), bitmap.getHeight(), pageWidth, pageHeight, pageFile.end, length);
+            pageFile.end += length;
+            sizeBytes += length;
+        }
+
+        try {
+            MappedByteBuffer out = pageFile.channel.map(FileChannel.MapMode.READ_WRITE, slot.offset, length);
+            bitmap.copyPixelsToBuffer(out);
+            pageFile.writeSlot(slot);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            synchronized (this) {
+                release(fingerprint, pageFile, slot);
+            }
+            return;
+        }
+
+        synchronized (this) {
+            pageFile.slots.put(slotKey(key), slot);
+            if (sizeBytes > maxBytes) {
+                trimToSize(maxBytes * 9 / 10, fingerprint);
+            }
+        }
+    }
+
+    /**
+     * Give back the reservation of a write that failed. Only the last one can be: one with later
+     * reservations stays a hole, which open() skips. Caller holds the lock.
+     */
+    private void release(String fingerprint, PageFile pageFile, Slot slot) {
+        // Evicted meanwhile: its size is accounted for already
+        if (openFiles.get(fingerprint) != pageFile) return;
+        if (pageFile.usedSlots != slot.index + 1 || pageFile.end != slot.offset + slot.length) return;
+        pageFile.usedSlots--;
+        pageFile.end = slot.offset;
+        sizeBytes -= slot.length;
+        try {
+            // Mapping the region may have grown the file already
+            if (pageFile.channel.size() > slot.offset) {
+                pageFile.channel.truncate(slot.offset);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Page count recorded for a document, or 0 if it has never been cached
+     */
+    public synchronized int readPageCount(@NonNull String fingerprint) {
+        PageFile pageFile = openFile(fingerprint, 0);
+        return pageFile != null ? pageFile.pageCount : 0;
+    }
+
+    /**
+     * Forget everything cached for a document, e.g. because it changed on disk
+     */
+    public synchronized void remove(@NonNull String fingerprint) {
+        deleteFile(new File(directory, fingerprint + SUFFIX));
+    }
+
+    /**
+     * Delete least recently used documents until the cache holds at most targetBytes
+     * @return number of bytes freed
+     */
+    public synchronized long trimToSize(long targetBytes) {
+        return trimToSize(targetBytes, null);
+    }
+
+    public synchronized long getSizeBytes() {
+        ensureSizeKnown();
+        return sizeBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private long trimToSize(long targetBytes, @Nullable String keepFingerprint) {
+        ensureSizeKnown();
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+
+        // Oldest first
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long freed = 0;
+        for (File file : files) {
+            if (sizeBytes <= targetBytes) break;
+            if (keepFingerprint != null && file.getName().equals(keepFingerprint + SUFFIX)) continue;
+            freed += deleteFile(file);
+        }
+        return freed;
+    }
+
+    private long deleteFile(File file) {
+        String name = file.getName();
+        if (name.endsWith(SUFFIX)) {
+            PageFile open = openFiles.remove(name.substring(0, name.length() - SUFFIX.length()));
+            if (open != null) {
+                open.close();
+            }
+        }
+        long length = file.length();
+        if (file.delete() && sizeBytes >= 0) {
+            sizeBytes -= length;
+            return length;
+        }
+        return 0;
+    }
+
+    private void ensureSizeKnown() {
+        if (sizeBytes >= 0) return;
+        sizeBytes = 0;
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            sizeBytes += file.length();
+        }
+    }
+
+    /**
+     * Open the document's file, creating it if pageCount is known. Caller holds the lock.
+     */
+    @Nullable
+    private PageFile openFile(String fingerprint, int pageCount) {
+        PageFile pageFile = openFiles.get(fingerprint);
+        if (pageFile != null) return pageFile;
+
+        ensureSizeKnown();
+        File file = new File(directory, fingerprint + SUFFIX);
+        try {
+            if (file.exists()) {
+                pageFile = PageFile.open(file);
+            } else if (pageCount > 0) {
+                if (!directory.isDirectory() && !directory.mkdirs()) return null;
+                pageFile = PageFile.create(file, pageCount);
+                sizeBytes += pageFile.end;
+            } else {
+                return null;
+            }
+        } catch (IOException e) {
+            // Unreadable or from an older format: start over
+            e.printStackTrace();
+            deleteFile(file);
+            return null;
+        }
+
+        openFiles.put(fingerprint, pageFile);
+        if (openFiles.size() > MAX_OPEN_FILES) {
+            Iterator<Map.Entry<String, PageFile>> eldest = openFiles.entrySet().iterator();
+            eldest.next().getValue().close();
+            eldest.remove();
+        }
+        return pageFile;
+    }
+
+    private static long slotKey(PageKey key) {
+        return ((long) key.getPageIndex() << 32) | (Float.floatToIntBits(key.getScale()) & 0xffffffffL);
+    }
+
+    private static final class Slot {
+        final int index;
+        final int pageIndex;
+        final int scaleBits;
+        final int width;
+        final int height;
+        final int pageWidth;
+        final int pageHeight;
+        final long offset;
+        final int length;
+
+        Slot(int index, int pageIndex, int scaleBits, int width, int height,
+             int pageWidth, int pageHeight, long offset, int length) {
+            this.index = index;
+            this.pageIndex = pageIndex;
+            this.scaleBits = scaleBits;
+            this.width = width;
+            this.height = height;
+            this.pageWidth = pageWidth;
+            this.pageHeight = pageHeight;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * One document's cache file with its slot index loaded into memory
+     */
+    private static final class PageFile {
+        final File file;
+        final RandomAccessFile randomAccessFile;
+        final FileChannel channel;
+        final int pageCount;
+        final int slotCount;
+        final Map<Long, Slot> slots = new HashMap<>();
+        int usedSlots;
+        long end;
+        long lastTouched;
+
+        private PageFile(File file, RandomAccessFile randomAccessFile, int pageCount, int slotCount) {
+            this.file = file;
+            this.randomAccessFile = randomAccessFile;
+            this.channel = randomAccessFile.getChannel();
+            this.pageCount = pageCount;
+            this.slotCount = slotCount;
+            this.end = HEADER_BYTES + (long) slotCount * SLOT_BYTES;
+        }
+
+        static PageFile create(File file, int pageCount) throws IOException {
+            int slotCount = (int) Math.min(MAX_SLOTS, (long) pageCount * SLOTS_PER_PAGE);
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            PageFile pageFile = new PageFile(file, randomAccessFile, pageCount, slotCount);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(pageCount).putInt(slotCount);
+            header.flip();
+            pageFile.channel.write(header, 0);
+            // Zero-filled slot table: a slot with zero length is free
+            randomAccessFile.setLength(pageFile.end);
+            pageFile.lastTouched = System.currentTimeMillis();
+            return pageFile;
+        }
+
+        static PageFile open(File file) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Not a page cache file: " + file);
+                }
+                int pageCount = header.getInt();
+                int slotCount = header.getInt();
+                if (slotCount < 0 || slotCount > MAX_SLOTS) {
+                    throw new IOException("Bad slot count in " + file);
+                }
+
+                PageFile pageFile = new PageFile(file, randomAccessFile, pageCount, slotCount);
+                MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                        (long) slotCount * SLOT_BYTES);
+                for (int i = 0; i < slotCount; i++) {
+                    int pageIndex = table.getInt();
+                    int scaleBits = table.getInt();
+                    int width = table.getInt();
+                    int height = table.getInt();
+                    int pageWidth = table.getInt();
+                    int pageHeight = table.getInt();
+                    long offset = table.getLong();
+                    int length = table.getInt();
+                    // A free slot, or a hole left by a write that failed after later ones were reserved
+                    if (length <= 0) continue;
+                    Slot slot = new Slot(i, pageIndex, scaleBits, width, height,
+                            pageWidth, pageHeight, offset, length);
+                    pageFile.slots.put(((long) pageIndex << 32) | (scaleBits & 0xffffffffL), slot);
+                    pageFile.usedSlots = i + 1;
+                    pageFile.end = Math.max(pageFile.end, offset + length);
+                }
+                pageFile.lastTouched = file.lastModified();
+                return pageFile;
+            } catch (IOException | RuntimeException e) {
+                randomAccessFile.close();
+                throw e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+        }
+
+        void writeSlot(Slot slot) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(SLOT_BYTES);
+            buffer.putInt(slot.pageIndex).putInt(slot.scaleBits)
+                    .putInt(slot.width).putInt(slot.height)
+                    .putInt(slot.pageWidth).putInt(slot.pageHeight)
+                    .putLong(slot.offset).putInt(slot.length);
+            buffer.flip();
+            channel.write(buffer, HEADER_BYTES + (long) slot.index * SLOT_BYTES);
+        }
+
+        /**
+         * Mark as recently used for cross-document LRU eviction
+         */
+        void touch() {
+            long now = System.currentTimeMillis();
+            if (now - lastTouched > TOUCH_INTERVAL_MS) {
+                lastTouched = now;
+                file.setLastModified(now);
+            }
+        }
+
+        void close() {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
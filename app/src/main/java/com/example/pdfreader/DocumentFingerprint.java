@@ -0,0 +1,93 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cheap content identity of a document: its size plus a hash of a few sampled blocks.
+ * Reads at most {@link #SAMPLE_COUNT} blocks whatever the file size, so it costs the same
+ * for a 100 KB leaflet and a 500 MB scan.
+ *
+ * Every cache of derived data is keyed by it rather than by URI, so a document reached through
+ * two URIs is cached once, and a document that changes on disk gets a new fingerprint and never
+ * sees the data of its old content.
+ */
+public final class DocumentFingerprint {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int SAMPLE_COUNT = 4;
+    // Hex digits kept from the digest; 64 bits is plenty to tell documents apart
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    private DocumentFingerprint() {
+    }
+
+    /**
+     * Delete everything cached on disk for a document's content, e.g. because the file changed and
+     * the content will not be seen again. Memory caches need nothing: their entries age out.
+     */
+    public static void removeCachedData(@NonNull Context context, @NonNull String fingerprint) {
+        DiskPageCache.getInstance(context).remove(fingerprint);
+        PageGeometryIndex.remove(context, fingerprint);
+        DocumentSearch.remove(context, fingerprint);
+        DocumentOutline.remove(context, fingerprint);
+        ThumbnailPipeline.remove(context, fingerprint);
+    }
+
+    /**
+     * Fingerprint the document behind a descriptor without disturbing it; reads a duplicate
+     */
+    @NonNull
+    public static String compute(@NonNull ParcelFileDescriptor fileDescriptor) throws IOException {
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor.dup())) {
+            return compute(in.getChannel());
+        }
+    }
+
+    /**
+     * Fingerprint from the size and the first, last and evenly spaced middle blocks.
+     * Uses positional reads only, so the channel position is left alone.
+     */
+    @NonNull
+    public static String compute(@NonNull FileChannel channel) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        long size = channel.size();
+        ByteBuffer sizeBytes = ByteBuffer.allocate(8);
+        sizeBytes.putLong(size);
+        digest.update(sizeBytes.array());
+
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        long lastStart = Math.max(0, size - BLOCK_SIZE);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            long position = SAMPLE_COUNT > 1 ? lastStart * i / (SAMPLE_COUNT - 1) : 0;
+            block.clear();
+            while (block.hasRemaining()) {
+                int read = channel.read(block, position + block.position());
+                if (read < 0) break;
+            }
+            digest.update(block.array(), 0, block.position());
+        }
+
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(FINGERPRINT_LENGTH);
+        for (int i = 0; i < FINGERPRINT_LENGTH / 2; i++) {
+            hex.append(String.format("%02x", hash[i] & 0xff));
+        }
+        return hex.toString();
+    }
+}
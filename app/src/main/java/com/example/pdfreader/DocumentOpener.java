@@ -0,0 +1,346 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opens a document off the main thread, in stages:
+ * resolving its name and size from the provider, acquiring a seekable file descriptor, which is
+ * where cloud providers download the file and streamed documents are copied to the local cache,
+ * parsing it into renderers, and rendering the first page.
+ *
+ * The viewer hears of every stage on the main thread, so it can show progress, and gets the
+ * fingerprint as soon as it is known, so the disk-cached page can be shown while the renderers
+ * are built. Cancelling aborts a provider query or download in progress and closes whatever was
+ * opened, whichever stage the open is in. Each stage's latency goes into {@link RenderMetrics}.
+ *
+ * A speculative open, see {@link #startSpeculative}, is one the user has not asked for yet:
+ * it runs at minimum priority, never downloads and stays out of the metrics.
+ */
+public class DocumentOpener {
+
+    private static final String TAG = "DocumentOpener";
+
+    public static final int STAGE_RESOLVE = 0;
+    public static final int STAGE_ACQUIRE = 1;
+    public static final int STAGE_PARSE = 2;
+    // Ended by the viewer through onFirstPageShown()
+    public static final int STAGE_FIRST_PAGE = 3;
+    private static final String[] STAGE_NAMES = {"resolve", "acquire", "parse", "first page"};
+    // Copy progress is posted at most this often
+    private static final long PROGRESS_INTERVAL_NANOS = 100_000_000;
+
+    // Opens mostly wait on providers and storage, and one slow download must not hold up the rest
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "PdfOpen");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    /**
+     * Progress of an open, on the main thread. Nothing is called after the open is cancelled.
+     */
+    public interface Listener {
+        void onStageStarted(int stage);
+
+        /**
+         * Name and size as the provider reports them, before the file is read
+         * @param displayName Null if the provider has none
+         * @param size Bytes, or -1 if unknown
+         */
+        void onResolved(@Nullable String displayName, long size);
+
+        /**
+         * Bytes copied so far of a document the provider can only stream, see {@link DocumentSource}
+         * @param total Bytes expected, -1 if unknown
+         */
+        void onCopyProgress(long copied, long total);
+
+        /**
+         * Identity of the content, known before the renderers are built
+         * @param fingerprint Null if it could not be read; the document is then not disk cached
+         */
+        void onFingerprint(@Nullable String fingerprint);
+
+        /**
+         * The renderers are ready and the listener now owns them
+         */
+        void onOpened(@NonNull Result result);
+
+        void onFailed(@NonNull Exception e);
+    }
+
+    /**
+     * A parsed document, ready to render
+     */
+    public static final class Result {
+        public final PdfRendererPool rendererPool;
+        // Owned by the pool; duplicate it to read the document elsewhere
+        public final ParcelFileDescriptor fileDescriptor;
+        @Nullable
+        public final String fingerprint;
+        public final PageGeometryIndex geometryIndex;
+
+        Result(PdfRendererPool rendererPool, ParcelFileDescriptor fileDescriptor,
+               @Nullable String fingerprint, PageGeometryIndex geometryIndex) {
+            this.rendererPool = rendererPool;
+            this.fileDescriptor = fileDescriptor;
+            this.fingerprint = fingerprint;
+            this.geometryIndex = geometryIndex;
+        }
+    }
+
+    private final Context context;
+    private final Uri uri;
+    private final int poolSize;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CancellationSignal cancellationSignal = new CancellationSignal();
+
+    // Set on the main thread before the open starts, see setSnapshotPage
+    private int snapshotPage = -1;
+    private float snapshotScale;
+    // Set on the main thread, read by the open's thread
+    private volatile boolean cancelled;
+    private volatile boolean speculative;
+    // Main thread only
+    private boolean finished;
+    private long startNanos;
+    private long firstPageStartNanos;
+    // Open's thread only
+    private long lastProgressNanos;
+
+    public DocumentOpener(@NonNull Context context, @NonNull Uri uri, @NonNull Listener listener) {
+        this.context = context.getApplicationContext();
+        this.uri = uri;
+        this.poolSize = PdfRendererPool.computePoolSize(context);
+        this.listener = listener;
+    }
+
+    /**
+     * Have the open read this page from the disk cache into the page cache as soon as the
+     * document is identified, so the viewer can show it from memory; main thread, before start
+     */
+    public void setSnapshotPage(int page, float scale) {
+        snapshotPage = page;
+        snapshotScale = scale;
+    }
+
+    /**
+     * Start the open; main thread
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        executor.execute(this::run);
+    }
+
+    /**
+     * Start an open ahead of the user's request, see {@link DocumentPrewarmer}; main thread.
+     * Fails if the document is not available locally rather than download it.
+     */
+    public void startSpeculative() {
+        speculative = true;
+        startNanos = System.nanoTime();
+        executor.execute(() -> {
+            Thread thread = Thread.currentThread();
+            int priority = thread.getPriority();
+            thread.setPriority(Thread.MIN_PRIORITY);
+            try {
+                run();
+            } finally {
+                thread.setPriority(priority);
+            }
+        });
+    }
+
+    /**
+     * Give up on the open and close whatever it has opened; main thread.
+     * Once the renderers are handed over they are the listener's to close.
+     */
+    public void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+        cancellationSignal.cancel();
+    }
+
+    /**
+     * The viewer has shown the first page, which ends the open; main thread
+     */
+    public void onFirstPageShown() {
+        if (finished || firstPageStartNanos == 0) return;
+        finished = true;
+        RenderMetrics metrics = RenderMetrics.getInstance();
+        metrics.openFirstPage.recordSince(firstPageStartNanos);
+        metrics.openTotal.recordSince(startNanos);
+        Log.i(TAG, String.format(Locale.ROOT, "Opened %s in %dms", uri,
+                (System.nanoTime() - startNanos) / 1_000_000));
+    }
+
+    private void run() {
+        RenderMetrics metrics = RenderMetrics.getInstance();
+        DocumentSource source = DocumentSource.getInstance(context);
+        ParcelFileDescriptor fileDescriptor = null;
+        PdfRendererPool rendererPool = null;
+        int stage = STAGE_RESOLVE;
+        try {
+            postStage(stage);
+            long stageStart = System.nanoTime();
+            // Not knowing the name and size does not fail the open
+            DocumentSource.Info info = source.resolve(uri, cancellationSignal);
+            post(() -> listener.onResolved(info.displayName, info.size));
+            record(metrics.openResolve, stageStart);
+
+            stage = STAGE_ACQUIRE;
+            postStage(stage);
+            stageStart = System.nanoTime();
+            // Copied to the local cache first if the provider can only stream it
+            if (speculative) {
+                fileDescriptor = source.openLocal(uri);
+                if (fileDescriptor == null) {
+                    throw new IOException("Not available locally: " + uri);
+                }
+            } else {
+                fileDescriptor = source.open(uri, info, cancellationSignal, this::onCopied);
+            }
+            record(metrics.openAcquire, stageStart);
+
+            stage = STAGE_PARSE;
+            postStage(stage);
+            stageStart = System.nanoTime();
+            String fingerprint = null;
+            try {
+                fingerprint = DocumentFingerprint.compute(fileDescriptor);
+            } catch (IOException e) {
+                // Not fatal, the document just is not disk cached
+                e.printStackTrace();
+            }
+            if (fingerprint != null) {
+                dropChangedContent(fingerprint);
+                loadSnapshot(fingerprint);
+            }
+            final String knownFingerprint = fingerprint;
+            post(() -> listener.onFingerprint(knownFingerprint));
+            checkCancelled();
+
+            // The pool owns the descriptor from here, even if this fails
+            ParcelFileDescriptor owned = fileDescriptor;
+            fileDescriptor = null;
+            rendererPool = PdfRendererPool.open(owned, poolSize);
+            checkCancelled();
+            PageGeometryIndex geometryIndex = PageGeometryIndex.open(context, fingerprint,
+                    rendererPool.getPageCount());
+            record(metrics.openParse, stageStart);
+
+            Result result = new Result(rendererPool, owned, fingerprint, geometryIndex);
+            rendererPool = null;
+            mainHandler.post(() -> {
+                if (cancelled) {
+                    result.rendererPool.close();
+                    return;
+                }
+                firstPageStartNanos = System.nanoTime();
+                listener.onStageStarted(STAGE_FIRST_PAGE);
+                listener.onOpened(result);
+            });
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(fileDescriptor);
+            if (rendererPool != null) {
+                rendererPool.close();
+            }
+            if (cancelled || e instanceof OperationCanceledException) return;
+            Log.w(TAG, "Open failed in stage " + STAGE_NAMES[stage] + ": " + uri, e);
+            post(() -> listener.onFailed(e));
+        }
+    }
+
+    /**
+     * If the file has changed on disk since it was last opened, drop what was cached for its old
+     * content, before anything looks for cached data of the new one; on the open's thread
+     */
+    private void dropChangedContent(String fingerprint) {
+        SessionJournal.DocumentState state = SessionJournal.getInstance(context).getDocument(uri.toString());
+        if (state == null || state.fingerprint.isEmpty() || state.fingerprint.equals(fingerprint)) return;
+        Log.i(TAG, "Changed on disk since last opened: " + uri);
+        DocumentFingerprint.removeCachedData(context, state.fingerprint);
+    }
+
+    /**
+     * Copy the snapshot page from the disk cache into the page cache, unless it is there
+     * already; on the open's thread
+     */
+    private void loadSnapshot(String fingerprint) {
+        if (snapshotPage < 0) return;
+        PageKey key = new PageKey(fingerprint, snapshotPage, snapshotScale);
+        PageBitmapCache pageCache = PageBitmapCache.getInstance(context);
+        if (pageCache.contains(key)) return;
+        Bitmap bitmap = DiskPageCache.getInstance(context).read(fingerprint, key, pageCache.getBitmapPool(), null);
+        if (bitmap != null) {
+            pageCache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * Stage latencies are the user's wait, which a speculative open is not
+     */
+    private void record(LatencyHistogram histogram, long stageStart) {
+        if (!speculative) {
+            histogram.recordSince(stageStart);
+        }
+    }
+
+    /**
+     * Post copy progress, at most every PROGRESS_INTERVAL_NANOS; on the open's thread
+     */
+    private void onCopied(long copied, long total) {
+        long now = System.nanoTime();
+        if (now - lastProgressNanos < PROGRESS_INTERVAL_NANOS) return;
+        lastProgressNanos = now;
+        post(() -> listener.onCopyProgress(copied, total));
+    }
+
+    private void postStage(int stage) {
+        checkCancelled();
+        post(() -> listener.onStageStarted(stage));
+    }
+
+    /**
+     * Run on the main thread unless the open is cancelled by then
+     */
+    private void post(Runnable runnable) {
+        mainHandler.post(() -> {
+            if (!cancelled) {
+                runnable.run();
+            }
+        });
+    }
+
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new OperationCanceledException();
+        }
+    }
+
+    private static void closeQuietly(@Nullable ParcelFileDescriptor fileDescriptor) {
+        if (fileDescriptor == null) return;
+        try {
+            fileDescriptor.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
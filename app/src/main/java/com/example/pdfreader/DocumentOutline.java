@@ -0,0 +1,446 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The document outline (bookmarks), read lazily: only the top level when first shown, and the
+ * children of an entry when it is expanded. Destinations are resolved to page indices as entries
+ * are read.
+ *
+ * Everything read so far is cached under the document fingerprint, so the outline shows without
+ * touching the document the next time, however large it is. Entries not expanded yet keep the
+ * object number of their first child to continue from.
+ *
+ * Loading runs on a background thread; callbacks and all reads of entries happen on the main thread.
+ */
+public class DocumentOutline {
+
+    private static final String DIRECTORY = "outline";
+    private static final int MAGIC = 0x4a524f4c; // "JROL"
+    private static final int VERSION = 1;
+    // Longer titles are cut; the dialog shows one line anyway
+    private static final int MAX_TITLE_LENGTH = 500;
+    // Guards against cyclic sibling chains in broken files
+    private static final int MAX_SIBLINGS = 100000;
+
+    public static final class Entry {
+        @NonNull
+        public final String title;
+        // Target page, -1 if the entry has no destination in this document
+        public final int pageIndex;
+        public final int level;
+        // Object number of the first child, 0 if there are none
+        private final int firstChild;
+        // Null until loaded
+        private List<Entry> children;
+
+        Entry(@NonNull String title, int pageIndex, int level, int firstChild) {
+            this.title = title;
+            this.pageIndex = pageIndex;
+            this.level = level;
+            this.firstChild = firstChild;
+        }
+
+        public boolean hasChildren() {
+            return firstChild != 0 && (children == null || !children.isEmpty());
+        }
+
+        public boolean isLoaded() {
+            return children != null;
+        }
+
+        /**
+         * Children once loaded, else an empty list
+         */
+        @NonNull
+        public List<Entry> getChildren() {
+            return children != null ? children : Collections.<Entry>emptyList();
+        }
+    }
+
+    private final File cacheFile;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PdfOutline");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    // Owned until the reader is opened from it; worker thread only
+    private ParcelFileDescriptor fileDescriptor;
+    private PdfReader reader;
+    private List<Entry> roots;
+    // Whether entries were loaded since the cache was read or written
+    private boolean dirty;
+    private volatile boolean closed;
+
+    /**
+     * The descriptor is duplicated, the caller keeps its own.
+     *
+     * @param fingerprint Document fingerprint to cache the outline under, null to not cache it
+     */
+    public DocumentOutline(@NonNull Context context, @NonNull ParcelFileDescriptor fileDescriptor,
+                           @Nullable String fingerprint) throws IOException {
+        this.fileDescriptor = fileDescriptor.dup();
+        this.cacheFile = fingerprint != null
+                ? new File(new File(context.getCacheDir(), DIRECTORY), fingerprint + ".outline") : null;
+    }
+
+    /**
+     * Top-level entries, or null before {@link #load} has completed
+     */
+    @Nullable
+    public List<Entry> getRoots() {
+        return roots;
+    }
+
+    /**
+     * Load the top level, from the cache if there is one. The callback runs on the main thread,
+     * after which {@link #getRoots()} is not null; it is empty if the document has no outline.
+     */
+    public void load(@NonNull Runnable onLoaded) {
+        if (roots != null) {
+            onLoaded.run();
+            return;
+        }
+        execute(() -> {
+            List<Entry> loaded = readCache();
+            if (loaded == null) {
+                try {
+                    PdfReader pdf = reader();
+                    Map<String, Object> outlines = pdf.getDictionary(pdf.getCatalog(), "Outlines");
+                    loaded = outlines != null ? readSiblings(outlines.get("First"), 0)
+                            : new ArrayList<Entry>();
+                } catch (IOException | RuntimeException e) {
+                    // No usable outline
+                    e.printStackTrace();
+                    loaded = new ArrayList<>();
+                }
+                dirty = true;
+            }
+            List<Entry> result = loaded;
+            mainHandler.post(() -> {
+                if (closed) return;
+                roots = result;
+                onLoaded.run();
+            });
+        });
+    }
+
+    /**
+     * Load the children of an entry; the callback runs on the main thread once they are there
+     */
+    public void expand(@NonNull Entry entry, @NonNull Runnable onLoaded) {
+        if (entry.isLoaded() || entry.firstChild == 0) {
+            onLoaded.run();
+            return;
+        }
+        execute(() -> {
+            List<Entry> children;
+            try {
+                children = readSiblings(new PdfSyntax.Ref(entry.firstChild, 0), entry.level + 1);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                children = new ArrayList<>();
+            }
+            dirty = true;
+            List<Entry> result = children;
+            mainHandler.post(() -> {
+                if (closed) return;
+                entry.children = result;
+                onLoaded.run();
+            });
+        });
+    }
+
+    /**
+     * Save what has been loaded, so it shows at once next time
+     */
+    public void save() {
+        List<Entry> current = roots;
+        if (current == null || cacheFile == null) return;
+        // Snapshot the tree on the main thread, where entries change
+        List<Entry> snapshot = copy(current);
+        execute(() -> {
+            if (!dirty) return;
+            try {
+                writeCache(snapshot);
+                dirty = false;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Delete the cached outline of a document, e.g. because it changed on disk
+     */
+    public static void remove(@NonNull Context context, @NonNull String fingerprint) {
+        new File(new File(context.getCacheDir(), DIRECTORY), fingerprint + ".outline").delete();
+    }
+
+    /**
+     * Save what has been loaded and stop; callbacks still pending are dropped
+     */
+    public void close() {
+        save();
+        closed = true;
+        execute(() -> {
+            if (fileDescriptor != null) {
+                try {
+                    fileDescriptor.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                fileDescriptor = null;
+            }
+            reader = null;
+        });
+        executor.shutdown();
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile
+        }
+    }
+
+    // ----- Reading the document (worker thread) -----
+
+    private PdfReader reader() throws IOException {
+        if (reader == null) {
+            if (fileDescriptor == null) throw new IOException("Outline closed");
+            reader = PdfReader.open(fileDescriptor);
+            fileDescriptor.close();
+            fileDescriptor = null;
+        }
+        return reader;
+    }
+
+    /**
+     * Entries of a sibling chain, starting at the given item and following /Next
+     */
+    private List<Entry> readSiblings(@Nullable Object first, int level) throws IOException {
+        PdfReader pdf = reader();
+        List<Entry> entries = new ArrayList<>();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Object item = pdf.resolve(first);
+        while (item instanceof Map && visited.add(item) && entries.size() < MAX_SIBLINGS) {
+            Map<String, Object> node = PdfSyntax.asDict(item);
+            String title = PdfReader.textString(pdf.resolve(node.get("Title")));
+            Object firstChild = node.get("First");
+            Entry entry = new Entry(cleanTitle(title), destinationPage(node), level,
+                    firstChild instanceof PdfSyntax.Ref ? ((PdfSyntax.Ref) firstChild).number : 0);
+            if (entry.firstChild == 0 && pdf.resolve(firstChild) instanceof Map) {
+                // A direct child object leaves nothing to continue from later, read it now
+                entry.children = readSiblings(firstChild, level + 1);
+            }
+            entries.add(entry);
+            item = pdf.resolve(node.get("Next"));
+        }
+        return entries;
+    }
+
+    private static String cleanTitle(@Nullable String title) {
+        if (title == null) return "";
+        // Titles often carry line breaks and other control characters
+        StringBuilder clean = new StringBuilder(Math.min(title.length(), MAX_TITLE_LENGTH));
+        for (int i = 0; i < title.length() && clean.length() < MAX_TITLE_LENGTH; i++) {
+            char c = title.charAt(i);
+            clean.append(Character.isISOControl(c) ? ' ' : c);
+        }
+        return clean.toString().trim();
+    }
+
+    /**
+     * Page an outline item leads to, through /Dest or a GoTo action; -1 if none
+     */
+    private int destinationPage(Map<String, Object> node) throws IOException {
+        PdfReader pdf = reader();
+        Object destination = pdf.resolve(node.get("Dest"));
+        if (destination == null) {
+            Map<String, Object> action = pdf.getDictionary(node, "A");
+            if (action == null) return -1;
+            Object type = pdf.resolve(action.get("S"));
+            if (!(type instanceof PdfSyntax.Name) || !((PdfSyntax.Name) type).value.equals("GoTo")) return -1;
+            destination = pdf.resolve(action.get("D"));
+        }
+        return pageOfDestination(destination, 0);
+    }
+
+    private int pageOfDestination(@Nullable Object destination, int depth) throws IOException {
+        PdfReader pdf = reader();
+        if (depth > 4) return -1;
+        if (destination instanceof PdfSyntax.Name || destination instanceof byte[]) {
+            // A named destination
+            return pageOfDestination(namedDestination(destination), depth + 1);
+        }
+        if (destination instanceof Map) {
+            // A destination dictionary, as named destinations may be
+            return pageOfDestination(pdf.resolve(((Map<?, ?>) destination).get("D")), depth + 1);
+        }
+        if (!(destination instanceof List) || ((List<?>) destination).isEmpty()) return -1;
+        Object page = ((List<?>) destination).get(0);
+        if (page instanceof Integer) {
+            // Remote-style page number
+            return (Integer) page;
+        }
+        return page instanceof PdfSyntax.Ref ? pdf.indexOfPage(page) : -1;
+    }
+
+    @Nullable
+    private Object namedDestination(Object name) throws IOException {
+        PdfReader pdf = reader();
+        Map<String, Object> catalog = pdf.getCatalog();
+        if (name instanceof PdfSyntax.Name) {
+            // PDF 1.1 style: a dictionary of names in the catalog
+            Map<String, Object> dests = pdf.getDictionary(catalog, "Dests");
+            return dests != null ? pdf.resolve(dests.get(((PdfSyntax.Name) name).value)) : null;
+        }
+        Map<String, Object> names = pdf.getDictionary(catalog, "Names");
+        Map<String, Object> tree = pdf.getDictionary(names, "Dests");
+        return tree != null ? lookupNameTree(tree, new String((byte[]) name, StandardCharsets.ISO_8859_1), 0)
+                : null;
+    }
+
+    /**
+     * Value of a key in a name tree, descending by the /Limits of its nodes
+     */
+    @Nullable
+    private Object lookupNameTree(Map<String, Object> node, String key, int depth) throws IOException {
+        PdfReader pdf = reader();
+        if (depth > 32) return null;
+        Object names = pdf.resolve(node.get("Names"));
+        if (names instanceof List) {
+            List<?> list = (List<?>) names;
+            for (int i = 0; i + 1 < list.size(); i += 2) {
+                Object name = pdf.resolve(list.get(i));
+                if (name instanceof byte[] && key.equals(new String((byte[]) name, StandardCharsets.ISO_8859_1))) {
+                    return pdf.resolve(list.get(i + 1));
+                }
+            }
+            return null;
+        }
+        List<Object> kids = PdfSyntax.asArray(pdf.resolve(node.get("Kids")));
+        if (kids == null) return null;
+        for (Object kid : kids) {
+            Map<String, Object> childNode = PdfSyntax.asDict(pdf.resolve(kid));
+            if (childNode == null) continue;
+            Object limits = pdf.resolve(childNode.get("Limits"));
+            if (limits instanceof List && ((List<?>) limits).size() >= 2) {
+                Object low = pdf.resolve(((List<?>) limits).get(0));
+                Object high = pdf.resolve(((List<?>) limits).get(1));
+                if (low instanceof byte[] && high instanceof byte[]
+                        && (key.compareTo(new String((byte[]) low, StandardCharsets.ISO_8859_1)) < 0
+                        || key.compareTo(new String((byte[]) high, StandardCharsets.ISO_8859_1)) > 0)) {
+                    continue;
+                }
+            }
+            Object value = lookupNameTree(childNode, key, depth + 1);
+            if (value != null) return value;
+        }
+        return null;
+    }
+
+    // ----- Cache -----
+
+    private static List<Entry> copy(List<Entry> entries) {
+        List<Entry> copies = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            Entry copy = new Entry(entry.title, entry.pageIndex, entry.level, entry.firstChild);
+            if (entry.children != null) {
+                copy.children = copy(entry.children);
+            }
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    @Nullable
+    private List<Entry> readCache() {
+        if (cacheFile == null || !cacheFile.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not an outline cache");
+            return readEntries(in, 0);
+        } catch (IOException e) {
+            e.printStackTrace();
+            cacheFile.delete();
+            return null;
+        }
+    }
+
+    private static List<Entry> readEntries(DataInputStream in, int level) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_SIBLINGS) throw new IOException("Corrupt outline cache");
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Entry entry = new Entry(in.readUTF(), in.readInt(), level, in.readInt());
+            if (in.readBoolean()) {
+                entry.children = readEntries(in, level + 1);
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private void writeCache(List<Entry> entries) throws IOException {
+        File directory = cacheFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        // Write aside and rename, so a reader never sees half an outline
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeEntries(out, entries);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(cacheFile)) {
+            temp.delete();
+            throw new IOException("Cannot write " + cacheFile);
+        }
+    }
+
+    private static void writeEntries(DataOutputStream out, List<Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            out.writeUTF(entry.title);
+            out.writeInt(entry.pageIndex);
+            out.writeInt(entry.firstChild);
+            out.writeBoolean(entry.children != null);
+            if (entry.children != null) {
+                writeEntries(out, entry.children);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opens the document the user is most likely to switch to next, before they pick it.
+ *
+ * When a list of documents appears, the next one is predicted from the switches seen so far
+ * from the document on screen, with the most recently shown documents breaking ties. If that
+ * document has no live tab, it is opened speculatively and its resume page rendered into the
+ * page cache, at minimum priority. Switching to it then hands the renderers to the new viewer,
+ * which shows the page at once; switching anywhere else drops them.
+ *
+ * The prewarmed document counts as a live tab, so it is only opened while the tab budget of the
+ * {@link MemoryGovernor} has room, and it is the first thing given back under memory pressure.
+ * Main thread only.
+ */
+public class DocumentPrewarmer {
+
+    private static final String TAG = "DocumentPrewarmer";
+
+    // Renders the resume page; apart from the viewers' render threads, which it must not slow
+    private static final ExecutorService renderExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PdfPrewarm");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * A document opened ahead of time; the viewer it is handed to owns it
+     */
+    public static final class Prewarmed {
+        public final DocumentOpener.Result result;
+        // Name the provider reported while opening, null if none
+        @Nullable
+        public final String displayName;
+
+        Prewarmed(DocumentOpener.Result result, @Nullable String displayName) {
+            this.result = result;
+            this.displayName = displayName;
+        }
+
+        public void close() {
+            result.rendererPool.close();
+        }
+    }
+
+    /**
+     * One speculative open, from the opener's start until it is handed over or dropped
+     */
+    private final class Warmup implements DocumentOpener.Listener {
+        final Uri uri;
+        final DocumentOpener opener;
+        String displayName;
+        // Set once the resume page has been rendered
+        Prewarmed prewarmed;
+        boolean dropped;
+
+        Warmup(Uri uri) {
+            this.uri = uri;
+            this.opener = new DocumentOpener(context, uri, this);
+        }
+
+        @Override
+        public void onStageStarted(int stage) {
+        }
+
+        @Override
+        public void onResolved(@Nullable String name, long size) {
+            displayName = name;
+        }
+
+        @Override
+        public void onCopyProgress(long copied, long total) {
+        }
+
+        @Override
+        public void onFingerprint(@Nullable String fingerprint) {
+        }
+
+        @Override
+        public void onOpened(@NonNull DocumentOpener.Result result) {
+            if (dropped) {
+                result.rendererPool.close();
+                return;
+            }
+            // Nothing else uses the renderers until the warmup is handed over, which waits for this
+            renderExecutor.execute(() -> {
+                try {
+                    renderResumePage(uri, result);
+                } catch (Exception e) {
+                    // The document is still open; the viewer renders the page itself
+                    e.printStackTrace();
+                }
+                mainHandler.post(() -> {
+                    if (dropped) {
+                        result.rendererPool.close();
+                    } else {
+                        prewarmed = new Prewarmed(result, displayName);
+                        Log.i(TAG, "Prewarmed " + uri);
+                    }
+                });
+            });
+        }
+
+        @Override
+        public void onFailed(@NonNull Exception e) {
+            // Likely not available locally; it opens the usual way when picked
+            if (warmup == this) {
+                warmup = null;
+            }
+        }
+
+        void drop() {
+            dropped = true;
+            opener.cancel();
+            if (prewarmed != null) {
+                prewarmed.close();
+                prewarmed = null;
+            }
+        }
+    }
+
+    private final Context context;
+    private final TabManager tabManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Switches seen between documents: from, to, count
+    private final Map<Uri, Map<Uri, Integer>> switches = new HashMap<>();
+    // Documents in the order they were last shown, most recent last
+    private final LinkedHashSet<Uri> recent = new LinkedHashSet<>();
+    @Nullable
+    private Warmup warmup;
+
+    public DocumentPrewarmer(@NonNull Context context, @NonNull TabManager tabManager) {
+        this.context = context.getApplicationContext();
+        this.tabManager = tabManager;
+    }
+
+    /**
+     * The user switched from one document to another; drops a prewarmed document that was not picked
+     * @param from Null if no document was shown
+     */
+    public void onSwitched(@Nullable Uri from, @NonNull Uri to) {
+        if (from != null && !from.equals(to)) {
+            Map<Uri, Integer> counts = switches.get(from);
+            if (counts == null) {
+                counts = new HashMap<>();
+                switches.put(from, counts);
+            }
+            Integer count = counts.get(to);
+            counts.put(to, count != null ? count + 1 : 1);
+        }
+        recent.remove(to);
+        recent.add(to);
+
+        if (warmup != null && !warmup.uri.equals(to)) {
+            Log.i(TAG, "Mispredicted " + warmup.uri);
+            drop();
+        }
+    }
+
+    /**
+     * A document was closed; forget it
+     */
+    public void onClosed(@NonNull Uri uri) {
+        switches.remove(uri);
+        for (Map<Uri, Integer> counts : switches.values()) {
+            counts.remove(uri);
+        }
+        recent.remove(uri);
+        if (warmup != null && warmup.uri.equals(uri)) {
+            drop();
+        }
+    }
+
+    /**
+     * Document most likely to be picked next: the one switched to most often from the current
+     * one, then the one shown most recently
+     * @return Null if there is none besides the current one
+     */
+    @Nullable
+    public Uri predict(@Nullable Uri current, @NonNull List<PdfDocument> documents) {
+        Map<Uri, Integer> counts = current != null ? switches.get(current) : null;
+        Map<Uri, Integer> recency = new HashMap<>();
+        int rank = 1;
+        for (Uri uri : recent) {
+            recency.put(uri, rank++);
+        }
+
+        Uri best = null;
+        long bestScore = -1;
+        for (PdfDocument document : documents) {
+            Uri uri = document.getUri();
+            if (uri.equals(current)) continue;
+            Integer count = counts != null ? counts.get(uri) : null;
+            Integer shown = recency.get(uri);
+            // Switch history first; recency only among documents with as many switches
+            long score = (count != null ? (long) count * rank : 0) + (shown != null ? shown : 0);
+            if (score > bestScore) {
+                best = uri;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Open a document speculatively, unless it is live already or the tab budget has no room
+     */
+    public void prewarm(@Nullable Uri uri) {
+        if (uri == null || tabManager.isLive(uri)) return;
+        if (warmup != null) {
+            if (warmup.uri.equals(uri)) return;
+            drop();
+        }
+        if (tabManager.getLiveCount() >= tabManager.getMaxLiveTabs()) return;
+
+        warmup = new Warmup(uri);
+        warmup.opener.startSpeculative();
+    }
+
+    /**
+     * Hand over a document opened ahead of time, if it is the one asked for and ready.
+     * One still opening is dropped: the viewer's own open takes over from there.
+     */
+    @Nullable
+    public Prewarmed take(@NonNull Uri uri) {
+        if (warmup == null || !warmup.uri.equals(uri)) return null;
+        Prewarmed prewarmed = warmup.prewarmed;
+        if (prewarmed == null) {
+            drop();
+            return null;
+        }
+        warmup = null;
+        return prewarmed;
+    }
+
+    /**
+     * Close the prewarmed document, or stop it opening
+     */
+    public void drop() {
+        if (warmup != null) {
+            warmup.drop();
+            warmup = null;
+        }
+    }
+
+    /**
+     * Memory governor tier: the prewarmed document goes at any pressure
+     * @return Estimated bytes freed
+     */
+    public long trim(int pressure) {
+        if (warmup == null) return 0;
+        boolean opened = warmup.prewarmed != null;
+        drop();
+        return opened ? (long) MemoryGovernor.HEAP_MB_PER_LIVE_TAB * 1024 * 1024 : 0;
+    }
+
+    /**
+     * Put the page the document will resume on into the page cache, under the key its viewer
+     * will look for: read from the disk cache if there, else rendered. Runs on the render thread.
+     */
+    private void renderResumePage(Uri uri, DocumentOpener.Result result) throws Exception {
+        if (result.fingerprint == null) return;
+        SessionJournal.DocumentState state = SessionJournal.getInstance(context).getDocument(uri.toString());
+        int pageIndex = state != null ? state.page : 0;
+        if (pageIndex < 0 || pageIndex >= result.rendererPool.getPageCount()) return;
+
+        float scale = context.getResources().getDisplayMetrics().density;
+        PageKey key = new PageKey(result.fingerprint, pageIndex, scale);
+        PageBitmapCache pageCache = PageBitmapCache.getInstance(context);
+        if (pageCache.contains(key)) return;
+        // Not timed: speculative work would skew what the viewers measure
+        PdfPageAdapter.renderPage(result.rendererPool.getRenderers().get(0), key, result.fingerprint,
+                result.rendererPool.getPageCount(), result.geometryIndex, pageCache,
+                DiskPageCache.getInstance(context), null);
+    }
+}
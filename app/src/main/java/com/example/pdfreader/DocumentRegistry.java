@@ -0,0 +1,250 @@
+package com.example.pdfreader;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The open documents in tab order, and which one is on screen.
+ *
+ * Documents can be looked up by URI and by content fingerprint without walking the list, and
+ * keep a stable ID while open, so lists can animate them by identity. Every change is reported
+ * to the listeners as a single insert, remove or change at a position, which lists apply as is
+ * instead of rebinding everything. Main thread only.
+ */
+public class DocumentRegistry {
+
+    /**
+     * Changes to the registry, reported after they have been made
+     */
+    public interface Listener {
+        void onDocumentInserted(int position);
+
+        void onDocumentRemoved(int position);
+
+        /**
+         * The document at a position was replaced or one of its fields changed
+         */
+        void onDocumentChanged(int position);
+
+        /**
+         * @param previous Position of the document shown before, -1 if none or it was removed
+         * @param current Position of the document now shown, -1 if none
+         */
+        void onCurrentChanged(int previous, int current);
+    }
+
+    private final List<PdfDocument> documents = new ArrayList<>();
+    private final Map<Uri, Integer> positions = new HashMap<>();
+    private final Map<String, PdfDocument> byFingerprint = new HashMap<>();
+    private final Map<Uri, Long> stableIds = new HashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private long nextStableId;
+    private int currentIndex = -1;
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public boolean isEmpty() {
+        return documents.isEmpty();
+    }
+
+    @NonNull
+    public PdfDocument get(int position) {
+        return documents.get(position);
+    }
+
+    /**
+     * The documents in tab order; a read-only view that follows the registry
+     */
+    @NonNull
+    public List<PdfDocument> getAll() {
+        return Collections.unmodifiableList(documents);
+    }
+
+    /**
+     * Position of the document opened from a URI, or -1 if none
+     */
+    public int indexOf(@NonNull Uri uri) {
+        Integer position = positions.get(uri);
+        return position != null ? position : -1;
+    }
+
+    @Nullable
+    public PdfDocument findByUri(@NonNull Uri uri) {
+        int position = indexOf(uri);
+        return position >= 0 ? documents.get(position) : null;
+    }
+
+    /**
+     * An open document with this content, whichever URI it was opened from
+     */
+    @Nullable
+    public PdfDocument findByFingerprint(@NonNull String fingerprint) {
+        return byFingerprint.get(fingerprint);
+    }
+
+    /**
+     * ID of a document that stays the same while it is open, even if it is renamed or moved
+     */
+    public long getStableId(@NonNull PdfDocument document) {
+        Long id = stableIds.get(document.getUri());
+        return id != null ? id : -1;
+    }
+
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    @Nullable
+    public PdfDocument getCurrent() {
+        return currentIndex >= 0 ? documents.get(currentIndex) : null;
+    }
+
+    public void setCurrentIndex(int position) {
+        if (position < -1 || position >= documents.size() || position == currentIndex) return;
+        int previous = currentIndex;
+        currentIndex = position;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onCurrentChanged(previous, position);
+        }
+    }
+
+    public void add(@NonNull PdfDocument document) {
+        add(documents.size(), document);
+    }
+
+    /**
+     * Insert a document; one already open from the same URI is left as it is
+     */
+    public void add(int position, @NonNull PdfDocument document) {
+        if (positions.containsKey(document.getUri())) return;
+        documents.add(position, document);
+        updatePositions(position);
+        stableIds.put(document.getUri(), nextStableId++);
+        indexFingerprint(document);
+        if (currentIndex >= position) {
+            // The same document is still shown, one place further
+            currentIndex++;
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onDocumentInserted(position);
+        }
+    }
+
+    /**
+     * Remove a document; if it was the one shown, none is shown until the caller picks another
+     */
+    @NonNull
+    public PdfDocument remove(int position) {
+        PdfDocument document = documents.remove(position);
+        positions.remove(document.getUri());
+        updatePositions(position);
+        stableIds.remove(document.getUri());
+        unindexFingerprint(document, document.getFingerprint());
+
+        int previous = currentIndex;
+        if (currentIndex == position) {
+            currentIndex = -1;
+        } else if (currentIndex > position) {
+            currentIndex--;
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onDocumentRemoved(position);
+            if (previous == position) {
+                listener.onCurrentChanged(-1, -1);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Put a new model of the same document in place of the old, e.g. under a new name
+     */
+    public void replace(int position, @NonNull PdfDocument document) {
+        PdfDocument old = documents.set(position, document);
+        unindexFingerprint(old, old.getFingerprint());
+        indexFingerprint(document);
+        notifyChanged(position);
+    }
+
+    /**
+     * Record the content fingerprint of an open document
+     */
+    public void setFingerprint(@NonNull PdfDocument document, @NonNull String fingerprint) {
+        String old = document.getFingerprint();
+        if (fingerprint.equals(old)) return;
+        document.setFingerprint(fingerprint);
+        unindexFingerprint(document, old);
+        indexFingerprint(document);
+    }
+
+    /**
+     * A field of the document at a position has changed
+     */
+    public void notifyChanged(int position) {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onDocumentChanged(position);
+        }
+    }
+
+    /**
+     * Remove every document, without events; for replacing the contents before anything listens
+     */
+    public void clear() {
+        documents.clear();
+        positions.clear();
+        byFingerprint.clear();
+        stableIds.clear();
+        currentIndex = -1;
+    }
+
+    private void indexFingerprint(PdfDocument document) {
+        String fingerprint = document.getFingerprint();
+        // The first document open with some content keeps it; later ones are duplicates
+        if (fingerprint != null && !byFingerprint.containsKey(fingerprint)) {
+            byFingerprint.put(fingerprint, document);
+        }
+    }
+
+    /**
+     * A document no longer holds a fingerprint, because it was closed, replaced or found to have
+     * other content; if it was the one indexed, the earliest remaining tab with that content
+     * takes its place
+     */
+    private void unindexFingerprint(PdfDocument document, @Nullable String fingerprint) {
+        if (fingerprint == null || byFingerprint.get(fingerprint) != document) return;
+        byFingerprint.remove(fingerprint);
+        for (PdfDocument other : documents) {
+            if (fingerprint.equals(other.getFingerprint())) {
+                byFingerprint.put(fingerprint, other);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Renumber the documents from a position on, after an insert or remove there
+     */
+    private void updatePositions(int from) {
+        for (int i = from; i < documents.size(); i++) {
+            positions.put(documents.get(i).getUri(), i);
+        }
+    }
+}
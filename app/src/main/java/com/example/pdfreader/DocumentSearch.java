@@ -0,0 +1,342 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full-text search over one open document.
+ *
+ * The first time a document is opened, its text is extracted in the background by low-priority
+ * workers, one page at a time, into a {@link SearchIndex} that is then saved under the document's
+ * fingerprint. Later opens load the saved index and answer queries in milliseconds.
+ *
+ * A query made while the index is still being built is answered incrementally: pages already
+ * extracted are scanned at once, and every page extracted afterwards is matched as it completes.
+ * Hits are delivered on the main thread; a new query or {@link #cancel()} drops the old one's.
+ */
+public class DocumentSearch {
+
+    private static final String DIRECTORY = "search";
+
+    public interface Listener {
+        /**
+         * A page containing all query words; pages arrive in no particular order
+         */
+        void onPageHit(int pageIndex);
+
+        /**
+         * All pages have been searched. Not searchable means the document's text cannot be
+         * read, e.g. because it is encrypted.
+         */
+        void onSearchFinished(boolean searchable);
+    }
+
+    private final int pageCount;
+    @Nullable
+    private final File indexFile;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService workers;
+    // Queries run here, one at a time, so a query's finish is delivered after its hits
+    private final ExecutorService queryExecutor;
+
+    // Set once the whole document is indexed
+    private volatile SearchIndex index;
+    // Set when the text cannot be read at all
+    private volatile boolean unsearchable;
+    private volatile boolean closed;
+
+    // Index build state, guarded by lock together with the active query
+    private final Object lock = new Object();
+    private final String[][] pageTerms;
+    private final AtomicInteger nextPage = new AtomicInteger();
+    private int pagesDone;
+    private String[] activeWords;
+    private Listener activeListener;
+    private int activeGeneration;
+
+    // Bumped on the main thread by every query and cancel
+    private volatile int generation;
+
+    /**
+     * Start loading or building the index. The descriptor is duplicated, the caller keeps its own.
+     *
+     * @param fingerprint Document fingerprint to save the index under, null to not save it
+     */
+    public DocumentSearch(@NonNull Context context, @NonNull ParcelFileDescriptor fileDescriptor,
+                          @Nullable String fingerprint, int pageCount) throws IOException {
+        this.pageCount = pageCount;
+        this.pageTerms = new String[pageCount][];
+        this.indexFile = fingerprint != null
+                ? new File(new File(context.getCacheDir(), DIRECTORY), fingerprint + ".idx") : null;
+
+        // Leave a core to rendering; extraction is a nice-to-have
+        int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "PdfSearch");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        queryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PdfSearchQuery");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+
+        ParcelFileDescriptor duplicate = fileDescriptor.dup();
+        workers.execute(() -> start(duplicate, workerCount));
+    }
+
+    private void start(ParcelFileDescriptor fileDescriptor, int workerCount) {
+        PdfReader reader = null;
+        try {
+            if (loadIndex()) return;
+            reader = PdfReader.open(fileDescriptor);
+            if (reader.isEncrypted()) {
+                // Text of encrypted documents cannot be extracted without decrypting it
+                reader = null;
+            } else if (reader.getPages().size() != pageCount) {
+                reader = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            reader = null;
+        } finally {
+            try {
+                fileDescriptor.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (reader == null) {
+            unsearchable = true;
+            finishActive(false);
+            return;
+        }
+        if (pageCount == 0) {
+            index = SearchIndex.build(new String[0][]);
+            finishActive(true);
+            return;
+        }
+
+        // Every worker shares the reader, each with its own extractor
+        PdfReader sharedReader = reader;
+        for (int i = 1; i < workerCount; i++) {
+            try {
+                workers.execute(() -> extractPages(sharedReader));
+            } catch (RejectedExecutionException e) {
+                // Closed meanwhile
+                return;
+            }
+        }
+        extractPages(sharedReader);
+    }
+
+    private boolean loadIndex() {
+        if (indexFile == null || !indexFile.isFile()) return false;
+        try {
+            index = SearchIndex.load(indexFile, pageCount);
+            indexFile.setLastModified(System.currentTimeMillis());
+            finishActive(true);
+            return true;
+        } catch (IOException e) {
+            // Stale or damaged, rebuild it
+            e.printStackTrace();
+            indexFile.delete();
+            return false;
+        }
+    }
+
+    private void extractPages(PdfReader reader) {
+        PdfTextExtractor extractor = new PdfTextExtractor(reader);
+        int page;
+        while (!closed && (page = nextPage.getAndIncrement()) < pageCount) {
+            String[] terms;
+            try {
+                terms = SearchIndex.pageTerms(extractor.extractPage(page));
+            } catch (IOException | RuntimeException e) {
+                // An unreadable page has no text, the rest of the document still does
+                e.printStackTrace();
+                terms = new String[0];
+            }
+            onPageExtracted(page, terms);
+        }
+    }
+
+    private void onPageExtracted(int page, String[] terms) {
+        boolean complete;
+        synchronized (lock) {
+            pageTerms[page] = terms;
+            if (activeWords != null && SearchIndex.matches(terms, activeWords)) {
+                postHit(activeListener, activeGeneration, page);
+            }
+            complete = ++pagesDone == pageCount;
+        }
+        if (!complete) return;
+
+        SearchIndex built = SearchIndex.build(pageTerms);
+        index = built;
+        finishActive(true);
+        if (indexFile != null && !closed) {
+            try {
+                built.save(indexFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Finish the query that was following the index build, after any scan still running for it
+     */
+    private void finishActive(boolean searchable) {
+        Listener listener;
+        int queryGeneration;
+        synchronized (lock) {
+            listener = activeListener;
+            queryGeneration = activeGeneration;
+            activeWords = null;
+            activeListener = null;
+        }
+        if (listener == null) return;
+        try {
+            queryExecutor.execute(() -> postFinished(listener, queryGeneration, searchable));
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile
+        }
+    }
+
+    /**
+     * Search for pages containing every word of the query, each as a word prefix. Call on the
+     * main thread; replaces any search still running.
+     */
+    public void search(@NonNull String query, @NonNull Listener listener) {
+        int queryGeneration = ++generation;
+        String[] words = SearchIndex.queryWords(query);
+        if (closed) return;
+        if (words.length == 0) {
+            postFinished(listener, queryGeneration, !unsearchable);
+            return;
+        }
+
+        SearchIndex currentIndex = index;
+        if (currentIndex != null) {
+            runQuery(() -> {
+                for (int page : currentIndex.search(query)) {
+                    postHit(listener, queryGeneration, page);
+                }
+                postFinished(listener, queryGeneration, true);
+            });
+            return;
+        }
+        if (unsearchable) {
+            postFinished(listener, queryGeneration, false);
+            return;
+        }
+
+        // Still indexing: follow the build, and scan the pages it has done so far
+        BitSet done = new BitSet(pageCount);
+        synchronized (lock) {
+            if (index == null) {
+                activeWords = words;
+                activeListener = listener;
+                activeGeneration = queryGeneration;
+                for (int page = 0; page < pageCount; page++) {
+                    if (pageTerms[page] != null) done.set(page);
+                }
+            }
+        }
+        if (done.isEmpty() && index != null) {
+            // Completed just now
+            search(query, listener);
+            return;
+        }
+        runQuery(() -> {
+            for (int page = done.nextSetBit(0); page >= 0; page = done.nextSetBit(page + 1)) {
+                if (queryGeneration != generation) return;
+                if (SearchIndex.matches(pageTerms[page], words)) {
+                    postHit(listener, queryGeneration, page);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the current search; its listener is not called again
+     */
+    public void cancel() {
+        generation++;
+        synchronized (lock) {
+            activeWords = null;
+            activeListener = null;
+        }
+    }
+
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * Pages whose text has been extracted, for showing indexing progress
+     */
+    public int getIndexedPageCount() {
+        if (index != null) return pageCount;
+        synchronized (lock) {
+            return pagesDone;
+        }
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Delete the saved index of a document, e.g. because it changed on disk
+     */
+    public static void remove(@NonNull Context context, @NonNull String fingerprint) {
+        new File(new File(context.getCacheDir(), DIRECTORY), fingerprint + ".idx").delete();
+    }
+
+    /**
+     * Stop indexing; a partly built index is not saved
+     */
+    public void close() {
+        closed = true;
+        cancel();
+        workers.shutdownNow();
+        queryExecutor.shutdownNow();
+    }
+
+    private void runQuery(Runnable query) {
+        try {
+            queryExecutor.execute(query);
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile
+        }
+    }
+
+    private void postHit(Listener listener, int queryGeneration, int page) {
+        mainHandler.post(() -> {
+            if (queryGeneration == generation && !closed) listener.onPageHit(page);
+        });
+    }
+
+    private void postFinished(Listener listener, int queryGeneration, boolean searchable) {
+        mainHandler.post(() -> {
+            if (queryGeneration == generation && !closed) listener.onSearchFinished(searchable);
+        });
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.pdfreader;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Where a document's bytes come from: a seekable descriptor, as PdfRenderer needs.
+ *
+ * Most providers hand out a descriptor of a regular file, which is used as it is. Cloud and
+ * email providers often stream the document through a pipe instead, which PdfRenderer cannot
+ * seek in, or cannot give a descriptor at all; such documents are copied into a local cache
+ * file in large sequential reads, and the copy is opened instead. Copies are stored under the
+ * SHA-1 of their content, so the same attachment reached through two URIs is stored once, and
+ * each source remembers the copy it produced, so reopening it skips the copy entirely. The cache
+ * is capped in bytes and evicts the least recently opened copies first.
+ */
+public class DocumentSource {
+
+    private static final String DIRECTORY = "documents";
+    // Source to content hash, one small file per source
+    private static final String SOURCES_DIRECTORY = "sources";
+    private static final String SUFFIX = ".pdf";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final int COPY_BUFFER_BYTES = 1024 * 1024;
+
+    private static DocumentSource instance;
+
+    /**
+     * What the provider says about a document, before it is opened
+     */
+    public static final class Info {
+        // Null if the provider has none
+        @Nullable
+        public final String displayName;
+        // -1 where unknown
+        public final long size;
+        public final long lastModified;
+
+        Info(@Nullable String displayName, long size, long lastModified) {
+            this.displayName = displayName;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Progress of a copy, on the copying thread
+     */
+    public interface CopyListener {
+        /**
+         * @param total Bytes expected, -1 if unknown
+         */
+        void onCopied(long copied, long total);
+    }
+
+    private final ContentResolver resolver;
+    private final File directory;
+    private final File sourcesDirectory;
+    private final long maxBytes;
+    private long sizeBytes = -1;
+
+    public static synchronized DocumentSource getInstance(Context context) {
+        if (instance == null) {
+            Context application = context.getApplicationContext();
+            File directory = new File(application.getCacheDir(), DIRECTORY);
+            // Never take more than a tenth of the free space
+            long maxBytes = Math.min(DEFAULT_MAX_BYTES, directory.getParentFile().getUsableSpace() / 10);
+            instance = new DocumentSource(application.getContentResolver(), directory, maxBytes);
+        }
+        return instance;
+    }
+
+    public DocumentSource(@NonNull ContentResolver resolver, @NonNull File directory, long maxBytes) {
+        this.resolver = resolver;
+        this.directory = directory;
+        this.sourcesDirectory = new File(directory, SOURCES_DIRECTORY);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Ask the provider for a document's name, size and modification time; what it cannot tell
+     * is left unknown
+     */
+    @NonNull
+    public Info resolve(@NonNull Uri uri, @Nullable CancellationSignal signal) {
+        String displayName = null;
+        long size = -1;
+        long lastModified = -1;
+        // All columns: some providers reject projections naming columns they do not have
+        try (Cursor cursor = resolver.query(uri, null, null, null, null, signal)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                int modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                if (nameIndex != -1) {
+                    displayName = cursor.getString(nameIndex);
+                }
+                if (sizeIndex != -1 && !cursor.isNull(sizeIndex)) {
+                    size = cursor.getLong(sizeIndex);
+                }
+                if (modifiedIndex != -1 && !cursor.isNull(modifiedIndex)) {
+                    lastModified = cursor.getLong(modifiedIndex);
+                }
+            }
+        } catch (OperationCanceledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Some providers reject queries they cannot answer; opening the document will tell
+            e.printStackTrace();
+        }
+        return new Info(displayName, size, lastModified);
+    }
+
+    /**
+     * Open a document seekably: directly if the provider gives a regular file, else from the
+     * local copy, which is made first if there is none
+     * @param info From {@link #resolve}, to recognize a source copied before
+     * @param listener Told of a copy's progress; not called if nothing is copied
+     * @throws OperationCanceledException If cancelled; a partial copy is removed
+     */
+    @NonNull
+    public ParcelFileDescriptor open(@NonNull Uri uri, @NonNull Info info, @Nullable CancellationSignal signal,
+                                     @Nullable CopyListener listener) throws IOException {
+        String sourceKey = sourceKey(uri, info);
+        ParcelFileDescriptor copy = openCopy(sourceKey);
+        if (copy != null) return copy;
+
+        ParcelFileDescriptor fileDescriptor;
+        try {
+            fileDescriptor = resolver.openFileDescriptor(uri, "r", signal);
+        } catch (FileNotFoundException e) {
+            // No plain descriptor, e.g. attachments served from within a larger file: stream it
+            InputStream in = resolver.openInputStream(uri);
+            if (in == null) throw e;
+            return spill(sourceKey, Channels.newChannel(in), info.size, signal, listener);
+        }
+        if (fileDescriptor == null) {
+            throw new FileNotFoundException("No descriptor for " + uri);
+        }
+        // Regular files have a size; pipes and sockets do not
+        if (fileDescriptor.getStatSize() >= 0) return fileDescriptor;
+
+        FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor);
+        return spill(sourceKey, in.getChannel(), info.size, signal, listener);
+    }
+
+    /**
+     * Open a document only if that needs no copying: directly if seekable, else from an
+     * earlier copy. For background work that should not download documents, like thumbnails.
+     * @return Null if the document would have to be copied first
+     */
+    @Nullable
+    public ParcelFileDescriptor openLocal(@NonNull Uri uri) throws IOException {
+        ParcelFileDescriptor copy = openCopy(sourceKey(uri, resolve(uri, null)));
+        if (copy != null) return copy;
+
+        ParcelFileDescriptor fileDescriptor;
+        try {
+            fileDescriptor = resolver.openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        if (fileDescriptor == null || fileDescriptor.getStatSize() >= 0) return fileDescriptor;
+        fileDescriptor.close();
+        return null;
+    }
+
+    /**
+     * Delete least recently opened copies until the cache holds at most targetBytes
+     * @return number of bytes freed
+     */
+    public synchronized long trimToSize(long targetBytes) {
+        return trimToSize(targetBytes, null);
+    }
+
+    public synchronized long getSizeBytes() {
+        ensureSizeKnown();
+        return sizeBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * The copy this source produced before, marked as recently used; null if there is none
+     */
+    @Nullable
+    private synchronized ParcelFileDescriptor openCopy(String sourceKey) {
+        File alias = new File(sourcesDirectory, sha1(sourceKey.getBytes(StandardCharsets.UTF_8)));
+        if (!alias.isFile()) return null;
+        File file;
+        try (FileInputStream in = new FileInputStream(alias)) {
+            byte[] hash = new byte[40];
+            int length = in.read(hash);
+            file = new File(directory, new String(hash, 0, Math.max(0, length), StandardCharsets.US_ASCII) + SUFFIX);
+        } catch (IOException e) {
+            e.printStackTrace();
+            alias.delete();
+            return null;
+        }
+        if (!file.isFile()) {
+            // Evicted since
+            alias.delete();
+            return null;
+        }
+        try {
+            ParcelFileDescriptor fileDescriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+            file.setLastModified(System.currentTimeMillis());
+            return fileDescriptor;
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Copy a stream into the cache under the hash of its content, remember it for the source,
+     * make room for it, and open it. Closes the stream.
+     */
+    private ParcelFileDescriptor spill(String sourceKey, ReadableByteChannel in, long expectedSize,
+                                       @Nullable CancellationSignal signal, @Nullable CopyListener listener)
+            throws IOException {
+        File partial;
+        String hash;
+        try {
+            synchronized (this) {
+                ensureSizeKnown();
+                if (!sourcesDirectory.isDirectory() && !sourcesDirectory.mkdirs()) {
+                    throw new IOException("Cannot create " + sourcesDirectory);
+                }
+            }
+            partial = File.createTempFile("copy", PARTIAL_SUFFIX, directory);
+            if (signal != null) {
+                // A read blocked on a slow provider only returns if the stream is closed
+                signal.setOnCancelListener(() -> closeQuietly(in));
+            }
+            try {
+                hash = copy(in, partial, expectedSize, signal, listener);
+            } catch (IOException | RuntimeException e) {
+                partial.delete();
+                if (signal != null) {
+                    signal.throwIfCanceled();
+                }
+                throw e;
+            }
+        } finally {
+            if (signal != null) {
+                signal.setOnCancelListener(null);
+            }
+            in.close();
+        }
+
+        File file = new File(directory, hash + SUFFIX);
+        synchronized (this) {
+            long length = partial.length();
+            if (file.isFile()) {
+                // The same content came in through another source
+                partial.delete();
+            } else if (partial.renameTo(file)) {
+                sizeBytes += length;
+            } else {
+                partial.delete();
+                throw new IOException("Cannot store " + file);
+            }
+            writeAlias(sourceKey, hash);
+            file.setLastModified(System.currentTimeMillis());
+            trimToSize(maxBytes, file);
+        }
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    /**
+     * Copy in large sequential reads and writes, hashing on the way
+     * @return Hex SHA-1 of the content
+     */
+    private static String copy(ReadableByteChannel in, File destination, long expectedSize,
+                               @Nullable CancellationSignal signal, @Nullable CopyListener listener)
+            throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_BYTES);
+        long copied = 0;
+        try (FileOutputStream out = new FileOutputStream(destination);
+             FileChannel channel = out.getChannel()) {
+            while (true) {
+                if (signal != null) {
+                    signal.throwIfCanceled();
+                }
+                // Fill the buffer, so writes are as large as reads allow
+                int read = 0;
+                while (buffer.hasRemaining() && (read = in.read(buffer)) > 0) {
+                    // Keep reading
+                }
+                if (buffer.position() == 0 && read < 0) break;
+
+                buffer.flip();
+                digest.update(buffer.array(), 0, buffer.limit());
+                copied += buffer.limit();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+                if (listener != null) {
+                    listener.onCopied(copied, expectedSize);
+                }
+                if (read < 0) break;
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    private void writeAlias(String sourceKey, String hash) {
+        File alias = new File(sourcesDirectory, sha1(sourceKey.getBytes(StandardCharsets.UTF_8)));
+        try (FileOutputStream out = new FileOutputStream(alias)) {
+            out.write(hash.getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            // Only costs a copy the next time
+            e.printStackTrace();
+            alias.delete();
+        }
+    }
+
+    /**
+     * What identifies a source's content without reading it: URI, size and modification time.
+     * Providers that report neither, like most email apps, serve attachments that do not change.
+     */
+    private static String sourceKey(Uri uri, Info info) {
+        return uri + "\n" + info.size + "\n" + info.lastModified;
+    }
+
+    private long trimToSize(long targetBytes, @Nullable File keep) {
+        ensureSizeKnown();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) return 0;
+
+        // Least recently opened first
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long freed = 0;
+        for (File file : files) {
+            if (sizeBytes <= targetBytes) break;
+            if (file.equals(keep)) continue;
+            long length = file.length();
+            if (file.delete()) {
+                sizeBytes -= length;
+                freed += length;
+            }
+        }
+        // Aliases of evicted copies are dropped as they are next looked up
+        return freed;
+    }
+
+    /**
+     * Add up the copies, and remove partial ones left by a copy that was interrupted.
+     * Runs before the first copy of the process, so none are in progress.
+     */
+    private void ensureSizeKnown() {
+        if (sizeBytes >= 0) return;
+        sizeBytes = 0;
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().endsWith(PARTIAL_SUFFIX)) {
+                file.delete();
+            } else if (file.getName().endsWith(SUFFIX)) {
+                sizeBytes += file.length();
+            }
+        }
+    }
+
+    private static void closeQuietly(ReadableByteChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String sha1(byte[] bytes) {
+        try {
+            return hex(MessageDigest.getInstance("SHA-1").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.pdfreader;
 
+import android.content.Context;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -13,8 +14,10 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-
+/**
+ * Grid of the open documents with their first pages, shown over the viewer.
+ * The activity it is attached to receives the picks.
+ */
 public class HomeFragment extends Fragment {
     private RecyclerView recentPdfRecyclerView;
     private LinearLayout emptyStateLayout;
@@ -31,9 +34,22 @@ public class HomeFragment extends Fragment {
         void onOpenPdfClicked();
     }
 
-    public HomeFragment(List<PdfDocument> recentPdfs, OnPdfSelectedListener listener, OnOpenPdfListener openPdfListener) {
-        this.listener = listener;
-        this.openPdfListener = openPdfListener;
+    @Override
+    public void onAttach(@NonNull Context context) {
+        super.onAttach(context);
+        if (context instanceof OnPdfSelectedListener) {
+            listener = (OnPdfSelectedListener) context;
+        }
+        if (context instanceof OnOpenPdfListener) {
+            openPdfListener = (OnOpenPdfListener) context;
+        }
+    }
+
+    @Override
+    public void onDetach() {
+        super.onDetach();
+        listener = null;
+        openPdfListener = null;
     }
 
     @Nullable
@@ -54,7 +70,7 @@ public class HomeFragment extends Fragment {
         // Get recent PDFs from activity
         MainActivity activity = (MainActivity) getActivity();
         if (activity != null) {
-            List<PdfDocument> recentPdfs = activity.getOpenedDocuments();
+            DocumentRegistry recentPdfs = activity.getDocumentRegistry();
             
             if (recentPdfs.isEmpty()) {
                 // Show empty state
@@ -73,16 +89,26 @@ public class HomeFragment extends Fragment {
                 recentPdfsLayout.setVisibility(View.VISIBLE);
                 
                 // Setup adapter
-                adapter = new RecentPdfAdapter(recentPdfs, position -> {
+                adapter = new RecentPdfAdapter(recentPdfs, document -> {
                     if (listener != null) {
-                        listener.onRecentPdfSelected(recentPdfs.get(position));
+                        listener.onRecentPdfSelected(document);
                     }
                 });
                 
                 // Use GridLayoutManager for a nice grid layout
                 recentPdfRecyclerView.setLayoutManager(new GridLayoutManager(getContext(), 2));
                 recentPdfRecyclerView.setAdapter(adapter);
+
+                // A pick from the grid is likely; get its document ready while the user looks
+                activity.prewarmNextDocument();
             }
         }
     }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Detaching the adapter unsubscribes it from the registry
+        recentPdfRecyclerView.setAdapter(null);
+    }
 }
@@ -0,0 +1,135 @@
+package com.example.pdfreader;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of a latency, cheap enough to record from render threads on every page.
+ *
+ * Values are counted in microseconds into logarithmic buckets, four per power of two, so a
+ * recorded value is known to within 25% at any magnitude, from 1 microsecond to over a
+ * minute. Recording is a few atomic increments and takes no lock; percentiles are read from the
+ * bucket counts. Thread-safe.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Buckets for values up to 2^29 microseconds, about nine minutes; larger values share the last one
+    private static final int OCTAVES = 28;
+    private static final int BUCKET_COUNT = OCTAVES * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public LatencyHistogram(@NonNull String name) {
+        this.name = name;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record the time elapsed since a {@link System#nanoTime()} reading
+     */
+    public void recordSince(long startNanos) {
+        recordMicros((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) micros = 0;
+        buckets.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // Lost a race with another maximum, look again
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanMicros() {
+        long n = count.get();
+        return n != 0 ? totalMicros.get() / n : 0;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, e.g. 99 for p99; 0 if empty
+     */
+    public long getPercentileMicros(double percentile) {
+        long n = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /**
+     * Bucket of a value: the octave is its highest set bit, the sub-bucket the next two bits
+     */
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int octave = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (octave - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int bucket = (octave - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Largest value that falls into a bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int octave = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long lower = (1L << octave) + ((long) sub << (octave - SUB_BUCKET_BITS));
+        return lower + (1L << (octave - SUB_BUCKET_BITS)) - 1;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format("%-14s n=%-6d p50=%-8s p90=%-8s p99=%-8s max=%s", name, getCount(),
+                formatMicros(getPercentileMicros(50)), formatMicros(getPercentileMicros(90)),
+                formatMicros(getPercentileMicros(99)), formatMicros(getMaxMicros()));
+    }
+
+    @NonNull
+    static String formatMicros(long micros) {
+        if (micros < 1000) return micros + "us";
+        if (micros < 100_000) return String.format("%.1fms", micros / 1000.0);
+        return (micros / 1000) + "ms";
+    }
+}
@@ -19,6 +19,7 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.PopupMenu;
@@ -34,29 +35,54 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Main activity that manages multiple PDF viewer fragments and tab navigation.
  * Handles file selection, permissions, and fragment lifecycle.
  */
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity
+        implements HomeFragment.OnPdfSelectedListener, HomeFragment.OnOpenPdfListener {
 
     private static final String STATE_DOCUMENTS = "state_documents";
     private static final String STATE_CURRENT_INDEX = "state_current_index";
+    // Where older versions saved the tabs; only read once, to move them into the session journal
     private static final String PREFS_NAME = "pdf_reader_prefs";
     private static final String PREFS_DOCUMENTS = "saved_documents";
     private static final String PREFS_CURRENT_INDEX = "saved_current_index";
+    private static final String PREFS_DOCUMENT_ENTRIES = "saved_document_entries";
+
+    // Saved tabs checked at once during startup
+    private static final int RESTORE_THREADS = 4;
     private static final int REQUEST_PERMISSION_CODE = 100;
+    // Tag and back stack name of the document overview
+    private static final String HOME_TAG = "home";
 
     private FloatingActionButton fabAddPdf;
     private ImageButton pdfMenuButton;
     private androidx.appcompat.widget.Toolbar toolbar;
     private PopupWindow floatingPanel;
     
-    private final List<PdfDocument> openedDocuments = new ArrayList<>();
-    private int currentDocumentIndex = -1;
+    // Open tabs and the one on screen
+    private final DocumentRegistry documents = new DocumentRegistry();
+    // Tab whose fragment is on screen, the only one a switch has to hide
+    private Uri shownUri;
+    // Reads page counts from the file structure, ahead of the renderers
+    private final ExecutorService metadataExecutor = Executors.newSingleThreadExecutor();
+    // Saved tabs in their saved order while some are still being checked, else null
+    private List<PdfDocument> restoreOrder;
+    // Saved tabs not checked yet; they join the open documents as their checks complete
+    private final List<PdfDocument> pendingDocuments = new ArrayList<>();
+    // Saved tabs whose checks have completed
+    private int checkedCount;
+    // Keeps the most recently used tabs live and hibernates the rest
+    private TabManager tabManager;
+    // Opens the tab likely to be picked next while a list of documents is shown
+    private DocumentPrewarmer prewarmer;
 
     // Activity result launcher for file picker
     private final ActivityResultLauncher<Intent> filePickerLauncher = 
@@ -85,8 +111,18 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTimings.mark(StartupTimings.ACTIVITY_CREATE);
         super.onCreate(savedInstanceState);
+        // Starts loading the saved session in the background while the layout is inflated
+        SessionJournal.getInstance(this);
         setContentView(R.layout.activity_main);
+        StartupTimings.mark(StartupTimings.CONTENT_VIEW);
+        tabManager = new TabManager(this);
+        prewarmer = new DocumentPrewarmer(this, tabManager);
+        MemoryGovernor governor = MemoryGovernor.getInstance(this);
+        governor.setTier(MemoryGovernor.TIER_PREWARMED, prewarmer::trim);
+        governor.setTier(MemoryGovernor.TIER_TAB_SNAPSHOTS, pressure -> tabManager.dropSnapshots());
+        governor.setTier(MemoryGovernor.TIER_LIVE_TABS, this::trimLiveTabs);
         
         // Disable the default ActionBar since we have a custom toolbar
         if (getSupportActionBar() != null) {
@@ -99,7 +135,7 @@ public class MainActivity extends AppCompatActivity {
         if (savedInstanceState != null) {
             restoreState(savedInstanceState);
         } else {
-            // Try to restore from SharedPreferences first (persistent across app restarts)
+            // Try to restore the saved session first (persistent across app restarts)
             restorePersistedState();
         }
         
@@ -110,8 +146,8 @@ public class MainActivity extends AppCompatActivity {
     /**
      * Public method to get opened documents (for HomeFragment)
      */
-    public List<PdfDocument> getOpenedDocuments() {
-        return openedDocuments;
+    public DocumentRegistry getDocumentRegistry() {
+        return documents;
     }
 
     private void initializeViews() {
@@ -135,7 +171,7 @@ public class MainActivity extends AppCompatActivity {
      * Show dialog with list of opened PDFs with close buttons
      */
     private void showPdfMenu() {
-        if (openedDocuments.isEmpty()) {
+        if (documents.isEmpty()) {
             // If no PDFs open, just open file picker
             checkPermissionAndOpenFile();
             return;
@@ -150,14 +186,12 @@ public class MainActivity extends AppCompatActivity {
         View panelView = LayoutInflater.from(this).inflate(R.layout.floating_pdf_panel, null);
         RecyclerView recyclerView = panelView.findViewById(R.id.floatingPdfListRecyclerView);
         
-        // Declare adapter as final so it can be used in the listener
-        final PdfListAdapter[] adapterHolder = new PdfListAdapter[1];
-        
-        // Setup RecyclerView with adapter
-        adapterHolder[0] = new PdfListAdapter(openedDocuments, currentDocumentIndex, new PdfListAdapter.OnPdfActionListener() {
+        // Setup RecyclerView with adapter; it follows the registry, so closing a document here
+        // removes just its row
+        PdfListAdapter adapter = new PdfListAdapter(documents, new PdfListAdapter.OnPdfActionListener() {
             @Override
-            public void onPdfSelected(int position) {
-                switchToDocument(position);
+            public void onPdfSelected(PdfDocument document) {
+                switchToDocument(documents.indexOf(document.getUri()));
                 // Close floating panel when document selected
                 if (floatingPanel != null && floatingPanel.isShowing()) {
                     floatingPanel.dismiss();
@@ -165,14 +199,11 @@ public class MainActivity extends AppCompatActivity {
             }
 
             @Override
-            public void onPdfClosed(int position) {
-                closeDocument(position);
-                // Refresh adapter to remove item from list
-                adapterHolder[0].notifyItemRemoved(position);
-                adapterHolder[0].notifyItemRangeChanged(position, openedDocuments.size());
+            public void onPdfClosed(PdfDocument document) {
+                closeDocument(documents.indexOf(document.getUri()));
                 
                 // If all documents closed, close the panel
-                if (openedDocuments.isEmpty()) {
+                if (documents.isEmpty()) {
                     if (floatingPanel != null && floatingPanel.isShowing()) {
                         floatingPanel.dismiss();
                     }
@@ -181,7 +212,7 @@ public class MainActivity extends AppCompatActivity {
         });
         
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        recyclerView.setAdapter(adapterHolder[0]);
+        recyclerView.setAdapter(adapter);
         
         // Setup button
         android.widget.Button openButton = panelView.findViewById(R.id.floatingOpenAnotherPdfButton);
@@ -190,6 +221,33 @@ public class MainActivity extends AppCompatActivity {
             checkPermissionAndOpenFile();
         });
         
+        // Grid of the open documents with their first pages
+        android.widget.Button allDocumentsButton = panelView.findViewById(R.id.floatingAllDocumentsButton);
+        allDocumentsButton.setOnClickListener(v -> {
+            floatingPanel.dismiss();
+            showHome();
+        });
+
+        // Table of contents of the document on screen
+        android.widget.Button contentsButton = panelView.findViewById(R.id.floatingContentsButton);
+        contentsButton.setOnClickListener(v -> {
+            floatingPanel.dismiss();
+            PdfViewerFragment fragment = getCurrentFragment();
+            if (fragment != null) {
+                fragment.showOutline();
+            }
+        });
+
+        // Search the document on screen
+        android.widget.Button searchButton = panelView.findViewById(R.id.floatingSearchButton);
+        searchButton.setOnClickListener(v -> {
+            floatingPanel.dismiss();
+            PdfViewerFragment fragment = getCurrentFragment();
+            if (fragment != null) {
+                fragment.showSearch();
+            }
+        });
+        
         // Create PopupWindow
         floatingPanel = new PopupWindow(
             panelView,
@@ -198,10 +256,44 @@ public class MainActivity extends AppCompatActivity {
             true
         );
         floatingPanel.setElevation(8);
+        // Unsubscribes the list from the registry
+        floatingPanel.setOnDismissListener(() -> recyclerView.setAdapter(null));
         floatingPanel.setBackgroundDrawable(new android.graphics.drawable.ColorDrawable(android.graphics.Color.TRANSPARENT));
         
         // Show near FAB (top-right area)
         floatingPanel.showAsDropDown(fabAddPdf, -450 + fabAddPdf.getWidth(), 0);
+
+        // A pick from the list is likely; get its document ready while the user looks
+        prewarmNextDocument();
+    }
+
+    /**
+     * Show the document overview over the viewer; back or a pick closes it
+     */
+    private void showHome() {
+        FragmentManager fm = getSupportFragmentManager();
+        if (fm.findFragmentByTag(HOME_TAG) != null || fm.isStateSaved()) return;
+        fm.beginTransaction()
+                .add(R.id.fragmentContainer, new HomeFragment(), HOME_TAG)
+                .addToBackStack(HOME_TAG)
+                .commit();
+    }
+
+    private void closeHome() {
+        FragmentManager fm = getSupportFragmentManager();
+        if (fm.findFragmentByTag(HOME_TAG) == null || fm.isStateSaved()) return;
+        fm.popBackStack(HOME_TAG, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+    }
+
+    @Override
+    public void onRecentPdfSelected(PdfDocument document) {
+        switchToDocument(documents.indexOf(document.getUri()));
+    }
+
+    @Override
+    public void onOpenPdfClicked() {
+        closeHome();
+        checkPermissionAndOpenFile();
     }
 
     /**
@@ -248,31 +340,33 @@ public class MainActivity extends AppCompatActivity {
      * Open a PDF document from URI
      */
     private void openPdfDocument(Uri uri) {
-        // Check if already opened
-        for (PdfDocument doc : openedDocuments) {
-            if (doc.getUri().equals(uri)) {
-                int index = openedDocuments.indexOf(doc);
-                switchToDocument(index);
-                Toast.makeText(this, "PDF already opened", Toast.LENGTH_SHORT).show();
-                return;
-            }
+        // Check if already opened; the same content under another URI is caught once it is read
+        int index = documents.indexOf(uri);
+        if (index >= 0) {
+            switchToDocument(index);
+            Toast.makeText(this, "PDF already opened", Toast.LENGTH_SHORT).show();
+            return;
         }
 
-        // Get filename from URI
-        String filename = getFileNameFromUri(uri);
+        // The name read last time, if any; the viewer looks up the current one while it opens
+        SessionJournal journal = SessionJournal.getInstance(this);
+        SessionJournal.DocumentState state = journal.getDocument(uri.toString());
+        String filename = state != null ? state.displayName : "document.pdf";
         
         // Create PdfDocument model
         PdfDocument document = new PdfDocument(uri, filename);
-        openedDocuments.add(document);
+        documents.add(document);
+        journal.recordOpened(uri.toString(), filename);
+        loadMetadata(document);
         
         // Switch to new document
-        int newIndex = openedDocuments.size() - 1;
+        int newIndex = documents.size() - 1;
         switchToDocument(newIndex);
         
         // Show/hide empty state
         updateEmptyState();
         
-        // Save to SharedPreferences
+        // Save the session
         savePersistedState();
     }
 
@@ -280,10 +374,14 @@ public class MainActivity extends AppCompatActivity {
      * Switch to a different document
      */
     private void switchToDocument(int index) {
-        if (index < 0 || index >= openedDocuments.size()) return;
+        if (index < 0 || index >= documents.size()) return;
+        // The viewer goes on top of the overview, if shown
+        closeHome();
         
-        currentDocumentIndex = index;
-        PdfDocument document = openedDocuments.get(index);
+        PdfDocument previous = documents.getCurrent();
+        documents.setCurrentIndex(index);
+        PdfDocument document = documents.get(index);
+        prewarmer.onSwitched(previous != null ? previous.getUri() : null, document.getUri());
         
         // Show fragment
         showPdfFragment(document);
@@ -293,9 +391,23 @@ public class MainActivity extends AppCompatActivity {
      * Close a document
      */
     private void closeDocument(int position) {
-        if (position < 0 || position >= openedDocuments.size()) return;
-        
-        PdfDocument document = openedDocuments.get(position);
+        closeDocument(position, null);
+    }
+
+    /**
+     * Close a document and show another one straight after, without passing through the tab
+     * that would otherwise take the closed one's place
+     * @param next Document to show, or null to show the one before the closed one if it was shown
+     */
+    private void closeDocument(int position, @Nullable PdfDocument next) {
+        if (position < 0 || position >= documents.size()) return;
+        
+        PdfDocument document = documents.get(position);
+        tabManager.remove(document.getUri());
+        prewarmer.onClosed(document.getUri());
+        if (document.getUri().equals(shownUri)) {
+            shownUri = null;
+        }
         
         // Remove fragment
         String tag = getFragmentTag(document.getUri());
@@ -306,26 +418,23 @@ public class MainActivity extends AppCompatActivity {
                     .commit();
         }
         
-        // Remove from list
-        openedDocuments.remove(position);
+        // Remove from list; the registry keeps the current index on the same document
+        boolean wasCurrent = documents.getCurrentIndex() == position;
+        documents.remove(position);
         
-        // Update current index
-        if (currentDocumentIndex == position) {
+        int nextIndex = next != null ? documents.indexOf(next.getUri()) : -1;
+        if (nextIndex >= 0) {
+            switchToDocument(nextIndex);
+        } else if (wasCurrent && !documents.isEmpty()) {
             // Switch to previous or next document
-            if (openedDocuments.isEmpty()) {
-                currentDocumentIndex = -1;
-            } else if (position > 0) {
-                switchToDocument(position - 1);
-            } else {
-                switchToDocument(0);
-            }
-        } else if (currentDocumentIndex > position) {
-            currentDocumentIndex--;
+            switchToDocument(Math.max(0, position - 1));
+        } else if (documents.isEmpty()) {
+            closeHome();
         }
         
         updateEmptyState();
         
-        // Save to SharedPreferences
+        // Save the session
         savePersistedState();
     }
 
@@ -336,21 +445,29 @@ public class MainActivity extends AppCompatActivity {
         String tag = getFragmentTag(document.getUri());
         FragmentManager fm = getSupportFragmentManager();
         
-        // Hide all fragments first
+        // Hide the outgoing tab; every other one is hidden already
         FragmentTransaction transaction = fm.beginTransaction();
-        for (PdfDocument doc : openedDocuments) {
-            String docTag = getFragmentTag(doc.getUri());
-            Fragment fragment = fm.findFragmentByTag(docTag);
-            if (fragment != null) {
-                transaction.hide(fragment);
+        if (shownUri != null && !shownUri.equals(document.getUri())) {
+            Fragment outgoing = fm.findFragmentByTag(getFragmentTag(shownUri));
+            if (outgoing != null) {
+                transaction.hide(outgoing);
             }
         }
+        shownUri = document.getUri();
+
+        // Hibernate the tabs used least recently beyond the live budget; their position is saved
+        // to the session as they pause, and a snapshot of their screen is kept for switching back
+        for (Uri uri : tabManager.onTabShown(document.getUri())) {
+            hibernateTab(transaction, uri, true);
+        }
         
         // Find or create fragment
         PdfViewerFragment fragment = (PdfViewerFragment) fm.findFragmentByTag(tag);
         if (fragment == null) {
-            // Create new fragment
+            // Create new fragment, or wake a hibernated one from its snapshot
             fragment = PdfViewerFragment.newInstance(document.getUri(), document.getDisplayName());
+            fragment.setResumeSnapshot(tabManager.takeSnapshot(document.getUri()));
+            fragment.setPrewarmed(prewarmer.take(document.getUri()));
             transaction.add(R.id.fragmentContainer, fragment, tag);
         } else {
             // Show existing fragment
@@ -360,6 +477,48 @@ public class MainActivity extends AppCompatActivity {
         transaction.commit();
     }
 
+    /**
+     * Open the document most likely to be picked next from a list of the open documents, so
+     * picking it does not pay for the open; see {@link DocumentPrewarmer}
+     */
+    public void prewarmNextDocument() {
+        PdfDocument current = documents.getCurrent();
+        prewarmer.prewarm(prewarmer.predict(current != null ? current.getUri() : null, documents.getAll()));
+    }
+
+    /**
+     * Release a tab's fragment; switching back to it re-creates it
+     */
+    private void hibernateTab(FragmentTransaction transaction, Uri uri, boolean withSnapshot) {
+        Fragment fragment = getSupportFragmentManager().findFragmentByTag(getFragmentTag(uri));
+        if (fragment != null) {
+            tabManager.hibernate(uri, withSnapshot ? TabManager.captureSnapshot(fragment.getView()) : null);
+            transaction.remove(fragment);
+        } else {
+            tabManager.hibernate(uri, null);
+        }
+    }
+
+    /**
+     * Memory governor tier: under critical pressure only the tab on screen stays live
+     * @return Estimated bytes freed
+     */
+    private long trimLiveTabs(int pressure) {
+        if (pressure < MemoryGovernor.PRESSURE_CRITICAL || isFinishing()) return 0;
+        PdfDocument currentDocument = documents.getCurrent();
+        Uri current = currentDocument != null ? currentDocument.getUri() : null;
+        List<Uri> background = current != null ? tabManager.getBackgroundTabs(current) : new ArrayList<>();
+        if (background.isEmpty()) return 0;
+
+        // Snapshots were just dropped as the cheaper tier, so none are taken now
+        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
+        for (Uri uri : background) {
+            hibernateTab(transaction, uri, false);
+        }
+        transaction.commitAllowingStateLoss();
+        return (long) background.size() * MemoryGovernor.HEAP_MB_PER_LIVE_TAB * 1024 * 1024;
+    }
+
     /**
      * Generate fragment tag from URI
      */
@@ -368,21 +527,13 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Get filename from URI using ContentResolver
+     * Fragment of the document on screen, if any
      */
-    private String getFileNameFromUri(Uri uri) {
-        String filename = "document.pdf";
-        try (Cursor cursor = getContentResolver().query(uri, null, null, null, null)) {
-            if (cursor != null && cursor.moveToFirst()) {
-                int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
-                if (nameIndex != -1) {
-                    filename = cursor.getString(nameIndex);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return filename;
+    private PdfViewerFragment getCurrentFragment() {
+        PdfDocument document = documents.getCurrent();
+        if (document == null) return null;
+        String tag = getFragmentTag(document.getUri());
+        return (PdfViewerFragment) getSupportFragmentManager().findFragmentByTag(tag);
     }
 
     /**
@@ -392,17 +543,17 @@ public class MainActivity extends AppCompatActivity {
         try {
             View emptyState = findViewById(R.id.emptyStateLayout);
             if (emptyState != null) {
-                emptyState.setVisibility(openedDocuments.isEmpty() ? View.VISIBLE : View.GONE);
+                emptyState.setVisibility(documents.isEmpty() ? View.VISIBLE : View.GONE);
             }
             
             // Show toolbar only when no PDFs are open
             if (toolbar != null) {
-                toolbar.setVisibility(openedDocuments.isEmpty() ? View.VISIBLE : View.GONE);
+                toolbar.setVisibility(documents.isEmpty() ? View.VISIBLE : View.GONE);
             }
             
             // Move FAB based on whether PDFs are open and set opacity
             if (fabAddPdf != null) {
-                if (openedDocuments.isEmpty()) {
+                if (documents.isEmpty()) {
                     // Bottom right when no PDFs - full opacity
                     moveFabToBottomRight();
                     fabAddPdf.setAlpha(1.0f);
@@ -414,7 +565,7 @@ public class MainActivity extends AppCompatActivity {
             }
             
             // Toggle full screen mode
-            if (openedDocuments.isEmpty()) {
+            if (documents.isEmpty()) {
                 // Show status bar
                 showStatusBar();
             } else {
@@ -497,7 +648,7 @@ public class MainActivity extends AppCompatActivity {
      * Show the FAB
      */
     public void showFab() {
-        if (fabAddPdf != null && !openedDocuments.isEmpty()) {
+        if (fabAddPdf != null && !documents.isEmpty()) {
             fabAddPdf.show();
         }
     }
@@ -511,16 +662,76 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Fill in a document's page count from its file structure, without waiting for a PdfRenderer
+     */
+    private void loadMetadata(PdfDocument document) {
+        Uri uri = document.getUri();
+        metadataExecutor.execute(() -> {
+            PdfMetadata metadata;
+            try {
+                metadata = PdfMetadata.read(DocumentSource.getInstance(this), uri);
+            } catch (IOException | RuntimeException e) {
+                // The renderer reports the count once the document is shown
+                e.printStackTrace();
+                return;
+            }
+            int pageCount = metadata.getPageCount();
+            runOnUiThread(() -> {
+                // The renderer's count, if already known, is authoritative
+                if (document.getPageCount() == 0 && pageCount > 0) {
+                    document.setPageCount(pageCount);
+                    SessionJournal.getInstance(this).recordPageCount(uri.toString(), pageCount);
+                    int position = documents.indexOf(uri);
+                    if (position >= 0 && documents.get(position) == document) {
+                        documents.notifyChanged(position);
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Callback from fragment when the provider has reported the document's current name
+     */
+    public void onDocumentRenamed(Uri uri, String displayName) {
+        int position = documents.indexOf(uri);
+        if (position < 0) return;
+        PdfDocument document = documents.get(position);
+        if (displayName.equals(document.getDisplayName())) return;
+        PdfDocument renamed = new PdfDocument(uri, displayName);
+        renamed.setFingerprint(document.getFingerprint());
+        renamed.setPageCount(document.getPageCount());
+        renamed.setCurrentPage(document.getCurrentPage());
+        documents.replace(position, renamed);
+        SessionJournal.getInstance(this).recordName(uri.toString(), displayName);
+    }
+
+    /**
+     * Callback from fragment when the content of a document has been fingerprinted.
+     * A document already open under another URI, e.g. the same file picked through a different
+     * provider, is not opened twice: the new tab gives way to the existing one.
+     */
+    public void onDocumentIdentified(Uri uri, String fingerprint) {
+        PdfDocument document = documents.findByUri(uri);
+        if (document == null) return;
+        PdfDocument existing = documents.findByFingerprint(fingerprint);
+        documents.setFingerprint(document, fingerprint);
+        if (existing == null || existing == document) return;
+
+        closeDocument(documents.indexOf(uri), existing);
+        Toast.makeText(this, "PDF already opened", Toast.LENGTH_SHORT).show();
+    }
+
     /**
      * Callback from fragment when PDF is loaded
      */
     public void onPdfLoaded(Uri uri, int pageCount) {
-        for (PdfDocument doc : openedDocuments) {
-            if (doc.getUri().equals(uri)) {
-                doc.setPageCount(pageCount);
-                break;
-            }
-        }
+        int position = documents.indexOf(uri);
+        if (position < 0) return;
+        documents.get(position).setPageCount(pageCount);
+        documents.notifyChanged(position);
+        SessionJournal.getInstance(this).recordPageCount(uri.toString(), pageCount);
     }
 
     /**
@@ -540,27 +751,65 @@ public class MainActivity extends AppCompatActivity {
         handleIntent(intent);
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The process may be killed from here on without further notice
+        SessionJournal.getInstance(this).flush();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MemoryGovernor.getInstance(this).onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        MemoryGovernor.getInstance(this).onLowMemory();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        MemoryGovernor governor = MemoryGovernor.getInstance(this);
+        governor.setTier(MemoryGovernor.TIER_TAB_SNAPSHOTS, null);
+        governor.setTier(MemoryGovernor.TIER_LIVE_TABS, null);
+        governor.setTier(MemoryGovernor.TIER_PREWARMED, null);
+        prewarmer.drop();
+        metadataExecutor.shutdownNow();
+    }
+
     @Override
     protected void onSaveInstanceState(@NonNull Bundle outState) {
         super.onSaveInstanceState(outState);
         
-        // Save opened documents and current index
-        outState.putParcelableArrayList(STATE_DOCUMENTS, new ArrayList<>(openedDocuments));
-        outState.putInt(STATE_CURRENT_INDEX, currentDocumentIndex);
+        // Save opened documents and current index, including saved tabs still being checked
+        List<PdfDocument> all = getAllDocuments();
+        outState.putParcelableArrayList(STATE_DOCUMENTS, new ArrayList<>(all));
+        outState.putInt(STATE_CURRENT_INDEX, all.indexOf(documents.getCurrent()));
     }
 
     /**
      * Restore state after configuration change
      */
     private void restoreState(Bundle savedInstanceState) {
-        ArrayList<PdfDocument> documents = savedInstanceState.getParcelableArrayList(STATE_DOCUMENTS);
+        ArrayList<PdfDocument> saved = savedInstanceState.getParcelableArrayList(STATE_DOCUMENTS);
         int index = savedInstanceState.getInt(STATE_CURRENT_INDEX, -1);
         
-        if (documents != null && !documents.isEmpty()) {
-            openedDocuments.clear();
-            openedDocuments.addAll(documents);
+        if (saved != null && !saved.isEmpty()) {
+            documents.clear();
+            FragmentManager fm = getSupportFragmentManager();
+            for (PdfDocument document : saved) {
+                documents.add(document);
+                if (fm.findFragmentByTag(getFragmentTag(document.getUri())) != null) {
+                    // Recreated by the fragment manager, hidden unless it was on screen
+                    tabManager.onTabShown(document.getUri());
+                }
+            }
             
-            if (index >= 0 && index < openedDocuments.size()) {
+            if (index >= 0 && index < documents.size()) {
                 switchToDocument(index);
             }
         }
@@ -569,68 +818,205 @@ public class MainActivity extends AppCompatActivity {
     }
     
     /**
-     * Save opened documents to SharedPreferences for persistence across app restarts
+     * Open documents, with the saved tabs still being checked in their saved places
+     */
+    private List<PdfDocument> getAllDocuments() {
+        if (restoreOrder == null) return documents.getAll();
+        List<PdfDocument> all = new ArrayList<>();
+        for (PdfDocument document : restoreOrder) {
+            PdfDocument open = documents.findByUri(document.getUri());
+            if (open != null) {
+                all.add(open);
+            } else if (pendingDocuments.contains(document)) {
+                all.add(document);
+            }
+        }
+        // Documents opened since startup go last
+        for (PdfDocument document : documents.getAll()) {
+            if (!restoreOrder.contains(document)) all.add(document);
+        }
+        return all;
+    }
+
+    /**
+     * Save the open tabs to the session journal for persistence across app restarts
      */
     private void savePersistedState() {
+        List<PdfDocument> all = getAllDocuments();
+        List<String> uris = new ArrayList<>(all.size());
+        for (PdfDocument document : all) {
+            uris.add(document.getUri().toString());
+        }
+        SessionJournal.getInstance(this).setTabs(uris, all.indexOf(documents.getCurrent()));
+    }
+
+    /**
+     * Saved tabs with their cached names and page counts
+     */
+    private List<PdfDocument> readSavedDocuments(SessionJournal journal) {
+        List<PdfDocument> documents = new ArrayList<>();
+        for (String uri : journal.getTabs()) {
+            SessionJournal.DocumentState state = journal.getDocument(uri);
+            PdfDocument document = new PdfDocument(Uri.parse(uri),
+                    state != null ? state.displayName : "document.pdf");
+            if (state != null) {
+                document.setPageCount(state.pageCount);
+                if (!state.fingerprint.isEmpty()) {
+                    document.setFingerprint(state.fingerprint);
+                }
+            }
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    /**
+     * Move tabs saved in preferences by older versions into the session journal, once
+     */
+    private void migrateSavedPreferences(SessionJournal journal) {
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        // Convert document URIs to strings for storage
-        StringBuilder uriList = new StringBuilder();
-        for (int i = 0; i < openedDocuments.size(); i++) {
-            if (i > 0) uriList.append("|");
-            uriList.append(openedDocuments.get(i).getUri().toString());
+        if (!prefs.contains(PREFS_DOCUMENT_ENTRIES) && !prefs.contains(PREFS_DOCUMENTS)) return;
+
+        List<String> uris = new ArrayList<>();
+        String entries = prefs.getString(PREFS_DOCUMENT_ENTRIES, "");
+        String uriList = prefs.getString(PREFS_DOCUMENTS, "");
+        if (!entries.isEmpty()) {
+            for (String entry : entries.split("\n")) {
+                String[] fields = entry.split("\t", 3);
+                if (fields.length < 3) continue;
+                journal.recordOpened(fields[0], fields[2]);
+                try {
+                    journal.recordPageCount(fields[0], Integer.parseInt(fields[1]));
+                } catch (NumberFormatException e) {
+                    // Counted again when shown
+                }
+                uris.add(fields[0]);
+            }
+        } else if (!uriList.isEmpty()) {
+            for (String uri : uriList.split("\\|")) {
+                journal.recordOpened(uri, "document.pdf");
+                uris.add(uri);
+            }
         }
-        
-        editor.putString(PREFS_DOCUMENTS, uriList.toString());
-        editor.putInt(PREFS_CURRENT_INDEX, currentDocumentIndex);
-        editor.apply();
+        journal.setTabs(uris, prefs.getInt(PREFS_CURRENT_INDEX, -1));
+        journal.flush();
+
+        prefs.edit()
+                .remove(PREFS_DOCUMENT_ENTRIES)
+                .remove(PREFS_DOCUMENTS)
+                .remove(PREFS_CURRENT_INDEX)
+                .apply();
     }
     
     /**
-     * Restore opened documents from SharedPreferences
+     * Restore opened documents from the session journal, in stages: the last active document is shown
+     * at once from its cached name, then every saved tab is checked in the background and the
+     * others join the tabs as their checks complete.
      * @return true if documents were restored, false if none were saved
      */
     private boolean restorePersistedState() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        String uriListStr = prefs.getString(PREFS_DOCUMENTS, "");
-        
-        if (uriListStr.isEmpty()) {
+        SessionJournal journal = SessionJournal.getInstance(this);
+        if (journal.isEmpty()) {
+            migrateSavedPreferences(journal);
+        }
+        List<PdfDocument> saved = readSavedDocuments(journal);
+        if (saved.isEmpty()) {
+            StartupTimings.mark(StartupTimings.ALL_TABS_RESTORED);
             return false;
         }
-        
-        // Parse saved URIs
-        String[] uriStrings = uriListStr.split("\\|");
-        boolean allUrisValid = true;
-        
-        for (String uriStr : uriStrings) {
-            try {
-                Uri uri = Uri.parse(uriStr);
-                // Reclaim persistable URI permission
-                takePersistableUriPermission(uri);
-                // Check if file is still accessible
-                if (getFileNameFromUri(uri) != null) {
-                    PdfDocument document = new PdfDocument(uri, getFileNameFromUri(uri));
-                    openedDocuments.add(document);
-                } else {
-                    allUrisValid = false;
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                allUrisValid = false;
+        int savedIndex = journal.getCurrentTab();
+        if (savedIndex < 0 || savedIndex >= saved.size()) {
+            savedIndex = 0;
+        }
+
+        // Stage 1: the last active document, without touching the content provider
+        PdfDocument active = saved.get(savedIndex);
+        documents.add(active);
+        switchToDocument(0);
+        updateEmptyState();
+        StartupTimings.mark(StartupTimings.ACTIVE_TAB_RESTORED);
+
+        // Stage 2: reclaim permissions and check files in parallel; results arrive in any order
+        restoreOrder = saved;
+        pendingDocuments.addAll(saved);
+        pendingDocuments.remove(active);
+        ExecutorService restoreExecutor = Executors.newFixedThreadPool(Math.min(RESTORE_THREADS, saved.size()));
+        for (PdfDocument document : saved) {
+            restoreExecutor.execute(() -> {
+                takePersistableUriPermission(document.getUri());
+                String name = queryDisplayName(document.getUri());
+                runOnUiThread(() -> onSavedDocumentChecked(document, name));
+            });
+        }
+        // Let the queued checks finish, then the threads go away
+        restoreExecutor.shutdown();
+        return true;
+    }
+
+    /**
+     * A saved tab has been checked: add it in its saved place, or drop it if its file is gone
+     * @param name Current display name, null if the file cannot be opened any more
+     */
+    private void onSavedDocumentChecked(PdfDocument document, String name) {
+        if (isDestroyed() || restoreOrder == null) return;
+        boolean pending = pendingDocuments.remove(document);
+        int position = documents.indexOf(document.getUri());
+
+        if (name == null) {
+            // Gone or no longer permitted
+            if (position >= 0 && !pending) {
+                closeDocument(position);
+            }
+        } else if (pending && position < 0) {
+            PdfDocument restored = document;
+            if (!name.equals(document.getDisplayName())) {
+                restored = new PdfDocument(document.getUri(), name);
+                restored.setFingerprint(document.getFingerprint());
+                restored.setPageCount(document.getPageCount());
+                SessionJournal.getInstance(this).recordName(document.getUri().toString(), name);
+            }
+            // The registry keeps the current index on the document shown
+            documents.add(restoredPosition(document), restored);
+            if (restored.getPageCount() == 0) {
+                loadMetadata(restored);
             }
         }
-        
-        // Restore current index
-        int savedIndex = prefs.getInt(PREFS_CURRENT_INDEX, -1);
-        if (savedIndex >= 0 && savedIndex < openedDocuments.size()) {
-            switchToDocument(savedIndex);
-        } else if (!openedDocuments.isEmpty()) {
-            switchToDocument(0);
+
+        if (++checkedCount == restoreOrder.size()) {
+            restoreOrder = null;
+            StartupTimings.mark(StartupTimings.ALL_TABS_RESTORED);
+            updateEmptyState();
+            savePersistedState();
+        }
+    }
+
+    /**
+     * Position among the open tabs that keeps a restored tab in its saved order
+     */
+    private int restoredPosition(PdfDocument document) {
+        int savedIndex = restoreOrder.indexOf(document);
+        int position = 0;
+        for (PdfDocument open : documents.getAll()) {
+            int openIndex = restoreOrder.indexOf(open);
+            // Documents opened since startup stay last
+            if (openIndex < 0 || openIndex > savedIndex) break;
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Display name of a document, or null if it cannot be reached any more
+     */
+    private String queryDisplayName(Uri uri) {
+        try (Cursor cursor = getContentResolver().query(uri, null, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst()) return null;
+            int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+            String name = nameIndex != -1 ? cursor.getString(nameIndex) : null;
+            return name != null ? name : "document.pdf";
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
         }
-        
-        updateEmptyState();
-        
-        return !openedDocuments.isEmpty();
     }
 }
@@ -0,0 +1,224 @@
+package com.example.pdfreader;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Splits the app's memory between the page cache, tile cache, thumbnail cache, bitmap pool, tab
+ * snapshots, live tabs and a prewarmed document, and shrinks them under memory pressure.
+ *
+ * The budgets come from the heap this app may use (ActivityManager.getMemoryClass), with a
+ * smaller share and a single live tab on low-RAM devices. On onTrimMemory or onLowMemory the
+ * tiers are trimmed in a fixed order, cheapest to rebuild first, as far as the pressure calls
+ * for; the bitmap pool goes last because it collects the bitmaps the others give up.
+ * What each tier freed is logged.
+ */
+public class MemoryGovernor {
+
+    private static final String TAG = "MemoryGovernor";
+
+    // Pressure levels the trim levels are reduced to
+    public static final int PRESSURE_LOW = 1;
+    public static final int PRESSURE_MODERATE = 2;
+    public static final int PRESSURE_CRITICAL = 3;
+
+    // Tiers in trimming order
+    public static final int TIER_PREWARMED = 0;
+    public static final int TIER_THUMBNAILS = 1;
+    public static final int TIER_TILES = 2;
+    public static final int TIER_TAB_SNAPSHOTS = 3;
+    public static final int TIER_PAGES = 4;
+    public static final int TIER_LIVE_TABS = 5;
+    public static final int TIER_BITMAP_POOL = 6;
+    private static final String[] TIER_NAMES = {
+            "prewarmed document", "thumbnails", "tiles", "tab snapshots", "pages", "live tabs", "bitmap pool"
+    };
+
+    // Share of the heap for bitmaps of all kinds; the rest is left to renderers and the app
+    private static final int BITMAP_HEAP_PERCENT = 50;
+    private static final int LOW_RAM_BITMAP_HEAP_PERCENT = 33;
+    // Shares of the bitmap budget, in percent
+    private static final int PAGES_PERCENT = 50;
+    private static final int TILES_PERCENT = 20;
+    private static final int BITMAP_POOL_PERCENT = 20;
+    private static final int THUMBNAILS_PERCENT = 5;
+    private static final int TAB_SNAPSHOTS_PERCENT = 5;
+    // A live tab's renderers, descriptors and threads, out of the heap not given to bitmaps
+    static final int HEAP_MB_PER_LIVE_TAB = 24;
+    private static final int MIN_LIVE_TABS = 2;
+    private static final int MAX_LIVE_TABS = 6;
+
+    /**
+     * A part of the app's memory that can be given back
+     */
+    public interface Tier {
+        /**
+         * Give back what this pressure calls for
+         * @return Bytes freed, estimated where they cannot be counted
+         */
+        long trim(int pressure);
+    }
+
+    private static MemoryGovernor instance;
+
+    private final Context context;
+    private final boolean lowRamDevice;
+    private final long bitmapBudgetBytes;
+    private final int maxLiveTabs;
+    // Tiers that live outside the caches, by tier number; set by whoever owns them
+    private final Tier[] externalTiers = new Tier[TIER_NAMES.length];
+
+    public static synchronized MemoryGovernor getInstance(Context context) {
+        if (instance == null) {
+            instance = new MemoryGovernor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MemoryGovernor(Context context) {
+        this.context = context;
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassMb = activityManager != null ? activityManager.getMemoryClass() : 32;
+        lowRamDevice = activityManager == null || activityManager.isLowRamDevice();
+
+        int bitmapPercent = lowRamDevice ? LOW_RAM_BITMAP_HEAP_PERCENT : BITMAP_HEAP_PERCENT;
+        bitmapBudgetBytes = (long) memoryClassMb * 1024 * 1024 * bitmapPercent / 100;
+        if (lowRamDevice) {
+            maxLiveTabs = 1;
+        } else {
+            int tabHeapMb = memoryClassMb * (100 - bitmapPercent) / 100;
+            maxLiveTabs = Math.max(MIN_LIVE_TABS, Math.min(MAX_LIVE_TABS, tabHeapMb / HEAP_MB_PER_LIVE_TAB));
+        }
+        Log.i(TAG, "Heap " + memoryClassMb + " MB" + (lowRamDevice ? " (low RAM)" : "")
+                + ": bitmaps " + (bitmapBudgetBytes >> 20) + " MB, " + maxLiveTabs + " live tabs");
+    }
+
+    // ----- Budgets -----
+
+    public boolean isLowRamDevice() {
+        return lowRamDevice;
+    }
+
+    public long getPageCacheBytes() {
+        return bitmapBudgetBytes * PAGES_PERCENT / 100;
+    }
+
+    public long getTileCacheBytes() {
+        return bitmapBudgetBytes * TILES_PERCENT / 100;
+    }
+
+    public long getThumbnailCacheBytes() {
+        return bitmapBudgetBytes * THUMBNAILS_PERCENT / 100;
+    }
+
+    public long getBitmapPoolBytes() {
+        return bitmapBudgetBytes * BITMAP_POOL_PERCENT / 100;
+    }
+
+    public long getTabSnapshotBytes() {
+        return bitmapBudgetBytes * TAB_SNAPSHOTS_PERCENT / 100;
+    }
+
+    public int getMaxLiveTabs() {
+        return maxLiveTabs;
+    }
+
+    // ----- Pressure -----
+
+    /**
+     * Set or clear the trimmer of a tier the caches do not own: the prewarmed document, tab
+     * snapshots or live tabs
+     */
+    public synchronized void setTier(int tier, @Nullable Tier trimmer) {
+        if (tier != TIER_PREWARMED && tier != TIER_TAB_SNAPSHOTS && tier != TIER_LIVE_TABS) {
+            throw new IllegalArgumentException("Tier " + TIER_NAMES[tier] + " is built in");
+        }
+        externalTiers[tier] = trimmer;
+    }
+
+    /**
+     * Forward ComponentCallbacks2.onTrimMemory here
+     */
+    public void onTrimMemory(int level) {
+        int pressure = pressureOf(level);
+        if (pressure > 0) {
+            trim(pressure, "trim level " + level);
+        }
+    }
+
+    /**
+     * Forward ComponentCallbacks.onLowMemory here
+     */
+    public void onLowMemory() {
+        trim(PRESSURE_CRITICAL, "low memory");
+    }
+
+    /**
+     * Trim level reduced to a pressure, 0 for none
+     */
+    static int pressureOf(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            // Next in line to be killed in the background
+            return PRESSURE_CRITICAL;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return PRESSURE_MODERATE;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return PRESSURE_LOW;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return PRESSURE_CRITICAL;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return PRESSURE_MODERATE;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return PRESSURE_LOW;
+        }
+        return 0;
+    }
+
+    private synchronized void trim(int pressure, String reason) {
+        long total = 0;
+        StringBuilder freed = new StringBuilder();
+        for (int tier = 0; tier < TIER_NAMES.length; tier++) {
+            long bytes;
+            try {
+                bytes = trimTier(tier, pressure);
+            } catch (RuntimeException e) {
+                // One tier failing must not keep the others from freeing memory
+                e.printStackTrace();
+                continue;
+            }
+            if (bytes <= 0) continue;
+            total += bytes;
+            freed.append(", ").append(TIER_NAMES[tier]).append(' ').append(bytes >> 10).append(" KB");
+        }
+        Log.i(TAG, "On " + reason + " (pressure " + pressure + ") freed " + (total >> 10) + " KB" + freed);
+    }
+
+    private long trimTier(int tier, int pressure) {
+        switch (tier) {
+            case TIER_THUMBNAILS:
+                // Decoded again from the disk cache when the home grid is shown
+                return PageBitmapCache.getThumbnailInstance(context).evictAll();
+            case TIER_TILES:
+                // Only worth keeping while the user zooms
+                return pressure >= PRESSURE_MODERATE ? PageBitmapCache.getTileInstance(context).evictAll() : 0;
+            case TIER_PAGES: {
+                if (pressure < PRESSURE_MODERATE) return 0;
+                PageBitmapCache pages = PageBitmapCache.getInstance(context);
+                // Pages on screen are pinned and stay
+                return pressure >= PRESSURE_CRITICAL ? pages.evictAll() : pages.trimToSize(pages.getMaxBytes() / 2);
+            }
+            case TIER_BITMAP_POOL:
+                return BitmapPool.getInstance(context).trim();
+            default: {
+                Tier trimmer = externalTiers[tier];
+                return trimmer != null ? trimmer.trim(pressure) : 0;
+            }
+        }
+    }
+}
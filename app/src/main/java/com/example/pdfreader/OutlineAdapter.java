@@ -0,0 +1,137 @@
+package com.example.pdfreader;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Outline entries as an indented list; expanding an entry inserts its children below it,
+ * loading them first if needed
+ */
+public class OutlineAdapter extends RecyclerView.Adapter<OutlineAdapter.ViewHolder> {
+
+    public interface OnEntryClickListener {
+        void onEntryClick(DocumentOutline.Entry entry);
+    }
+
+    private final DocumentOutline outline;
+    private final OnEntryClickListener listener;
+    // Entries currently shown, in display order
+    private final List<DocumentOutline.Entry> visible = new ArrayList<>();
+    private final Set<DocumentOutline.Entry> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final int indentPerLevel;
+
+    public OutlineAdapter(@NonNull DocumentOutline outline, @NonNull List<DocumentOutline.Entry> roots,
+                          int indentPerLevel, @NonNull OnEntryClickListener listener) {
+        this.outline = outline;
+        this.listener = listener;
+        this.indentPerLevel = indentPerLevel;
+        visible.addAll(roots);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_outline_entry, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        DocumentOutline.Entry entry = visible.get(position);
+        holder.itemView.setPadding(indentPerLevel * Math.min(entry.level, 8), holder.itemView.getPaddingTop(),
+                holder.itemView.getPaddingRight(), holder.itemView.getPaddingBottom());
+        holder.titleText.setText(entry.title);
+        holder.pageText.setText(entry.pageIndex >= 0 ? String.valueOf(entry.pageIndex + 1) : "");
+
+        if (entry.hasChildren()) {
+            holder.expandIcon.setVisibility(View.VISIBLE);
+            holder.expandIcon.setRotation(expanded.contains(entry) ? 0f : -90f);
+            holder.expandIcon.setOnClickListener(v -> toggle(entry));
+        } else {
+            holder.expandIcon.setVisibility(View.INVISIBLE);
+            holder.expandIcon.setOnClickListener(null);
+        }
+        holder.itemView.setOnClickListener(v -> {
+            if (entry.pageIndex >= 0) {
+                listener.onEntryClick(entry);
+            } else if (entry.hasChildren()) {
+                // Chapter headings without a target just open
+                toggle(entry);
+            }
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return visible.size();
+    }
+
+    private void toggle(DocumentOutline.Entry entry) {
+        if (expanded.remove(entry)) {
+            int position = visible.indexOf(entry);
+            int count = countVisibleDescendants(position);
+            visible.subList(position + 1, position + 1 + count).clear();
+            notifyItemChanged(position);
+            notifyItemRangeRemoved(position + 1, count);
+            return;
+        }
+        expanded.add(entry);
+        outline.expand(entry, () -> {
+            int position = visible.indexOf(entry);
+            // Collapsed again, or scrolled out of the list, while loading
+            if (position < 0 || !expanded.contains(entry)) return;
+            List<DocumentOutline.Entry> shown = new ArrayList<>();
+            addExpanded(entry.getChildren(), shown);
+            visible.addAll(position + 1, shown);
+            notifyItemChanged(position);
+            notifyItemRangeInserted(position + 1, shown.size());
+        });
+    }
+
+    /**
+     * Entries with a deeper level directly below a position belong to it
+     */
+    private int countVisibleDescendants(int position) {
+        int level = visible.get(position).level;
+        int count = 0;
+        for (int i = position + 1; i < visible.size() && visible.get(i).level > level; i++) {
+            count++;
+        }
+        return count;
+    }
+
+    private void addExpanded(List<DocumentOutline.Entry> entries, List<DocumentOutline.Entry> out) {
+        for (DocumentOutline.Entry entry : entries) {
+            out.add(entry);
+            // Keep sub-entries open that were open before the parent was collapsed
+            if (expanded.contains(entry) && entry.isLoaded()) {
+                addExpanded(entry.getChildren(), out);
+            }
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final ImageView expandIcon;
+        final TextView titleText;
+        final TextView pageText;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            expandIcon = itemView.findViewById(R.id.outlineExpandIcon);
+            titleText = itemView.findViewById(R.id.outlineTitleText);
+            pageText = itemView.findViewById(R.id.outlinePageText);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory cache of rendered PDF pages, budgeted in bytes and evicted least-recently-used.
+ * Bitmaps handed out by {@link #acquire} or {@link #pin} are pinned until {@link #release}
+ * is called, and a pinned bitmap is never evicted or recycled while it is on screen.
+ * Evicted bitmaps go back to the {@link BitmapPool} to be rendered into again.
+ */
+public class PageBitmapCache {
+
+    private static PageBitmapCache instance;
+    private static PageBitmapCache tileInstance;
+    private static PageBitmapCache thumbnailInstance;
+
+    private final BitmapPool bitmapPool;
+    private final LinkedHashMap<PageKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long sizeBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    /**
+     * Get the process-wide cache, sized by the {@link MemoryGovernor} on first use
+     */
+    public static synchronized PageBitmapCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PageBitmapCache(MemoryGovernor.getInstance(context).getPageCacheBytes(),
+                    BitmapPool.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * Get the process-wide cache of zoom tiles, kept apart so tiles never push whole pages out
+     */
+    public static synchronized PageBitmapCache getTileInstance(Context context) {
+        if (tileInstance == null) {
+            // Zoom tiles are short-lived and get a smaller share of their own
+            tileInstance = new PageBitmapCache(MemoryGovernor.getInstance(context).getTileCacheBytes(),
+                    BitmapPool.getInstance(context));
+        }
+        return tileInstance;
+    }
+
+    /**
+     * Get the process-wide cache of document thumbnails
+     */
+    public static synchronized PageBitmapCache getThumbnailInstance(Context context) {
+        if (thumbnailInstance == null) {
+            thumbnailInstance = new PageBitmapCache(
+                    MemoryGovernor.getInstance(context).getThumbnailCacheBytes(),
+                    BitmapPool.getInstance(context));
+        }
+        return thumbnailInstance;
+    }
+
+    public PageBitmapCache(long maxBytes, BitmapPool bitmapPool) {
+        this.maxBytes = maxBytes;
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Look up a page and pin it on success. Every non-null result must be released.
+     */
+    @Nullable
+    public synchronized Bitmap acquire(@NonNull PageKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        entry.pinCount++;
+        return entry.bitmap;
+    }
+
+    /**
+     * Pin a cached page without counting a hit or miss, e.g. once its render has finished.
+     * Every non-null result must be released.
+     */
+    @Nullable
+    public synchronized Bitmap pin(@NonNull PageKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        entry.pinCount++;
+        return entry.bitmap;
+    }
+
+    /**
+     * Add a freshly rendered page, unpinned.
+     * If the page is already cached, the new bitmap goes back to the pool.
+     */
+    public synchronized void put(@NonNull PageKey key, @NonNull Bitmap bitmap) {
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            if (existing.bitmap != bitmap) {
+                bitmapPool.release(bitmap);
+            }
+            return;
+        }
+
+        // Make room first so the new page is never its own eviction victim
+        Entry entry = new Entry(bitmap);
+        trimToSize(maxBytes - entry.bytes);
+        entries.put(key, entry);
+        sizeBytes += entry.bytes;
+        putCount++;
+    }
+
+    /**
+     * Check for a page without pinning it or touching its recency
+     */
+    public synchronized boolean contains(@NonNull PageKey key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Unpin a bitmap previously returned by {@link #acquire} or {@link #pin}
+     */
+    public synchronized void release(@NonNull PageKey key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.pinCount > 0) {
+            entry.pinCount--;
+        }
+        // The budget may have been exceeded while this page was pinned
+        if (sizeBytes > maxBytes) {
+            trimToSize(maxBytes);
+        }
+    }
+
+    /**
+     * Change the byte budget, evicting immediately if the cache is now over it
+     */
+    public synchronized void resize(long newMaxBytes) {
+        maxBytes = newMaxBytes;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Evict unpinned pages, oldest first, until the cache holds at most targetBytes
+     * @return number of bytes freed
+     */
+    public synchronized long trimToSize(long targetBytes) {
+        long freed = 0;
+        Iterator<Map.Entry<PageKey, Entry>> it = entries.entrySet().iterator();
+        while (sizeBytes > targetBytes && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.pinCount > 0) continue; // On screen, never recycle
+
+            it.remove();
+            sizeBytes -= entry.bytes;
+            freed += entry.bytes;
+            evictionCount++;
+            bitmapPool.release(entry.bitmap);
+        }
+        return freed;
+    }
+
+    /**
+     * Drop every unpinned page
+     */
+    public synchronized long evictAll() {
+        return trimToSize(0);
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getPutCount() {
+        return putCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        long lookups = hitCount + missCount;
+        int hitPercent = lookups != 0 ? (int) (100 * hitCount / lookups) : 0;
+        return String.format("PageBitmapCache[size=%dKB, max=%dKB, hits=%d, misses=%d, hitRate=%d%%, evictions=%d]",
+                sizeBytes / 1024, maxBytes / 1024, hitCount, missCount, hitPercent, evictionCount);
+    }
+
+    private static final class Entry {
+        final Bitmap bitmap;
+        final int bytes;
+        int pinCount;
+
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            this.bytes = bitmap.getAllocationByteCount();
+        }
+    }
+}
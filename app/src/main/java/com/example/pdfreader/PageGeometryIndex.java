@@ -0,0 +1,234 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.pdf.PdfRenderer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Width and height of every page of a document, in PDF points.
+ *
+ * Sizes are learned by the render threads as pages are opened and filled in for the rest of the
+ * document by a background pass, then saved under the app cache dir keyed by the document
+ * fingerprint, so later opens know every page size before anything is rendered. Once complete,
+ * {@link #layout} turns the sizes into prefix sums of item heights, giving the exact scroll
+ * offset of any page in O(1).
+ */
+public class PageGeometryIndex {
+
+    private static final int MAGIC = 0x4a525047; // "JRPG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final String DIRECTORY = "geometry";
+    private static final String SUFFIX = ".geom";
+
+    private final int pageCount;
+    private final AtomicIntegerArray widths;
+    private final AtomicIntegerArray heights;
+    @Nullable
+    private final File file;
+    private volatile boolean complete;
+
+    // Layout derived from the sizes, main thread only
+    private long[] offsets;
+    private int layoutWidth;
+    private int layoutExtra;
+
+    /**
+     * Index of a document, loaded from disk if an earlier open saved it
+     * @param fingerprint {@link DocumentFingerprint} of the document, or null to keep it in memory only
+     */
+    @NonNull
+    public static PageGeometryIndex open(@NonNull Context context, @Nullable String fingerprint, int pageCount) {
+        File file = fingerprint != null
+                ? new File(new File(context.getCacheDir(), DIRECTORY), fingerprint + SUFFIX) : null;
+        PageGeometryIndex index = new PageGeometryIndex(pageCount, file);
+        if (file != null && file.isFile()) {
+            try {
+                index.load();
+            } catch (IOException e) {
+                e.printStackTrace();
+                file.delete();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Delete the saved index of a document, e.g. because it changed on disk
+     */
+    public static void remove(@NonNull Context context, @NonNull String fingerprint) {
+        new File(new File(context.getCacheDir(), DIRECTORY), fingerprint + SUFFIX).delete();
+    }
+
+    public PageGeometryIndex(int pageCount, @Nullable File file) {
+        this.pageCount = pageCount;
+        this.widths = new AtomicIntegerArray(pageCount);
+        this.heights = new AtomicIntegerArray(pageCount);
+        this.file = file;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Record a page size; safe from any thread
+     */
+    public void set(int pageIndex, int width, int height) {
+        if (width <= 0 || height <= 0) return;
+        widths.set(pageIndex, width);
+        heights.set(pageIndex, height);
+    }
+
+    public boolean isKnown(int pageIndex) {
+        return widths.get(pageIndex) > 0;
+    }
+
+    /**
+     * Page width in points, 0 if not known yet
+     */
+    public int getWidth(int pageIndex) {
+        return widths.get(pageIndex);
+    }
+
+    /**
+     * Page height in points, 0 if not known yet
+     */
+    public int getHeight(int pageIndex) {
+        return heights.get(pageIndex);
+    }
+
+    /**
+     * True once every page size is known
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Index of the first page whose size is not known, or the page count if none is missing
+     */
+    public int findFirstUnknown(int fromPage) {
+        for (int i = Math.max(0, fromPage); i < pageCount; i++) {
+            if (widths.get(i) <= 0) return i;
+        }
+        return pageCount;
+    }
+
+    /**
+     * Learn the sizes of pages [fromPage, toPage) by opening each one. Runs on a render thread.
+     * Marks the index complete and saves it once the last page is known.
+     */
+    public void build(@NonNull PdfRenderer renderer, int fromPage, int toPage) {
+        for (int i = fromPage; i < toPage && i < pageCount; i++) {
+            if (isKnown(i)) continue;
+            PdfRenderer.Page page = renderer.openPage(i);
+            try {
+                set(i, page.getWidth(), page.getHeight());
+            } finally {
+                page.close();
+            }
+        }
+        if (!complete && findFirstUnknown(0) == pageCount) {
+            complete = true;
+            save();
+        }
+    }
+
+    /**
+     * Height in pixels a page takes when shown width pixels wide
+     */
+    public static int scaledHeight(int pageWidth, int pageHeight, int width) {
+        return Math.round((float) width * pageHeight / pageWidth);
+    }
+
+    /**
+     * Compute the prefix sums of item heights for pages shown width pixels wide, each item taking
+     * extra pixels of margins on top. Only possible once the index is complete; O(n), repeated
+     * only when width or extra change.
+     * @return true if offsets are available
+     */
+    public boolean layout(int width, int extra) {
+        if (!complete || width <= 0) return false;
+        if (offsets != null && width == layoutWidth && extra == layoutExtra) return true;
+
+        long[] sums = new long[pageCount + 1];
+        for (int i = 0; i < pageCount; i++) {
+            sums[i + 1] = sums[i] + scaledHeight(widths.get(i), heights.get(i), width) + extra;
+        }
+        offsets = sums;
+        layoutWidth = width;
+        layoutExtra = extra;
+        return true;
+    }
+
+    /**
+     * Distance from the top of the first item to the top of this page's item, after {@link #layout}
+     */
+    public long getOffset(int pageIndex) {
+        return offsets[pageIndex];
+    }
+
+    /**
+     * Height of all items together, after {@link #layout}
+     */
+    public long getTotalHeight() {
+        return offsets[pageCount];
+    }
+
+    private void load() throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(),
+                    HEADER_BYTES + (long) pageCount * 8));
+            channel.read(buffer, 0);
+            buffer.flip();
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getInt() != pageCount || buffer.remaining() != pageCount * 8) {
+                throw new IOException("Stale page geometry: " + file);
+            }
+            IntBuffer sizes = buffer.asIntBuffer();
+            for (int i = 0; i < pageCount; i++) {
+                set(i, sizes.get(), sizes.get());
+            }
+        }
+        complete = findFirstUnknown(0) == pageCount;
+    }
+
+    private void save() {
+        if (file == null) return;
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) return;
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + pageCount * 8);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            buffer.putInt(widths.get(i)).putInt(heights.get(i));
+        }
+        buffer.flip();
+
+        // Write aside and rename, so a reader never sees half a file
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+            out.setLength(0);
+            out.getChannel().write(buffer);
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
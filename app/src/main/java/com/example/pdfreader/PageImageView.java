@@ -0,0 +1,112 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ImageView showing a whole rendered page, with sharper tiles of the zoomed-in area drawn on top.
+ * Tiles are placed by their position on the page as fractions, so they line up with the
+ * page bitmap whatever resolution each was rendered at.
+ */
+public class PageImageView extends ImageView {
+
+    /**
+     * A rendered piece of the page. Only the srcWidth x srcHeight corner of the bitmap is used,
+     * so edge tiles can share pooled bitmaps with full tiles.
+     */
+    public static final class Tile {
+        final Bitmap bitmap;
+        final int srcWidth;
+        final int srcHeight;
+        final float left;
+        final float top;
+        final float right;
+        final float bottom;
+
+        public Tile(@NonNull Bitmap bitmap, int srcWidth, int srcHeight,
+                    float left, float top, float right, float bottom) {
+            this.bitmap = bitmap;
+            this.srcWidth = srcWidth;
+            this.srcHeight = srcHeight;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+    }
+
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect srcRect = new Rect();
+    private final RectF dstRect = new RectF();
+    private List<Tile> tiles = new ArrayList<>();
+    // Page size in points, 0 if unknown and the drawable decides the height
+    private int pageWidth;
+    private int pageHeight;
+
+    public PageImageView(Context context) {
+        super(context);
+    }
+
+    public PageImageView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public PageImageView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    /**
+     * Fix the view's aspect ratio to the page's, so it has its final height before a bitmap is set
+     * @param pageWidth page width in points, or 0 to size from the drawable as usual
+     */
+    public void setPageSize(int pageWidth, int pageHeight) {
+        if (this.pageWidth == pageWidth && this.pageHeight == pageHeight) return;
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (pageWidth <= 0 || pageHeight <= 0
+                || MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        setMeasuredDimension(width, PageGeometryIndex.scaledHeight(pageWidth, pageHeight, width));
+    }
+
+    /**
+     * Replace the tiles drawn over the page. The caller keeps the bitmaps alive until replaced.
+     */
+    public void setTiles(@NonNull List<Tile> tiles) {
+        this.tiles = tiles;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        int width = getWidth();
+        int height = getHeight();
+        for (Tile tile : tiles) {
+            srcRect.set(0, 0, tile.srcWidth, tile.srcHeight);
+            dstRect.set(tile.left * width, tile.top * height, tile.right * width, tile.bottom * height);
+            canvas.drawBitmap(tile.bitmap, srcRect, dstRect, tilePaint);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.pdfreader;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Immutable key identifying one rendered page bitmap, or one tile of a page.
+ * A page rendered at a different scale is a different bitmap, so scale is part of the key.
+ * Scale is in bitmap pixels per PDF point.
+ */
+public final class PageKey {
+    public static final int NO_TILE = -1;
+
+    private final String documentId;
+    private final int pageIndex;
+    private final float scale;
+    private final int tileColumn;
+    private final int tileRow;
+
+    public PageKey(@NonNull String documentId, int pageIndex, float scale) {
+        this(documentId, pageIndex, scale, NO_TILE, NO_TILE);
+    }
+
+    /**
+     * Key for the tile at (tileColumn, tileRow) of the page rendered at scale
+     */
+    public PageKey(@NonNull String documentId, int pageIndex, float scale, int tileColumn, int tileRow) {
+        this.documentId = documentId;
+        this.pageIndex = pageIndex;
+        this.scale = scale;
+        this.tileColumn = tileColumn;
+        this.tileRow = tileRow;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public int getTileColumn() {
+        return tileColumn;
+    }
+
+    public int getTileRow() {
+        return tileRow;
+    }
+
+    public boolean isTile() {
+        return tileColumn != NO_TILE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PageKey that = (PageKey) o;
+        return pageIndex == that.pageIndex
+                && Float.compare(scale, that.scale) == 0
+                && tileColumn == that.tileColumn
+                && tileRow == that.tileRow
+                && documentId.equals(that.documentId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = documentId.hashCode();
+        result = 31 * result + pageIndex;
+        result = 31 * result + Float.floatToIntBits(scale);
+        result = 31 * result + tileColumn;
+        result = 31 * result + tileRow;
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        String page = documentId + "#" + pageIndex + "@" + scale;
+        return isTile() ? page + "[" + tileColumn + "," + tileRow + "]" : page;
+    }
+}
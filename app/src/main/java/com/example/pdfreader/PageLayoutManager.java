@@ -0,0 +1,71 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Vertical LinearLayoutManager that reports the exact scroll offset and range from a
+ * {@link PageGeometryIndex}, instead of estimating them from the few pages laid out.
+ * Keeps the scrollbar steady on documents with thousands of pages of mixed sizes.
+ * Falls back to the estimate until the index is complete.
+ */
+public class PageLayoutManager extends LinearLayoutManager {
+
+    private PageGeometryIndex geometryIndex;
+
+    public PageLayoutManager(Context context) {
+        super(context);
+    }
+
+    public void setGeometryIndex(@Nullable PageGeometryIndex geometryIndex) {
+        this.geometryIndex = geometryIndex;
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(@NonNull RecyclerView.State state) {
+        View first = getChildCount() > 0 ? getChildAt(0) : null;
+        if (first == null || !layoutGeometry(first)) {
+            return super.computeVerticalScrollOffset(state);
+        }
+        RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) first.getLayoutParams();
+        int itemTop = getDecoratedTop(first) - params.topMargin;
+        long offset = geometryIndex.getOffset(getPosition(first)) + getPaddingTop() - itemTop;
+        return (int) Math.min(Integer.MAX_VALUE, offset);
+    }
+
+    @Override
+    public int computeVerticalScrollRange(@NonNull RecyclerView.State state) {
+        View first = getChildCount() > 0 ? getChildAt(0) : null;
+        if (first == null || !layoutGeometry(first)) {
+            return super.computeVerticalScrollRange(state);
+        }
+        long range = geometryIndex.getTotalHeight() + getPaddingTop() + getPaddingBottom();
+        return (int) Math.min(Integer.MAX_VALUE, range);
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(@NonNull RecyclerView.State state) {
+        View first = getChildCount() > 0 ? getChildAt(0) : null;
+        if (first == null || !layoutGeometry(first)) {
+            return super.computeVerticalScrollExtent(state);
+        }
+        return getHeight();
+    }
+
+    /**
+     * Bring the index's prefix sums in line with the current item width and margins,
+     * taken from a laid-out item. Every page card has the same width and margins.
+     */
+    private boolean layoutGeometry(View item) {
+        if (geometryIndex == null || getItemCount() != geometryIndex.getPageCount()) return false;
+        RecyclerView.LayoutParams params = (RecyclerView.LayoutParams) item.getLayoutParams();
+        int extra = params.topMargin + params.bottomMargin
+                + getTopDecorationHeight(item) + getBottomDecorationHeight(item);
+        return geometryIndex.layout(item.getWidth(), extra);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.pdfreader;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Renders pages ahead of the viewport in the scroll direction at prefetch priority,
+ * so they are usually cached by the time they are bound.
+ *
+ * The lookahead grows with scroll velocity and is capped by how many pages the page cache can
+ * hold next to the visible ones. Prefetches behind the viewport are cancelled when the user
+ * reverses, and prefetching pauses while a fling moves faster than pages can be rendered.
+ */
+public class PagePrefetcher {
+
+    private static final int MIN_LOOKAHEAD = 1;
+    private static final int MAX_LOOKAHEAD = 8;
+    // How far ahead to look, in frames of scrolling at the current velocity
+    private static final int LOOKAHEAD_FRAMES = 30;
+    // Above this many pages per frame renders cannot keep up, so prefetching is pointless
+    private static final float FLING_PAST_PAGES_PER_FRAME = 0.5f;
+    private static final float VELOCITY_SMOOTHING = 0.3f;
+
+    private final PdfPageAdapter adapter;
+    private final LinearLayoutManager layoutManager;
+    private final Map<Integer, RenderScheduler.Request> outstanding = new HashMap<>();
+
+    private int direction = 1;
+    private float pagesPerFrame;
+
+    public PagePrefetcher(@NonNull PdfPageAdapter adapter, @NonNull LinearLayoutManager layoutManager) {
+        this.adapter = adapter;
+        this.layoutManager = layoutManager;
+    }
+
+    /**
+     * Feed every RecyclerView scroll delta
+     */
+    public void onScrolled(int dy) {
+        if (dy == 0) return;
+
+        int newDirection = dy > 0 ? 1 : -1;
+        if (newDirection != direction) {
+            // Reversed: everything queued on the other side is now behind the user
+            direction = newDirection;
+            cancelAll();
+        }
+
+        int pageHeight = visiblePageHeight();
+        if (pageHeight > 0) {
+            float instant = Math.abs(dy) / (float) pageHeight;
+            pagesPerFrame += (instant - pagesPerFrame) * VELOCITY_SMOOTHING;
+        }
+
+        if (pagesPerFrame > FLING_PAST_PAGES_PER_FRAME) {
+            // Flinging past: the pages we would render now are gone before they finish
+            cancelAll();
+            return;
+        }
+        update();
+    }
+
+    /**
+     * Call when scrolling stops to top up the window in the last direction
+     */
+    public void onScrollIdle() {
+        pagesPerFrame = 0f;
+        update();
+    }
+
+    /**
+     * Drop every queued prefetch, e.g. before the adapter is released
+     */
+    public void cancelAll() {
+        for (RenderScheduler.Request request : outstanding.values()) {
+            request.cancel();
+        }
+        outstanding.clear();
+    }
+
+    private void update() {
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return;
+
+        int lookahead = computeLookahead(last - first + 1);
+        int start = direction > 0 ? last + 1 : first - lookahead;
+        int end = direction > 0 ? last + lookahead : first - 1;
+
+        // Forget finished requests and cancel those that fell out of the window
+        Iterator<Map.Entry<Integer, RenderScheduler.Request>> it = outstanding.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, RenderScheduler.Request> entry = it.next();
+            int page = entry.getKey();
+            if (entry.getValue().isDone()) {
+                it.remove();
+            } else if (page < start || page > end) {
+                entry.getValue().cancel();
+                it.remove();
+            }
+        }
+
+        // Submit farthest first: the scheduler runs the newest request of a priority first,
+        // so the page nearest the viewport is rendered first
+        for (int i = lookahead; i >= 1; i--) {
+            int page = direction > 0 ? last + i : first - i;
+            if (page < 0 || page >= adapter.getItemCount() || outstanding.containsKey(page)) continue;
+
+            RenderScheduler.Request request = adapter.prefetchPage(page);
+            if (request != null) {
+                outstanding.put(page, request);
+            }
+        }
+    }
+
+    /**
+     * Pages to keep ready ahead: about half a second of scrolling at the current velocity,
+     * but never more than the page cache can hold next to the visible pages
+     */
+    private int computeLookahead(int visibleCount) {
+        int lookahead = MIN_LOOKAHEAD + (int) Math.ceil(pagesPerFrame * LOOKAHEAD_FRAMES);
+
+        long pageBytes = estimatePageBytes();
+        if (pageBytes > 0) {
+            long cachePages = adapter.getPageCache().getMaxBytes() / pageBytes;
+            lookahead = (int) Math.min(lookahead, cachePages - visibleCount - 1);
+        }
+        return Math.max(0, Math.min(lookahead, MAX_LOOKAHEAD));
+    }
+
+    private int visiblePageHeight() {
+        View child = layoutManager.getChildAt(0);
+        return child != null ? child.getHeight() : 0;
+    }
+
+    /**
+     * Rendered page size, approximated by the on-screen size of a visible page
+     */
+    private long estimatePageBytes() {
+        View child = layoutManager.getChildAt(0);
+        if (child == null) return 0;
+        return 4L * child.getWidth() * child.getHeight();
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.pdfreader;
+
+import android.graphics.Bitmap;
+import android.graphics.pdf.PdfRenderer;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Horizontal strip of small page thumbnails for the fast-scroll navigator.
+ *
+ * Thumbnails are rendered on a lane of their own: one minimum-priority thread with its own
+ * PdfRenderer and a tiny cache, so scrubbing through the strip never delays or evicts the
+ * full-size pages on screen.
+ */
+public class PageStripAdapter extends RecyclerView.Adapter<PageStripAdapter.ThumbnailViewHolder> {
+
+    // Enough for a couple of screens of strip thumbnails
+    private static final long CACHE_BYTES = 2L * 1024 * 1024;
+
+    public interface OnPageClickListener {
+        void onPageClicked(int pageIndex);
+    }
+
+    private final String documentId;
+    private final int pageCount;
+    private final PageBitmapCache cache;
+    private final PdfRenderer renderer;
+    private final RenderScheduler<PdfRenderer> renderScheduler;
+    private final Set<ThumbnailViewHolder> holders = new HashSet<>();
+    private final OnPageClickListener listener;
+    private int selectedPage = -1;
+
+    /**
+     * @param renderer renderer owned by the strip's render thread; closed in {@link #release()}
+     */
+    public PageStripAdapter(@NonNull PdfRenderer renderer, @NonNull String documentId, int pageCount,
+                            @NonNull BitmapPool bitmapPool, @NonNull OnPageClickListener listener) {
+        this.documentId = documentId;
+        this.pageCount = pageCount;
+        this.listener = listener;
+        this.cache = new PageBitmapCache(CACHE_BYTES, bitmapPool);
+        this.renderer = renderer;
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        this.renderScheduler = new RenderScheduler<>("PdfStrip", Collections.singletonList(renderer),
+                mainHandler::post, Thread.MIN_PRIORITY);
+    }
+
+    @NonNull
+    @Override
+    public ThumbnailViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_page_thumbnail, parent, false);
+        ThumbnailViewHolder holder = new ThumbnailViewHolder(view);
+        holders.add(holder);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ThumbnailViewHolder holder, int position) {
+        holder.bind(position);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ThumbnailViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.recycle();
+    }
+
+    @Override
+    public int getItemCount() {
+        return pageCount;
+    }
+
+    /**
+     * Highlight the page the scrubber or the page list is on
+     */
+    public void setSelectedPage(int pageIndex) {
+        if (pageIndex == selectedPage) return;
+        int previous = selectedPage;
+        selectedPage = pageIndex;
+        if (previous >= 0) {
+            notifyItemChanged(previous);
+        }
+        if (pageIndex >= 0) {
+            notifyItemChanged(pageIndex);
+        }
+    }
+
+    /**
+     * Stop the strip's render thread and close its renderer once it is idle
+     */
+    public void release() {
+        for (ThumbnailViewHolder holder : holders) {
+            holder.recycle();
+        }
+        holders.clear();
+        renderScheduler.shutdown(() -> {
+            cache.evictAll();
+            renderer.close();
+        });
+    }
+
+    /**
+     * Render a page to the strip's thumbnail height. Runs on the strip's render thread.
+     */
+    private void renderThumbnail(PdfRenderer renderer, PageKey key, int height) {
+        PdfRenderer.Page page = renderer.openPage(key.getPageIndex());
+        try {
+            float scale = (float) height / page.getHeight();
+            int width = Math.max(1, (int) (page.getWidth() * scale));
+            BitmapPool bitmapPool = cache.getBitmapPool();
+            Bitmap bitmap = bitmapPool.acquire(width, height);
+            try {
+                page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            } catch (RuntimeException e) {
+                bitmapPool.release(bitmap);
+                throw e;
+            }
+            cache.put(key, bitmap);
+        } finally {
+            page.close();
+        }
+    }
+
+    class ThumbnailViewHolder extends RecyclerView.ViewHolder {
+        private final ImageView thumbnailImage;
+        private final TextView pageNumberText;
+        private PageKey shownKey;
+        private RenderScheduler.Request request;
+
+        ThumbnailViewHolder(@NonNull View itemView) {
+            super(itemView);
+            thumbnailImage = itemView.findViewById(R.id.thumbnailImage);
+            pageNumberText = itemView.findViewById(R.id.thumbnailPageNumber);
+        }
+
+        void bind(final int pageIndex) {
+            recycle();
+            pageNumberText.setText(String.valueOf(pageIndex + 1));
+            itemView.setSelected(pageIndex == selectedPage);
+            itemView.setOnClickListener(v -> listener.onPageClicked(pageIndex));
+
+            // The strip has a single thumbnail size, so the page alone identifies a thumbnail
+            final PageKey key = new PageKey(documentId, pageIndex, 0f);
+            Bitmap cached = cache.acquire(key);
+            if (cached != null) {
+                show(key, cached);
+                return;
+            }
+
+            final int height = thumbnailImage.getLayoutParams().height;
+            request = renderScheduler.submit(key, RenderScheduler.PRIORITY_VISIBLE,
+                    renderer -> renderThumbnail(renderer, key, height),
+                    new RenderScheduler.Callback() {
+                        @Override
+                        public void onRenderFinished() {
+                            request = null;
+                            Bitmap bitmap = cache.pin(key);
+                            if (bitmap != null) {
+                                show(key, bitmap);
+                            }
+                        }
+
+                        @Override
+                        public void onRenderFailed(@NonNull Exception e) {
+                            request = null;
+                            e.printStackTrace();
+                        }
+                    });
+        }
+
+        private void show(PageKey key, Bitmap bitmap) {
+            shownKey = key;
+            thumbnailImage.setImageBitmap(bitmap);
+        }
+
+        void recycle() {
+            if (request != null) {
+                request.cancel();
+                request = null;
+            }
+            thumbnailImage.setImageBitmap(null);
+            if (shownKey != null) {
+                cache.release(shownKey);
+                shownKey = null;
+            }
+        }
+    }
+}
@@ -11,7 +11,9 @@ import android.os.Parcelable;
 public class PdfDocument implements Parcelable {
     private final Uri uri;
     private final String displayName;
-    private final String id; // Unique identifier
+    private final String id; // Unique identifier of the tab
+    // Identity of the content, see DocumentFingerprint; null until the document has been read
+    private String fingerprint;
     private int pageCount;
     private int currentPage;
 
@@ -27,6 +29,7 @@ public class PdfDocument implements Parcelable {
         uri = in.readParcelable(Uri.class.getClassLoader());
         displayName = in.readString();
         id = in.readString();
+        fingerprint = in.readString();
         pageCount = in.readInt();
         currentPage = in.readInt();
     }
@@ -55,6 +58,14 @@ public class PdfDocument implements Parcelable {
         return id;
     }
 
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
     public int getPageCount() {
         return pageCount;
     }
@@ -81,6 +92,7 @@ public class PdfDocument implements Parcelable {
         dest.writeParcelable(uri, flags);
         dest.writeString(displayName);
         dest.writeString(id);
+        dest.writeString(fingerprint);
         dest.writeInt(pageCount);
         dest.writeInt(currentPage);
     }
@@ -0,0 +1,394 @@
+package com.example.pdfreader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the bytes of a shown string into Unicode text for one font.
+ *
+ * Uses the font's ToUnicode CMap when it has one. Otherwise simple fonts go through their
+ * encoding (standard, WinAnsi, MacRoman, PDFDoc, plus Differences by glyph name), and
+ * composite fonts only yield text with a Unicode CMap such as UniGB-UCS2-H.
+ */
+final class PdfFont {
+
+    // Byte values 0x80-0xFF in MacRomanEncoding
+    private static final String MAC_ROMAN_HIGH = ""
+            + "ÄÅÇÉÑÖÜáàâäãåçéè"
+            + "êëíìîïñóòôöõúùûü"
+            + "†°¢£§•¶ß®©™´¨≠ÆØ"
+            + "∞±≤≥¥µ∂∑∏π∫ªºΩæø"
+            + "¿¡¬√ƒ≈∆«»… ÀÃÕŒœ"
+            + "–—“”‘’÷◊ÿŸ⁄€‹›ﬁﬂ"
+            + "‡·‚„‰ÂÊÁËÈÍÎÏÌÓÔ"
+            + "ÒÚÛÙıˆ˜¯˘˙˚¸˝˛ˇ";
+
+    // Byte values 0x80-0x9F in WinAnsiEncoding; 0xA0-0xFF are Latin-1
+    private static final String WIN_ANSI_80 = ""
+            + "€\u0000‚ƒ„…†‡ˆ‰Š‹Œ\u0000Ž\u0000"
+            + "\u0000‘’“”•–—˜™š›œ\u0000žŸ";
+
+    // Byte values 0xA0-0xFF in StandardEncoding; below that it is ASCII except for the quotes
+    private static final String STANDARD_A0 = ""
+            + "\u0000¡¢£⁄¥ƒ§¤'“«‹›ﬁﬂ"
+            + "\u0000–†‡·\u0000¶•‚„”»…‰\u0000¿"
+            + "\u0000`´ˆ˜¯˘˙¨\u0000˚¸\u0000˝˛ˇ"
+            + "—\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000\u0000"
+            + "\u0000Æ\u0000ª\u0000\u0000\u0000\u0000ŁØŒº\u0000\u0000\u0000\u0000"
+            + "\u0000æ\u0000\u0000\u0000ı\u0000\u0000łøœß\u0000\u0000\u0000\u0000";
+
+    // Glyph names that are not a single letter, "uniXXXX" or a letter plus an accent name
+    private static final String[] GLYPH_NAMES = {
+            "space", " ", "exclam", "!", "quotedbl", "\"", "numbersign", "#", "dollar", "$",
+            "percent", "%", "ampersand", "&", "quotesingle", "'", "quoteright", "’",
+            "parenleft", "(", "parenright", ")", "asterisk", "*", "plus", "+", "comma", ",",
+            "hyphen", "-", "minus", "−", "period", ".", "slash", "/", "zero", "0", "one", "1",
+            "two", "2", "three", "3", "four", "4", "five", "5", "six", "6", "seven", "7",
+            "eight", "8", "nine", "9", "colon", ":", "semicolon", ";", "less", "<", "equal", "=",
+            "greater", ">", "question", "?", "at", "@", "bracketleft", "[", "backslash", "\\",
+            "bracketright", "]", "asciicircum", "^", "underscore", "_", "grave", "`",
+            "quoteleft", "‘", "braceleft", "{", "bar", "|", "braceright", "}",
+            "asciitilde", "~", "quotedblleft", "“", "quotedblright", "”",
+            "quotesinglbase", "‚", "quotedblbase", "„", "endash", "–",
+            "emdash", "—", "bullet", "•", "ellipsis", "…", "dagger", "†",
+            "daggerdbl", "‡", "periodcentered", "·", "fi", "fi", "fl", "fl",
+            "ff", "ff", "ffi", "ffi", "ffl", "ffl", "germandbls", "ß", "AE", "Æ",
+            "ae", "æ", "OE", "Œ", "oe", "œ", "Oslash", "Ø", "oslash", "ø",
+            "Lslash", "Ł", "lslash", "ł", "dotlessi", "ı", "copyright", "©",
+            "registered", "®", "trademark", "™", "degree", "°", "section", "§",
+            "paragraph", "¶", "sterling", "£", "yen", "¥", "Euro", "€",
+            "cent", "¢", "guillemotleft", "«", "guillemotright", "»",
+            "exclamdown", "¡", "questiondown", "¿", "multiply", "×",
+            "divide", "÷", "plusminus", "±", "nbspace", "\u00a0", "sfthyphen", "\u00ad",
+    };
+
+    // Accent names that follow a base letter in glyph names such as "eacute"
+    private static final String[] ACCENTS = {
+            "acute", "\u0301", "grave", "\u0300", "circumflex", "\u0302", "dieresis", "\u0308",
+            "tilde", "\u0303", "ring", "\u030a", "cedilla", "\u0327", "caron", "\u030c",
+            "macron", "\u0304", "breve", "\u0306", "ogonek", "\u0328", "dotaccent", "\u0307",
+            "hungarumlaut", "\u030b",
+    };
+
+    private static final Map<String, String> glyphNames = new HashMap<>();
+
+    static {
+        for (int i = 0; i < GLYPH_NAMES.length; i += 2) {
+            glyphNames.put(GLYPH_NAMES[i], GLYPH_NAMES[i + 1]);
+        }
+    }
+
+    /**
+     * A codespace range of the CMap: codes of numBytes bytes between low and high
+     */
+    private static final class CodeRange {
+        final int numBytes;
+        final int low;
+        final int high;
+
+        CodeRange(int numBytes, int low, int high) {
+            this.numBytes = numBytes;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    private final Map<Integer, String> toUnicode = new HashMap<>();
+    private final List<CodeRange> codeRanges = new ArrayList<>();
+    // Simple font encoding by byte value, null entries undefined
+    private final String[] encoding = new String[256];
+    private final boolean composite;
+    // Composite font whose CMap maps codes straight to UCS-2
+    private final boolean unicodeCodes;
+    private final boolean hasToUnicode;
+
+    PdfFont(@NonNull PdfReader reader, @NonNull Map<String, Object> font) throws IOException {
+        Object subtype = reader.resolve(font.get("Subtype"));
+        composite = subtype instanceof PdfSyntax.Name && ((PdfSyntax.Name) subtype).value.equals("Type0");
+
+        Object encodingObject = reader.resolve(font.get("Encoding"));
+        String encodingName = encodingObject instanceof PdfSyntax.Name ? ((PdfSyntax.Name) encodingObject).value : null;
+        unicodeCodes = composite && encodingName != null
+                && (encodingName.contains("UCS2") || encodingName.contains("UTF16"));
+
+        Object toUnicodeObject = reader.resolve(font.get("ToUnicode"));
+        boolean parsed = false;
+        if (toUnicodeObject instanceof PdfSyntax.Stream) {
+            try {
+                parseCMap(reader.decode((PdfSyntax.Stream) toUnicodeObject));
+                parsed = !toUnicode.isEmpty();
+            } catch (IOException | RuntimeException e) {
+                // Fall back to the encoding
+                toUnicode.clear();
+            }
+        }
+        hasToUnicode = parsed;
+
+        if (!composite) {
+            buildSimpleEncoding(reader, encodingObject, encodingName);
+        }
+    }
+
+    /**
+     * Append the text a shown string stands for
+     */
+    void decode(@NonNull byte[] bytes, @NonNull StringBuilder out) {
+        int i = 0;
+        while (i < bytes.length) {
+            int length = codeLength(bytes, i);
+            int code = 0;
+            for (int j = 0; j < length && i + j < bytes.length; j++) {
+                code = (code << 8) | (bytes[i + j] & 0xff);
+            }
+            i += length;
+
+            String text = hasToUnicode ? toUnicode.get(code) : null;
+            if (text == null) {
+                if (unicodeCodes) {
+                    text = String.valueOf((char) code);
+                } else if (!composite && code < 256) {
+                    text = encoding[code];
+                }
+            }
+            if (text != null) {
+                out.append(text);
+            }
+        }
+    }
+
+    private int codeLength(byte[] bytes, int at) {
+        if (!codeRanges.isEmpty()) {
+            for (CodeRange range : codeRanges) {
+                if (at + range.numBytes > bytes.length) continue;
+                int code = 0;
+                for (int j = 0; j < range.numBytes; j++) {
+                    code = (code << 8) | (bytes[at + j] & 0xff);
+                }
+                if (code >= range.low && code <= range.high) return range.numBytes;
+            }
+        }
+        return composite ? 2 : 1;
+    }
+
+    // ----- Simple font encodings -----
+
+    private void buildSimpleEncoding(PdfReader reader, Object encodingObject, String encodingName)
+            throws IOException {
+        String base = encodingName;
+        List<?> differences = null;
+        if (encodingObject instanceof Map) {
+            Map<?, ?> dictionary = (Map<?, ?>) encodingObject;
+            Object baseEncoding = reader.resolve(dictionary.get("BaseEncoding"));
+            if (baseEncoding instanceof PdfSyntax.Name) base = ((PdfSyntax.Name) baseEncoding).value;
+            Object differenceObject = reader.resolve(dictionary.get("Differences"));
+            if (differenceObject instanceof List) differences = (List<?>) differenceObject;
+        }
+
+        for (int code = 0; code < 256; code++) {
+            encoding[code] = baseCharacter(base, code);
+        }
+
+        if (differences != null) {
+            int code = 0;
+            for (Object item : differences) {
+                item = reader.resolve(item);
+                if (item instanceof Number) {
+                    code = ((Number) item).intValue();
+                } else if (item instanceof PdfSyntax.Name) {
+                    if (code >= 0 && code < 256) {
+                        encoding[code] = glyphToUnicode(((PdfSyntax.Name) item).value);
+                    }
+                    code++;
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static String baseCharacter(@Nullable String encodingName, int code) {
+        char c;
+        if ("MacRomanEncoding".equals(encodingName)) {
+            c = code < 128 ? (char) code : MAC_ROMAN_HIGH.charAt(code - 128);
+        } else if ("WinAnsiEncoding".equals(encodingName) || "PDFDocEncoding".equals(encodingName)) {
+            if (code >= 0x80 && code < 0xa0) {
+                c = WIN_ANSI_80.charAt(code - 0x80);
+            } else {
+                c = (char) code;
+            }
+        } else {
+            // StandardEncoding, also the usual effective encoding of fonts that name none
+            if (code == 0x27) {
+                c = '’';
+            } else if (code == 0x60) {
+                c = '‘';
+            } else if (code < 0x80) {
+                c = (char) code;
+            } else if (code >= 0xa0) {
+                c = STANDARD_A0.charAt(code - 0xa0);
+            } else {
+                c = 0;
+            }
+        }
+        if (c == 0 || (c < 0x20 && c != '\t' && c != '\n' && c != '\r')) return null;
+        return String.valueOf(c);
+    }
+
+    /**
+     * Unicode text for a glyph name, following the Adobe glyph naming conventions in part
+     */
+    @Nullable
+    static String glyphToUnicode(@NonNull String name) {
+        // "a.sc", "f_i.liga": the part before the dot names the glyph, underscores join ligatures
+        int dot = name.indexOf('.');
+        if (dot > 0) name = name.substring(0, dot);
+        if (name.indexOf('_') > 0) {
+            StringBuilder joined = new StringBuilder();
+            for (String part : name.split("_")) {
+                String text = glyphToUnicode(part);
+                if (text == null) return null;
+                joined.append(text);
+            }
+            return joined.toString();
+        }
+
+        String known = glyphNames.get(name);
+        if (known != null) return known;
+        if (name.length() == 1) {
+            char c = name.charAt(0);
+            return Character.isLetter(c) ? name : null;
+        }
+        try {
+            if (name.startsWith("uni") && name.length() >= 7 && (name.length() - 3) % 4 == 0) {
+                StringBuilder text = new StringBuilder();
+                for (int i = 3; i < name.length(); i += 4) {
+                    text.append((char) Integer.parseInt(name.substring(i, i + 4), 16));
+                }
+                return text.toString();
+            }
+            if (name.startsWith("u") && name.length() >= 5 && name.length() <= 7) {
+                return new String(Character.toChars(Integer.parseInt(name.substring(1), 16)));
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // Accented letters such as "eacute" or "Scaron"
+        if (Character.isLetter(name.charAt(0))) {
+            String accentName = name.substring(1);
+            for (int i = 0; i < ACCENTS.length; i += 2) {
+                if (ACCENTS[i].equals(accentName)) {
+                    return Normalizer.normalize(name.charAt(0) + ACCENTS[i + 1], Normalizer.Form.NFC);
+                }
+            }
+        }
+        return null;
+    }
+
+    // ----- ToUnicode CMaps -----
+
+    private void parseCMap(byte[] data) throws IOException {
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(data, false);
+        List<Object> operands = new ArrayList<>();
+        while (true) {
+            Object token = parser.next();
+            if (token == PdfSyntax.END) break;
+            if (!(token instanceof PdfSyntax.Keyword)) {
+                operands.add(token);
+                continue;
+            }
+            String keyword = ((PdfSyntax.Keyword) token).value;
+            switch (keyword) {
+                case "begincodespacerange":
+                case "beginbfchar":
+                case "beginbfrange":
+                    operands.clear();
+                    break;
+                case "endcodespacerange":
+                    for (int i = 0; i + 1 < operands.size(); i += 2) {
+                        if (operands.get(i) instanceof byte[] && operands.get(i + 1) instanceof byte[]) {
+                            byte[] low = (byte[]) operands.get(i);
+                            codeRanges.add(new CodeRange(low.length, toInt(low), toInt((byte[]) operands.get(i + 1))));
+                        }
+                    }
+                    operands.clear();
+                    break;
+                case "endbfchar":
+                    for (int i = 0; i + 1 < operands.size(); i += 2) {
+                        if (operands.get(i) instanceof byte[]) {
+                            String text = destination(operands.get(i + 1));
+                            if (text != null) toUnicode.put(toInt((byte[]) operands.get(i)), text);
+                        }
+                    }
+                    operands.clear();
+                    break;
+                case "endbfrange":
+                    for (int i = 0; i + 2 < operands.size(); i += 3) {
+                        if (!(operands.get(i) instanceof byte[]) || !(operands.get(i + 1) instanceof byte[])) continue;
+                        int low = toInt((byte[]) operands.get(i));
+                        int high = toInt((byte[]) operands.get(i + 1));
+                        Object target = operands.get(i + 2);
+                        // Cap absurd ranges from broken CMaps
+                        if (high < low || high - low > 0xffff) continue;
+                        if (target instanceof List) {
+                            List<?> list = (List<?>) target;
+                            for (int code = low; code <= high && code - low < list.size(); code++) {
+                                String text = destination(list.get(code - low));
+                                if (text != null) toUnicode.put(code, text);
+                            }
+                        } else if (target instanceof byte[]) {
+                            // Consecutive codes map to consecutive values of the last byte pair
+                            byte[] start = (byte[]) target;
+                            String prefix = start.length > 2 ? utf16(start, 0, start.length - 2) : "";
+                            int last = start.length >= 2
+                                    ? ((start[start.length - 2] & 0xff) << 8) | (start[start.length - 1] & 0xff)
+                                    : start.length == 1 ? start[0] & 0xff : 0;
+                            for (int code = low; code <= high; code++) {
+                                toUnicode.put(code, prefix + (char) (last + code - low));
+                            }
+                        }
+                    }
+                    operands.clear();
+                    break;
+                default:
+                    // usecmap, def and the rest of the CMap boilerplate
+                    operands.clear();
+            }
+        }
+        // Longer codes are tried first, so a 1-byte range never shadows a 2-byte one
+        java.util.Collections.sort(codeRanges, (a, b) -> b.numBytes - a.numBytes);
+    }
+
+    @Nullable
+    private static String destination(Object value) {
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            return bytes.length == 1 ? String.valueOf((char) (bytes[0] & 0xff)) : utf16(bytes, 0, bytes.length);
+        }
+        if (value instanceof PdfSyntax.Name) {
+            return glyphToUnicode(((PdfSyntax.Name) value).value);
+        }
+        return null;
+    }
+
+    private static String utf16(byte[] bytes, int from, int to) {
+        StringBuilder text = new StringBuilder((to - from) / 2);
+        for (int i = from; i + 1 < to; i += 2) {
+            text.append((char) (((bytes[i] & 0xff) << 8) | (bytes[i + 1] & 0xff)));
+        }
+        return text.toString();
+    }
+
+    private static int toInt(byte[] bytes) {
+        int value = 0;
+        for (int i = 0; i < bytes.length && i < 4; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -9,22 +9,23 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-
-public class PdfListAdapter extends RecyclerView.Adapter<PdfListAdapter.ViewHolder> {
-    private List<PdfDocument> pdfDocuments;
-    private int currentIndex;
+/**
+ * Open documents in the floating panel; follows the {@link DocumentRegistry} while attached
+ */
+public class PdfListAdapter extends RecyclerView.Adapter<PdfListAdapter.ViewHolder>
+        implements DocumentRegistry.Listener {
+    private DocumentRegistry registry;
     private OnPdfActionListener listener;
 
     public interface OnPdfActionListener {
-        void onPdfSelected(int position);
-        void onPdfClosed(int position);
+        void onPdfSelected(PdfDocument document);
+        void onPdfClosed(PdfDocument document);
     }
 
-    public PdfListAdapter(List<PdfDocument> pdfDocuments, int currentIndex, OnPdfActionListener listener) {
-        this.pdfDocuments = pdfDocuments;
-        this.currentIndex = currentIndex;
+    public PdfListAdapter(DocumentRegistry registry, OnPdfActionListener listener) {
+        this.registry = registry;
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -36,33 +37,75 @@ public class PdfListAdapter extends RecyclerView.Adapter<PdfListAdapter.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        PdfDocument doc = pdfDocuments.get(position);
+        PdfDocument doc = registry.get(position);
         String displayName = doc.getDisplayName();
         
         // Mark current PDF with checkmark
-        if (position == currentIndex) {
+        if (position == registry.getCurrentIndex()) {
             displayName = "✓ " + displayName;
         }
         
         holder.pdfNameText.setText(displayName);
         
-        // Set click listeners
+        // Set click listeners; the row's position may have moved since it was bound
         holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onPdfSelected(position);
+            int current = holder.getBindingAdapterPosition();
+            if (listener != null && current != RecyclerView.NO_POSITION) {
+                listener.onPdfSelected(registry.get(current));
             }
         });
         
         holder.closeButton.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onPdfClosed(position);
+            int current = holder.getBindingAdapterPosition();
+            if (listener != null && current != RecyclerView.NO_POSITION) {
+                listener.onPdfClosed(registry.get(current));
             }
         });
     }
 
     @Override
     public int getItemCount() {
-        return pdfDocuments.size();
+        return registry.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return registry.getStableId(registry.get(position));
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        registry.addListener(this);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        registry.removeListener(this);
+    }
+
+    @Override
+    public void onDocumentInserted(int position) {
+        notifyItemInserted(position);
+    }
+
+    @Override
+    public void onDocumentRemoved(int position) {
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onDocumentChanged(int position) {
+        notifyItemChanged(position);
+    }
+
+    @Override
+    public void onCurrentChanged(int previous, int current) {
+        if (previous >= 0) {
+            notifyItemChanged(previous);
+        }
+        if (current >= 0) {
+            notifyItemChanged(current);
+        }
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
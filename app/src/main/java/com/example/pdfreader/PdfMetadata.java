@@ -0,0 +1,103 @@
+package com.example.pdfreader;
+
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Document facts read from the file structure alone, without a PdfRenderer: page count, page
+ * sizes, title and whether the file is linearized.
+ *
+ * Reading maps the file and parses only the trailer, the cross-reference sections and the root of
+ * the page tree, so it takes milliseconds and little memory whatever the file size. Page sizes
+ * are looked up on demand by descending the page tree.
+ */
+public final class PdfMetadata {
+
+    private final PdfReader reader;
+    private final int pageCount;
+    @Nullable
+    private final String title;
+    private final boolean linearized;
+    private final boolean encrypted;
+
+    private PdfMetadata(PdfReader reader) throws IOException {
+        this.reader = reader;
+        this.pageCount = reader.getPageCount();
+        this.linearized = reader.isLinearized();
+        this.encrypted = reader.isEncrypted();
+        // Strings of encrypted documents are encrypted too
+        this.title = encrypted ? null : readTitle(reader);
+    }
+
+    /**
+     * Read the metadata of the document behind a descriptor, which is left open
+     */
+    @NonNull
+    public static PdfMetadata read(@NonNull ParcelFileDescriptor fileDescriptor) throws IOException {
+        return new PdfMetadata(PdfReader.open(fileDescriptor));
+    }
+
+    /**
+     * Read the metadata of a document that can be read without copying it, see {@link DocumentSource}
+     */
+    @NonNull
+    public static PdfMetadata read(@NonNull DocumentSource source, @NonNull Uri uri) throws IOException {
+        ParcelFileDescriptor fileDescriptor = source.openLocal(uri);
+        if (fileDescriptor == null) throw new IOException("Not available locally: " + uri);
+        try {
+            return read(fileDescriptor);
+        } finally {
+            fileDescriptor.close();
+        }
+    }
+
+    @Nullable
+    private static String readTitle(PdfReader reader) throws IOException {
+        Map<String, Object> info = reader.getInfo();
+        if (info == null) return null;
+        String title = PdfReader.textString(reader.resolve(info.get("Title")));
+        if (title == null) return null;
+        title = title.trim();
+        return title.isEmpty() ? null : title;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Title from the document information dictionary, or null if it has none
+     */
+    @Nullable
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean isLinearized() {
+        return linearized;
+    }
+
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    /**
+     * Width of a page in points as displayed, i.e. after its rotation
+     */
+    public float getPageWidth(int pageIndex) throws IOException {
+        return reader.getPage(pageIndex).getWidth();
+    }
+
+    /**
+     * Height of a page in points as displayed, i.e. after its rotation
+     */
+    public float getPageHeight(int pageIndex) throws IOException {
+        return reader.getPage(pageIndex).getHeight();
+    }
+}
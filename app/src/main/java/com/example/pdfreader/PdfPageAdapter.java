@@ -1,44 +1,123 @@
 package com.example.pdfreader;
 
 import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.graphics.pdf.PdfRenderer;
 import android.os.Handler;
 import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageView;
+import android.view.ViewParent;
+import android.widget.FrameLayout;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * RecyclerView Adapter for rendering PDF pages efficiently.
  * Uses background thread for bitmap rendering to avoid blocking UI.
+ * Rendered pages are kept in a shared {@link PageBitmapCache}, so scrolling back costs no re-render.
+ * While zoomed in, the visible part of each page is re-rendered as fixed-size tiles.
+ * Whole pages are also written to a {@link DiskPageCache}, so reopening a document skips
+ * PdfRenderer for every page rendered before.
+ * Page cards are sized from a {@link PageGeometryIndex} before their bitmap exists, so the
+ * layout does not shift as pages finish rendering.
  */
 public class PdfPageAdapter extends RecyclerView.Adapter<PdfPageAdapter.PageViewHolder> {
 
-    private final PdfRenderer pdfRenderer;
-    private final ExecutorService executorService;
+    // Pages whose size a single background job learns, between other render jobs
+    private static final int GEOMETRY_CHUNK = 64;
+    // Zoom tiles are square render targets of this many pixels, small enough for any GPU texture
+    static final int TILE_SIZE = 256;
+    // Whole-page bitmaps larger than this cannot be drawn by the hardware renderer
+    private static final int MAX_BITMAP_DIMENSION = 4096;
+    // Tiles are only worth it once the page bitmap is noticeably softer than the screen
+    private static final float SHARPNESS_TOLERANCE = 0.9f;
+    // The first render pass uses this fraction of the full scale
+    private static final float PREVIEW_FRACTION = 0.25f;
+
+    private final PdfRendererPool rendererPool;
+    private final String documentId;
+    private final PageBitmapCache pageCache;
+    private final PageBitmapCache tileCache;
+    private final DiskPageCache diskCache;
+    // Content fingerprint keying the disk cache; null if it could not be computed
+    private final String fingerprint;
+    private final RenderScheduler<PdfRenderer> renderScheduler;
     private final Handler mainHandler;
+    private final Set<PageViewHolder> holders = new HashSet<>();
+    // Page sizes in points, from disk or learned by the render threads
+    private final PageGeometryIndex geometryIndex;
+    private final RenderMetrics metrics = RenderMetrics.getInstance();
+    private ZoomableRecyclerView zoomableView;
+    private float renderScale;
+    private boolean flinging;
+    private Runnable onFirstPageShown;
 
-    public PdfPageAdapter(PdfRenderer pdfRenderer) {
-        this.pdfRenderer = pdfRenderer;
-        this.executorService = Executors.newSingleThreadExecutor();
+    /**
+     * @param rendererPool renderers for the document, one per render thread; the adapter closes
+     *                     the pool in {@link #release()}
+     * @param fingerprint  {@link DocumentFingerprint} of the document, or null to skip the disk cache
+     * @param geometryIndex page sizes of the document; missing ones are filled in the background
+     */
+    public PdfPageAdapter(PdfRendererPool rendererPool, String documentId,
+                          PageBitmapCache pageCache, PageBitmapCache tileCache,
+                          DiskPageCache diskCache, @Nullable String fingerprint,
+                          PageGeometryIndex geometryIndex) {
+        this.rendererPool = rendererPool;
+        this.documentId = documentId;
+        this.pageCache = pageCache;
+        this.tileCache = tileCache;
+        this.diskCache = diskCache;
+        this.fingerprint = fingerprint;
         this.mainHandler = new Handler(Looper.getMainLooper());
+        this.renderScheduler = new RenderScheduler<>("PdfRender", rendererPool.getRenderers(),
+                mainHandler::post);
+        renderScheduler.setTimings(metrics.queueWait, metrics.mainPost);
+        this.geometryIndex = geometryIndex;
+        if (!geometryIndex.isComplete()) {
+            buildGeometry(0);
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (recyclerView instanceof ZoomableRecyclerView) {
+            zoomableView = (ZoomableRecyclerView) recyclerView;
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        zoomableView = null;
     }
 
     @NonNull
     @Override
     public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // Use screen density for optimal quality/performance balance
+        renderScale = parent.getContext().getResources().getDisplayMetrics().density;
+
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_pdf_page, parent, false);
-        return new PageViewHolder(view);
+        PageViewHolder holder = new PageViewHolder(view);
+        holders.add(holder);
+        return holder;
     }
 
     @Override
@@ -48,98 +127,563 @@ public class PdfPageAdapter extends RecyclerView.Adapter<PdfPageAdapter.PageView
 
     @Override
     public int getItemCount() {
-        return pdfRenderer != null ? pdfRenderer.getPageCount() : 0;
+        // Cached by the pool, the renderers themselves belong to the render threads
+        return rendererPool.getPageCount();
     }
 
     /**
-     * Clean up resources when adapter is destroyed
+     * Clean up resources when adapter is destroyed.
+     * The renderers are closed once the render threads have finished their current page.
      */
     public void release() {
-        executorService.shutdown();
+        renderScheduler.shutdown(rendererPool::close);
+
+        // Unpin whatever is still on screen; the pages stay cached for a quick reopen
+        for (PageViewHolder holder : holders) {
+            holder.recycle();
+        }
+        holders.clear();
+    }
+
+    /**
+     * Page cache shared with other documents, exposed for hit/miss statistics
+     */
+    public PageBitmapCache getPageCache() {
+        return pageCache;
+    }
+
+    /**
+     * Render scheduler, exposed for queue depth and drop statistics
+     */
+    public RenderScheduler<PdfRenderer> getRenderScheduler() {
+        return renderScheduler;
+    }
+
+    /**
+     * While flinging only the cheap preview pass runs; when the fling ends,
+     * the pages it settled on get their full-quality pass
+     */
+    public void setFlinging(boolean flinging) {
+        if (this.flinging == flinging) return;
+        this.flinging = flinging;
+        if (!flinging) {
+            for (PageViewHolder holder : holders) {
+                holder.requestFullQuality();
+            }
+        }
+    }
+
+    /**
+     * Run once, when the first page of this adapter shows pixels
+     */
+    public void setOnFirstPageShownListener(@Nullable Runnable listener) {
+        this.onFirstPageShown = listener;
+    }
+
+    public PageGeometryIndex getGeometryIndex() {
+        return geometryIndex;
+    }
+
+    /**
+     * Learn the sizes of the pages from fromPage on, one chunk per background job
+     */
+    private void buildGeometry(int fromPage) {
+        final int start = geometryIndex.findFirstUnknown(fromPage);
+        if (start >= geometryIndex.getPageCount()) return;
+
+        final int end = start + GEOMETRY_CHUNK;
+        PageKey key = new PageKey(documentId + "#geometry", start, 0f);
+        renderScheduler.submit(key, RenderScheduler.PRIORITY_BACKGROUND,
+                renderer -> geometryIndex.build(renderer, start, end),
+                new RenderScheduler.Callback() {
+                    @Override
+                    public void onRenderFinished() {
+                        buildGeometry(end);
+                    }
+
+                    @Override
+                    public void onRenderFailed(@NonNull Exception e) {
+                        // Sizes are still learned page by page as pages render
+                        e.printStackTrace();
+                    }
+                });
+    }
+
+    private PageKey previewKey(PageKey fullKey) {
+        return new PageKey(fullKey.getDocumentId(), fullKey.getPageIndex(),
+                fullKey.getScale() * PREVIEW_FRACTION);
+    }
+
+    /**
+     * Re-evaluate zoom tiles of every page on screen, after a zoom, pan or scroll
+     */
+    public void updateVisibleTiles() {
+        for (PageViewHolder holder : holders) {
+            holder.updateTiles();
+        }
+    }
+
+    /**
+     * Queue a low-priority render of a page that is about to scroll into view
+     * @return request to cancel if the page is no longer wanted, or null if nothing needs rendering
+     */
+    public RenderScheduler.Request prefetchPage(int pageIndex) {
+        if (renderScale == 0f || pageIndex < 0 || pageIndex >= getItemCount()) return null;
+
+        final PageKey key = new PageKey(documentId, pageIndex, renderScale);
+        if (pageCache.contains(key)) return null;
+        return renderScheduler.submit(key, RenderScheduler.PRIORITY_PREFETCH,
+                renderer -> renderPage(renderer, key), null);
+    }
+
+    private void renderPage(PdfRenderer renderer, PageKey key) throws Exception {
+        renderPage(renderer, key, fingerprint, getItemCount(), geometryIndex, pageCache, diskCache, metrics);
+    }
+
+    /**
+     * Render one page into a pooled bitmap and store it in the page cache.
+     * Pages found in the disk cache are read from there instead of rendered.
+     * Runs on the render thread that owns renderer; also used to prewarm a document.
+     * @param fingerprint content fingerprint keying the disk cache, or null to skip it
+     * @param metrics     where to record timings, or null to record none
+     */
+    static void renderPage(PdfRenderer renderer, PageKey key, @Nullable String fingerprint, int pageCount,
+                           PageGeometryIndex geometryIndex, PageBitmapCache pageCache,
+                           DiskPageCache diskCache, @Nullable RenderMetrics metrics) throws Exception {
+        BitmapPool bitmapPool = pageCache.getBitmapPool();
+        if (fingerprint != null) {
+            int[] pageSize = new int[2];
+            long readStart = System.nanoTime();
+            Bitmap cached = diskCache.read(fingerprint, key, bitmapPool, pageSize);
+            if (metrics != null) metrics.diskRead.recordSince(readStart);
+            if (cached != null) {
+                geometryIndex.set(key.getPageIndex(), pageSize[0], pageSize[1]);
+                pageCache.put(key, cached);
+                return;
+            }
+        }
+
+        // Open the page
+        long openStart = System.nanoTime();
+        PdfRenderer.Page page = renderer.openPage(key.getPageIndex());
+        if (metrics != null) metrics.openPage.recordSince(openStart);
+        try {
+            geometryIndex.set(page.getIndex(), page.getWidth(), page.getHeight());
+
+            // Posters and drawings may not fit a bitmap at full scale; render what fits,
+            // zoom tiles fill in the detail
+            float scale = Math.min(key.getScale(), maxWholePageScale(page, pageCache));
+            int width = Math.max(1, (int) (page.getWidth() * scale));
+            int height = Math.max(1, (int) (page.getHeight() * scale));
+
+            // Take a render target from the pool instead of allocating one per bind
+            Bitmap bitmap = bitmapPool.acquire(width, height);
+            try {
+                // Render PDF page to bitmap
+                long renderStart = System.nanoTime();
+                page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                if (metrics != null) metrics.render.recordSince(renderStart);
+            } catch (RuntimeException e) {
+                bitmapPool.release(bitmap);
+                throw e;
+            }
+
+            // Before the memory cache takes ownership and may hand the bitmap back to the pool
+            if (fingerprint != null) {
+                diskCache.write(fingerprint, pageCount, key, bitmap, page.getWidth(), page.getHeight());
+            }
+            pageCache.put(key, bitmap);
+        } finally {
+            // Close the page
+            page.close();
+        }
+    }
+
+    /**
+     * Render one tile of a page: transform the page so the tile's corner lands at the bitmap
+     * origin and clip drawing to the part of the tile that lies on the page.
+     */
+    private void renderTile(PdfRenderer renderer, PageKey key) throws Exception {
+        PdfRenderer.Page page = renderer.openPage(key.getPageIndex());
+        try {
+            float scale = key.getScale();
+            int left = key.getTileColumn() * TILE_SIZE;
+            int top = key.getTileRow() * TILE_SIZE;
+            int width = Math.min(TILE_SIZE, (int) Math.ceil(page.getWidth() * scale) - left);
+            int height = Math.min(TILE_SIZE, (int) Math.ceil(page.getHeight() * scale) - top);
+            if (width <= 0 || height <= 0) return;
+
+            Matrix transform = new Matrix();
+            transform.setScale(scale, scale);
+            transform.postTranslate(-left, -top);
+
+            // Edge tiles use a full-size pooled bitmap and a clip, so every tile shares one bucket
+            BitmapPool bitmapPool = tileCache.getBitmapPool();
+            Bitmap bitmap = bitmapPool.acquire(TILE_SIZE, TILE_SIZE);
+            try {
+                long renderStart = System.nanoTime();
+                page.render(bitmap, new Rect(0, 0, width, height), transform,
+                        PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                metrics.renderTile.recordSince(renderStart);
+            } catch (RuntimeException e) {
+                bitmapPool.release(bitmap);
+                throw e;
+            }
+            tileCache.put(key, bitmap);
+        } finally {
+            page.close();
+        }
+    }
+
+    /**
+     * Largest scale at which a whole page stays within texture limits and half the page budget
+     */
+    private static float maxWholePageScale(PdfRenderer.Page page, PageBitmapCache pageCache) {
+        float byDimension = (float) MAX_BITMAP_DIMENSION / Math.max(page.getWidth(), page.getHeight());
+        double maxPixels = pageCache.getMaxBytes() / 2.0 / 4;
+        float byBytes = (float) Math.sqrt(maxPixels / ((double) page.getWidth() * page.getHeight()));
+        return Math.min(byDimension, byBytes);
     }
 
     class PageViewHolder extends RecyclerView.ViewHolder {
-        private final ImageView pageImageView;
+        private final PageImageView pageImageView;
         private final ProgressBar progressBar;
         private final TextView pageNumberText;
+        private final Map<PageKey, RenderScheduler.Request> tileRequests = new HashMap<>();
+        private final Map<PageKey, PageImageView.Tile> shownTiles = new HashMap<>();
+        private final Rect visibleRect = new Rect();
+        // Margins that give the progress bar a page-like height while the page size is unknown
+        private final int placeholderMargin;
+        // Full-quality key of the bound page
+        private PageKey boundKey;
+        // Key of what is on screen: the preview, the full page or nothing
+        private PageKey shownKey;
         private Bitmap currentBitmap;
+        private RenderScheduler.Request previewRequest;
+        private RenderScheduler.Request fullRequest;
+        private long bindNanos;
 
         PageViewHolder(@NonNull View itemView) {
             super(itemView);
             pageImageView = itemView.findViewById(R.id.pageImageView);
             progressBar = itemView.findViewById(R.id.progressBar);
             pageNumberText = itemView.findViewById(R.id.pageNumberText);
+            placeholderMargin = ((FrameLayout.LayoutParams) progressBar.getLayoutParams()).topMargin;
         }
 
         void bind(int pageIndex) {
-            // Show loading state
-            progressBar.setVisibility(View.VISIBLE);
-            pageImageView.setVisibility(View.GONE);
             pageNumberText.setText(String.format("Page %d", pageIndex + 1));
 
-            // Recycle previous bitmap if exists
-            if (currentBitmap != null && !currentBitmap.isRecycled()) {
-                currentBitmap.recycle();
-                currentBitmap = null;
+            // Unpin the page this holder showed before and cancel its pending renders
+            recycle();
+
+            boundKey = new PageKey(documentId, pageIndex, renderScale);
+            bindNanos = System.nanoTime();
+
+            // Size the card for the page now, if the size is known, so it keeps that size throughout
+            pageImageView.setPageSize(geometryIndex.getWidth(pageIndex), geometryIndex.getHeight(pageIndex));
+
+            // Cached pages are shown right away without touching the renderer
+            Bitmap cached = pageCache.acquire(boundKey);
+            if (cached != null) {
+                showBitmap(boundKey, cached);
+                return;
+            }
+
+            // Show loading state; a sized page keeps its place as an empty page
+            boolean sized = geometryIndex.isKnown(pageIndex);
+            FrameLayout.LayoutParams progressParams = (FrameLayout.LayoutParams) progressBar.getLayoutParams();
+            int margin = sized ? 0 : placeholderMargin;
+            if (progressParams.topMargin != margin) {
+                progressParams.topMargin = margin;
+                progressParams.bottomMargin = margin;
+                progressBar.setLayoutParams(progressParams);
+            }
+            progressBar.setVisibility(View.VISIBLE);
+            pageImageView.setVisibility(sized ? View.VISIBLE : View.GONE);
+
+            // First pass: a cheap low-resolution preview, shown upscaled as soon as it exists
+            final PageKey previewKey = previewKey(boundKey);
+            Bitmap preview = pageCache.pin(previewKey);
+            if (preview != null) {
+                showBitmap(previewKey, preview);
+            } else {
+                previewRequest = renderScheduler.submit(previewKey, RenderScheduler.PRIORITY_PREVIEW,
+                        renderer -> renderPage(renderer, previewKey),
+                        new PassCallback(previewKey, true));
+            }
+
+            // Second pass: full quality, unless a fling will carry this page away anyway
+            if (!flinging) {
+                requestFullQuality();
+            }
+        }
+
+        /**
+         * Queue the full-quality pass if this holder still shows less than that
+         */
+        void requestFullQuality() {
+            if (boundKey == null || fullRequest != null || boundKey.equals(shownKey)) return;
+
+            final PageKey key = boundKey;
+            fullRequest = renderScheduler.submit(key, RenderScheduler.PRIORITY_VISIBLE,
+                    renderer -> renderPage(renderer, key), new PassCallback(key, false));
+        }
+
+        /**
+         * Completion of either render pass for the page this holder is bound to
+         */
+        private final class PassCallback implements RenderScheduler.Callback {
+            private final PageKey key;
+            private final boolean preview;
+
+            PassCallback(PageKey key, boolean preview) {
+                this.key = key;
+                this.preview = preview;
+            }
+
+            @Override
+            public void onRenderFinished() {
+                if (preview) {
+                    previewRequest = null;
+                    // The full page may have won the race
+                    if (currentBitmap != null) return;
+                } else {
+                    fullRequest = null;
+                }
+
+                Bitmap bitmap = pageCache.pin(key);
+                if (bitmap != null) {
+                    showBitmap(key, bitmap);
+                } else if (!preview) {
+                    // Evicted before it could be shown, try again
+                    requestFullQuality();
+                }
+            }
+
+            @Override
+            public void onRenderFailed(@NonNull Exception e) {
+                if (preview) {
+                    previewRequest = null;
+                    return;
+                }
+                fullRequest = null;
+                e.printStackTrace();
+                progressBar.setVisibility(View.GONE);
+                pageNumberText.setText(String.format("Error loading page %d", boundKey.getPageIndex() + 1));
+            }
+        }
+
+        /**
+         * Display a pinned bitmap (preview or full page), replacing and unpinning any earlier one
+         */
+        private void showBitmap(PageKey key, Bitmap bitmap) {
+            if (currentBitmap == null) {
+                metrics.firstPixel.recordSince(bindNanos);
+            }
+            if (key.equals(boundKey) && !key.equals(shownKey)) {
+                metrics.fullQuality.recordSince(bindNanos);
+                metrics.countPageShown();
+            }
+            if (onFirstPageShown != null) {
+                Runnable listener = onFirstPageShown;
+                onFirstPageShown = null;
+                listener.run();
+            }
+            PageKey previousKey = shownKey;
+
+            currentBitmap = bitmap;
+            shownKey = key;
+            pageImageView.setImageBitmap(bitmap);
+            pageImageView.setVisibility(View.VISIBLE);
+            progressBar.setVisibility(View.GONE);
+
+            // The view no longer draws the previous bitmap, so it may be evicted now
+            if (previousKey != null) {
+                pageCache.release(previousKey);
+            }
+            if (previewRequest != null && key.equals(boundKey)) {
+                previewRequest.cancel();
+                previewRequest = null;
+            }
+
+            // Once laid out, add tiles if the page is zoomed or too large for its bitmap
+            pageImageView.post(this::updateTiles);
+        }
+
+        /**
+         * Bring the zoom tiles in line with the visible part of this page: request missing tiles,
+         * cancel requests that left the viewport and release tiles no longer needed.
+         */
+        void updateTiles() {
+            // Tiles refine the full-quality page only, never the preview
+            if (currentBitmap == null || !boundKey.equals(shownKey)
+                    || zoomableView == null || itemView.getParent() != zoomableView) {
+                clearTiles();
+                return;
+            }
+
+            final int pageIndex = boundKey.getPageIndex();
+            int pageWidth = geometryIndex.getWidth(pageIndex);
+            int pageHeight = geometryIndex.getHeight(pageIndex);
+            int viewWidth = pageImageView.getWidth();
+            int viewHeight = pageImageView.getHeight();
+            float zoom = zoomableView.getZoom();
+            if (pageWidth == 0 || viewWidth == 0 || viewHeight == 0
+                    || currentBitmap.getWidth() >= zoom * viewWidth * SHARPNESS_TOLERANCE) {
+                clearTiles();
+                return;
+            }
+
+            // Visible part of the page view, in its own coordinates
+            zoomableView.getVisibleContentRect(visibleRect);
+            int offsetX = 0;
+            int offsetY = 0;
+            View view = pageImageView;
+            while (view != zoomableView) {
+                offsetX += view.getLeft();
+                offsetY += view.getTop();
+                ViewParent parent = view.getParent();
+                if (!(parent instanceof View)) {
+                    clearTiles();
+                    return;
+                }
+                view = (View) parent;
+            }
+            visibleRect.offset(-offsetX, -offsetY);
+            if (!visibleRect.intersect(0, 0, viewWidth, viewHeight)) {
+                clearTiles();
+                return;
+            }
+
+            // Render tiles at half-step zoom levels so small pinch changes reuse the same tiles
+            float zoomLevel = (float) Math.ceil(zoom * 2) / 2f;
+            float tileScale = zoomLevel * viewWidth / pageWidth;
+            int fullWidth = (int) Math.ceil(pageWidth * tileScale);
+            int fullHeight = (int) Math.ceil(pageHeight * tileScale);
+            float toTile = (float) fullWidth / viewWidth;
+
+            int firstColumn = (int) (visibleRect.left * toTile) / TILE_SIZE;
+            int lastColumn = Math.min(fullWidth - 1, (int) (visibleRect.right * toTile)) / TILE_SIZE;
+            int firstRow = (int) (visibleRect.top * toTile) / TILE_SIZE;
+            int lastRow = Math.min(fullHeight - 1, (int) (visibleRect.bottom * toTile)) / TILE_SIZE;
+
+            Set<PageKey> wanted = new HashSet<>();
+            boolean changed = false;
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    final PageKey tileKey = new PageKey(documentId, pageIndex, tileScale, column, row);
+                    wanted.add(tileKey);
+                    if (shownTiles.containsKey(tileKey) || tileRequests.containsKey(tileKey)) continue;
+
+                    Bitmap cached = tileCache.acquire(tileKey);
+                    if (cached != null) {
+                        shownTiles.put(tileKey, newTile(tileKey, cached, fullWidth, fullHeight));
+                        changed = true;
+                        continue;
+                    }
+                    tileRequests.put(tileKey, renderScheduler.submit(tileKey, RenderScheduler.PRIORITY_VISIBLE,
+                            renderer -> renderTile(renderer, tileKey), new RenderScheduler.Callback() {
+                                @Override
+                                public void onRenderFinished() {
+                                    tileRequests.remove(tileKey);
+                                    Bitmap bitmap = tileCache.pin(tileKey);
+                                    if (bitmap != null) {
+                                        shownTiles.put(tileKey, newTile(tileKey, bitmap, fullWidth, fullHeight));
+                                        pageImageView.setTiles(new ArrayList<>(shownTiles.values()));
+                                    }
+                                }
+
+                                @Override
+                                public void onRenderFailed(@NonNull Exception e) {
+                                    tileRequests.remove(tileKey);
+                                    e.printStackTrace();
+                                }
+                            }));
+                }
             }
 
-            // Render page on background thread
-            executorService.execute(() -> {
-                if (pdfRenderer == null) return;
-
-                try {
-                    // Open the page
-                    PdfRenderer.Page page = pdfRenderer.openPage(pageIndex);
-
-                    // Calculate bitmap dimensions
-                    // Use screen density for optimal quality/performance balance
-                    float scale = itemView.getContext().getResources().getDisplayMetrics().density;
-                    int width = (int) (page.getWidth() * scale);
-                    int height = (int) (page.getHeight() * scale);
-
-                    // Create bitmap for rendering
-                    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-
-                    // Render PDF page to bitmap
-                    page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
-
-                    // Close the page
-                    page.close();
-
-                    // Update UI on main thread
-                    final Bitmap finalBitmap = bitmap;
-                    mainHandler.post(() -> {
-                        // Check if this ViewHolder is still bound to the same position
-                        if (getBindingAdapterPosition() == pageIndex) {
-                            currentBitmap = finalBitmap;
-                            pageImageView.setImageBitmap(finalBitmap);
-                            pageImageView.setVisibility(View.VISIBLE);
-                            progressBar.setVisibility(View.GONE);
-                        } else {
-                            // ViewHolder has been recycled, release bitmap
-                            finalBitmap.recycle();
-                        }
-                    });
-
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    mainHandler.post(() -> {
-                        progressBar.setVisibility(View.GONE);
-                        pageNumberText.setText(String.format("Error loading page %d", pageIndex + 1));
-                    });
+            // Tiles that left the viewport: cancel before they start, release once off screen
+            Iterator<Map.Entry<PageKey, RenderScheduler.Request>> requests = tileRequests.entrySet().iterator();
+            while (requests.hasNext()) {
+                Map.Entry<PageKey, RenderScheduler.Request> entry = requests.next();
+                if (!wanted.contains(entry.getKey())) {
+                    entry.getValue().cancel();
+                    requests.remove();
                 }
-            });
+            }
+            List<PageKey> released = new ArrayList<>();
+            Iterator<PageKey> shown = shownTiles.keySet().iterator();
+            while (shown.hasNext()) {
+                PageKey tileKey = shown.next();
+                if (!wanted.contains(tileKey)) {
+                    shown.remove();
+                    released.add(tileKey);
+                }
+            }
+            if (changed || !released.isEmpty()) {
+                pageImageView.setTiles(new ArrayList<>(shownTiles.values()));
+            }
+            for (PageKey tileKey : released) {
+                tileCache.release(tileKey);
+            }
+        }
+
+        private PageImageView.Tile newTile(PageKey tileKey, Bitmap bitmap, int fullWidth, int fullHeight) {
+            int left = tileKey.getTileColumn() * TILE_SIZE;
+            int top = tileKey.getTileRow() * TILE_SIZE;
+            int width = Math.min(TILE_SIZE, fullWidth - left);
+            int height = Math.min(TILE_SIZE, fullHeight - top);
+            return new PageImageView.Tile(bitmap, width, height,
+                    (float) left / fullWidth, (float) top / fullHeight,
+                    (float) (left + width) / fullWidth, (float) (top + height) / fullHeight);
+        }
+
+        /**
+         * Cancel pending tiles and release the shown ones
+         */
+        private void clearTiles() {
+            for (RenderScheduler.Request request : tileRequests.values()) {
+                request.cancel();
+            }
+            tileRequests.clear();
+            if (shownTiles.isEmpty()) return;
+
+            // Detach tiles from the view before they become evictable
+            pageImageView.setTiles(new ArrayList<>());
+            for (PageKey tileKey : shownTiles.keySet()) {
+                tileCache.release(tileKey);
+            }
+            shownTiles.clear();
         }
 
         /**
          * Clean up when ViewHolder is recycled
          */
         void recycle() {
-            if (currentBitmap != null && !currentBitmap.isRecycled()) {
-                currentBitmap.recycle();
-                currentBitmap = null;
+            if (boundKey != null && !boundKey.equals(shownKey)) {
+                // Scrolled away or rebound before its full-quality page was shown
+                metrics.countPageDropped();
             }
+            // A full-quality pass not yet started is skipped entirely
+            if (previewRequest != null) {
+                previewRequest.cancel();
+                previewRequest = null;
+            }
+            if (fullRequest != null) {
+                fullRequest.cancel();
+                fullRequest = null;
+            }
+            clearTiles();
+
+            // Detach the bitmap from the view before it becomes evictable
             pageImageView.setImageBitmap(null);
+            if (currentBitmap != null) {
+                pageCache.release(shownKey);
+                currentBitmap = null;
+            }
+            shownKey = null;
+            boundKey = null;
         }
     }
 
@@ -0,0 +1,976 @@
+package com.example.pdfreader;
+
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Minimal pure-Java reader of the PDF file structure over a memory-mapped file: cross-reference
+ * tables and streams, object streams, stream filters and the page tree.
+ *
+ * PdfRenderer draws pages but exposes nothing else, so text, metadata and the outline come from
+ * here. Objects are parsed lazily on first use and cached, and cross-reference tables are read in
+ * place from the mapping, so the heap stays small even for very large files. The reader is safe
+ * to share between threads. Encrypted documents are detected but not decrypted.
+ */
+public class PdfReader {
+
+    // Give up on streams that claim to inflate beyond this; protects against decompression bombs
+    private static final int MAX_DECODED_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_PAGE_TREE_DEPTH = 64;
+    // The linearization dictionary must start within this many bytes of the file
+    private static final int LINEARIZATION_WINDOW = 1024;
+    // PDFDocEncoding 0x80 to 0xa0, where it departs from Latin-1
+    private static final String PDF_DOC_80 = ""
+            + "\u2022\u2020\u2021\u2026\u2014\u2013\u0192\u2044"
+            + "\u2039\u203a\u2212\u2030\u201e\u201c\u201d\u2018"
+            + "\u2019\u201a\u2122\ufb01\ufb02\u0141\u0152\u0160"
+            + "\u0178\u017d\u0131\u0142\u0153\u0161\u017e\ufffd"
+            + "\u20ac";
+
+    /**
+     * A page with the attributes it inherits from the page tree filled in
+     */
+    public static final class Page {
+        final Map<String, Object> dictionary;
+        final Map<String, Object> resources;
+        // x0, y0, x1, y1 in points
+        final float[] mediaBox;
+        final int rotation;
+
+        Page(Map<String, Object> dictionary, Map<String, Object> resources, float[] mediaBox, int rotation) {
+            this.dictionary = dictionary;
+            this.resources = resources;
+            this.mediaBox = mediaBox;
+            this.rotation = rotation;
+        }
+
+        /**
+         * Width in points as displayed, i.e. after rotation
+         */
+        public float getWidth() {
+            float width = Math.abs(mediaBox[2] - mediaBox[0]);
+            float height = Math.abs(mediaBox[3] - mediaBox[1]);
+            return rotation % 180 == 0 ? width : height;
+        }
+
+        public float getHeight() {
+            float width = Math.abs(mediaBox[2] - mediaBox[0]);
+            float height = Math.abs(mediaBox[3] - mediaBox[1]);
+            return rotation % 180 == 0 ? height : width;
+        }
+    }
+
+    private final ByteBuffer data;
+    // Cross-reference sections, newest first. Entries: type 1 = at byte offset, type 2 = in an object stream
+    private final List<XrefSection> sections = new ArrayList<>();
+    private final Map<Integer, Object> objects = new ConcurrentHashMap<>();
+    private Map<String, Object> trailer = Collections.emptyMap();
+    private volatile List<Page> pages;
+    // Page dictionary to index, built with the page list
+    private volatile Map<Map<String, Object>, Integer> pageIndices;
+
+    /**
+     * Map the document behind a descriptor; reads a duplicate, so the descriptor is left alone
+     */
+    @NonNull
+    public static PdfReader open(@NonNull ParcelFileDescriptor fileDescriptor) throws IOException {
+        try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor.dup());
+             FileChannel channel = in.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return new PdfReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public PdfReader(@NonNull ByteBuffer data) throws IOException {
+        this.data = data;
+        try {
+            readCrossReferences();
+        } catch (IOException | RuntimeException e) {
+            // Damaged or incrementally updated beyond repair: find the objects by scanning
+            sections.clear();
+            reconstructCrossReferences();
+        }
+        if (!(resolve(trailer.get("Root")) instanceof Map)) {
+            throw new IOException("No document catalog");
+        }
+    }
+
+    public boolean isEncrypted() {
+        return trailer.containsKey("Encrypt");
+    }
+
+    /**
+     * Whether the file is linearized for fast first-page display and has not been updated since,
+     * which would leave its linearization stale
+     */
+    public boolean isLinearized() {
+        // The linearization dictionary is the first object of the file
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(data, 0, false);
+        try {
+            parser.skipWhitespace();
+            if (parser.getPosition() >= LINEARIZATION_WINDOW) return false;
+            Object number = parser.next();
+            Object generation = parser.next();
+            Object keyword = parser.next();
+            if (!(number instanceof Integer) || !(generation instanceof Integer)
+                    || !(keyword instanceof PdfSyntax.Keyword) || !((PdfSyntax.Keyword) keyword).is("obj")) {
+                return false;
+            }
+            Object dictionary = parser.next();
+            if (!(dictionary instanceof Map) || !((Map<?, ?>) dictionary).containsKey("Linearized")) return false;
+            return intValue(((Map<?, ?>) dictionary).get("L"), -1) == data.limit();
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Size of the mapped file in bytes
+     */
+    public int getLength() {
+        return data.limit();
+    }
+
+    @NonNull
+    public Map<String, Object> getTrailer() {
+        return trailer;
+    }
+
+    @NonNull
+    public Map<String, Object> getCatalog() throws IOException {
+        Map<String, Object> catalog = getDictionary(trailer, "Root");
+        return catalog != null ? catalog : Collections.<String, Object>emptyMap();
+    }
+
+    /**
+     * The document information dictionary, or null
+     */
+    @Nullable
+    public Map<String, Object> getInfo() throws IOException {
+        return getDictionary(trailer, "Info");
+    }
+
+    /**
+     * Number of pages, from the count at the root of the page tree without walking it
+     */
+    public int getPageCount() throws IOException {
+        List<Page> all = pages;
+        if (all != null) return all.size();
+        Map<String, Object> root = getDictionary(getCatalog(), "Pages");
+        if (root == null) return 0;
+        int count = intValue(resolve(root.get("Count")), -1);
+        return count >= 0 ? count : getPages().size();
+    }
+
+    /**
+     * One page, found by descending the page tree by its counts; only the nodes on the way are
+     * read. Falls back to walking the whole tree if the counts do not add up.
+     */
+    @NonNull
+    public Page getPage(int index) throws IOException {
+        List<Page> all = pages;
+        if (all != null) return all.get(index);
+
+        Map<String, Object> node = getDictionary(getCatalog(), "Pages");
+        Map<String, Object> resources = null;
+        float[] mediaBox = null;
+        int rotation = 0;
+        int remaining = index;
+        for (int depth = 0; node != null && remaining >= 0 && depth <= MAX_PAGE_TREE_DEPTH; depth++) {
+            Map<String, Object> ownResources = getDictionary(node, "Resources");
+            if (ownResources != null) resources = ownResources;
+            float[] ownBox = toRectangle(resolve(node.get("MediaBox")));
+            if (ownBox != null) mediaBox = ownBox;
+            Object ownRotation = resolve(node.get("Rotate"));
+            if (ownRotation instanceof Number) rotation = ((Number) ownRotation).intValue();
+
+            List<Object> kids = PdfSyntax.asArray(resolve(node.get("Kids")));
+            if (kids == null) {
+                if (remaining == 0) return newPage(node, resources, mediaBox, rotation);
+                break;
+            }
+            Map<String, Object> next = null;
+            for (Object kid : kids) {
+                Map<String, Object> childNode = PdfSyntax.asDict(resolve(kid));
+                if (childNode == null) continue;
+                int count = childNode.containsKey("Kids") ? intValue(resolve(childNode.get("Count")), -1) : 1;
+                if (count < 0) break;
+                if (remaining < count) {
+                    next = childNode;
+                    break;
+                }
+                remaining -= count;
+            }
+            node = next;
+        }
+        return getPages().get(index);
+    }
+
+    /**
+     * All pages in order. Walks the page tree on first call.
+     */
+    @NonNull
+    public List<Page> getPages() throws IOException {
+        List<Page> result = pages;
+        if (result == null) {
+            synchronized (this) {
+                if (pages == null) {
+                    List<Page> list = new ArrayList<>();
+                    Map<String, Object> root = getDictionary(getCatalog(), "Pages");
+                    if (root != null) {
+                        collectPages(root, null, null, 0, list,
+                                Collections.newSetFromMap(new IdentityHashMap<>()), 0);
+                    }
+                    pages = Collections.unmodifiableList(list);
+                }
+                result = pages;
+            }
+        }
+        return result;
+    }
+
+    private void collectPages(Map<String, Object> node, Map<String, Object> resources, float[] mediaBox,
+                              int rotation, List<Page> out, Set<Map<String, Object>> visited, int depth)
+            throws IOException {
+        // Guard against cycles in broken page trees
+        if (depth > MAX_PAGE_TREE_DEPTH || !visited.add(node)) return;
+
+        Map<String, Object> ownResources = getDictionary(node, "Resources");
+        if (ownResources != null) resources = ownResources;
+        float[] ownBox = toRectangle(resolve(node.get("MediaBox")));
+        if (ownBox != null) mediaBox = ownBox;
+        Object ownRotation = resolve(node.get("Rotate"));
+        if (ownRotation instanceof Number) rotation = ((Number) ownRotation).intValue();
+
+        List<Object> kids = PdfSyntax.asArray(resolve(node.get("Kids")));
+        if (kids != null) {
+            for (Object kid : kids) {
+                Map<String, Object> child = PdfSyntax.asDict(resolve(kid));
+                if (child != null) {
+                    collectPages(child, resources, mediaBox, rotation, out, visited, depth + 1);
+                }
+            }
+        } else {
+            out.add(newPage(node, resources, mediaBox, rotation));
+        }
+    }
+
+    private static Page newPage(Map<String, Object> node, @Nullable Map<String, Object> resources,
+                                @Nullable float[] mediaBox, int rotation) {
+        // US Letter when nothing says otherwise
+        float[] box = mediaBox != null ? mediaBox : new float[]{0, 0, 612, 792};
+        int normalized = ((rotation % 360) + 360) % 360;
+        return new Page(node, resources != null ? resources : Collections.<String, Object>emptyMap(),
+                box, normalized);
+    }
+
+    /**
+     * Index of the page a page reference points to, or -1; used to resolve link and outline targets
+     */
+    public int indexOfPage(@NonNull Object pageReference) throws IOException {
+        Object page = resolve(pageReference);
+        Map<Map<String, Object>, Integer> indices = pageIndices;
+        if (indices == null) {
+            // The reader hands out one instance per object, so identity finds the page
+            List<Page> all = getPages();
+            indices = new IdentityHashMap<>(all.size() * 2);
+            for (int i = 0; i < all.size(); i++) {
+                indices.put(all.get(i).dictionary, i);
+            }
+            pageIndices = indices;
+        }
+        Integer index = indices.get(page);
+        return index != null ? index : -1;
+    }
+
+    // ----- Object access -----
+
+    /**
+     * Follow a reference to its object; anything else is returned as is
+     */
+    @Nullable
+    public Object resolve(@Nullable Object object) throws IOException {
+        int hops = 0;
+        while (object instanceof PdfSyntax.Ref && hops++ < 32) {
+            object = getObject(((PdfSyntax.Ref) object).number);
+        }
+        return object;
+    }
+
+    @Nullable
+    public Map<String, Object> getDictionary(@Nullable Map<String, Object> dictionary, @NonNull String key)
+            throws IOException {
+        if (dictionary == null) return null;
+        Object value = resolve(dictionary.get(key));
+        if (value instanceof PdfSyntax.Stream) {
+            return ((PdfSyntax.Stream) value).dictionary;
+        }
+        return PdfSyntax.asDict(value);
+    }
+
+    @Nullable
+    public Object getObject(int number) throws IOException {
+        Object cached = objects.get(number);
+        if (cached != null) return cached;
+
+        long[] entry = entry(number);
+        if (entry == null) return null;
+        Object object = entry[0] == 1 ? parseObjectAt((int) entry[1], number)
+                : loadFromObjectStream((int) entry[1], number);
+        if (object != null) {
+            Object raced = objects.putIfAbsent(number, object);
+            if (raced != null) object = raced;
+        }
+        return object;
+    }
+
+    private Object parseObjectAt(int offset, int expectedNumber) throws IOException {
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(data, offset, true);
+        Object number = parser.next();
+        parser.next();
+        Object keyword = parser.next();
+        if (!(number instanceof Integer) || !(keyword instanceof PdfSyntax.Keyword)
+                || !((PdfSyntax.Keyword) keyword).is("obj")
+                || (expectedNumber >= 0 && (Integer) number != expectedNumber)) {
+            throw new IOException("No object " + expectedNumber + " at " + offset);
+        }
+        Object object = parser.next();
+        Map<String, Object> dictionary = PdfSyntax.asDict(object);
+        if (dictionary != null) {
+            int mark = parser.getPosition();
+            Object next = parser.next();
+            if (next instanceof PdfSyntax.Keyword && ((PdfSyntax.Keyword) next).is("stream")) {
+                return readStream(dictionary, parser);
+            }
+            parser.setPosition(mark);
+        }
+        return object;
+    }
+
+    private PdfSyntax.Stream readStream(Map<String, Object> dictionary, PdfSyntax.Parser parser)
+            throws IOException {
+        // Data starts after the end of line following "stream"
+        int start = parser.getPosition();
+        if (start < data.limit() && data.get(start) == '\r') start++;
+        if (start < data.limit() && data.get(start) == '\n') start++;
+
+        int length = -1;
+        Object declared = dictionary.get("Length");
+        if (declared instanceof PdfSyntax.Ref) {
+            // Only follow the reference if it cannot lead back here
+            long[] entry = entry(((PdfSyntax.Ref) declared).number);
+            if (entry != null && entry[0] == 1) {
+                Object value = parseObjectAt((int) entry[1], -1);
+                if (value instanceof Number) length = ((Number) value).intValue();
+            }
+        } else if (declared instanceof Number) {
+            length = ((Number) declared).intValue();
+        }
+
+        // Lengths are often wrong in broken files; trust "endstream" over them
+        if (length < 0 || start + length > data.limit() || parser.find("endstream", start + length,
+                start + length + 32) < 0) {
+            int end = parser.find("endstream", start, data.limit());
+            if (end < 0) throw new IOException("Unterminated stream at " + start);
+            while (end > start && (data.get(end - 1) == '\n' || data.get(end - 1) == '\r')) end--;
+            length = end - start;
+        }
+        return new PdfSyntax.Stream(dictionary, data, start, length);
+    }
+
+    private Object loadFromObjectStream(int streamNumber, int number) throws IOException {
+        Object container = getObject(streamNumber);
+        if (!(container instanceof PdfSyntax.Stream)) return null;
+        PdfSyntax.Stream stream = (PdfSyntax.Stream) container;
+        int count = intValue(stream.dictionary.get("N"), 0);
+        int first = intValue(stream.dictionary.get("First"), 0);
+
+        // Parse every object of the stream at once; its neighbours are usually wanted soon
+        byte[] decoded = decode(stream);
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(decoded, true);
+        int[] numbers = new int[count];
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = intValue(parser.next(), -1);
+            offsets[i] = intValue(parser.next(), 0);
+        }
+        Object wanted = null;
+        for (int i = 0; i < count; i++) {
+            parser.setPosition(first + offsets[i]);
+            Object object = parser.next();
+            if (object == null || object == PdfSyntax.END) continue;
+            long[] entry = entry(numbers[i]);
+            // Only objects the cross-reference table places in this stream are current
+            if (entry != null && entry[0] == 2 && entry[1] == streamNumber) {
+                objects.putIfAbsent(numbers[i], object);
+            }
+            if (numbers[i] == number) {
+                wanted = object;
+            }
+        }
+        return wanted;
+    }
+
+    // ----- Cross-reference table -----
+
+    /**
+     * One cross-reference section, or a subsection of a table. Tables are read in place from the
+     * mapping and streams keep only their decoded rows, so large documents cost little heap.
+     */
+    private interface XrefSection {
+        /**
+         * Entry {type, second field, third field} with type 0 for a free object,
+         * or null if the section does not mention the object
+         */
+        @Nullable
+        long[] get(int number);
+    }
+
+    private static final long[] FREE = {0, 0, 0};
+
+    /**
+     * Table subsection of fixed-length rows "oooooooooo ggggg n"
+     */
+    private final class TableSection implements XrefSection {
+        private final int start;
+        private final int count;
+        private final int offset;
+        private final int rowLength;
+
+        TableSection(int start, int count, int offset, int rowLength) {
+            this.start = start;
+            this.count = count;
+            this.offset = offset;
+            this.rowLength = rowLength;
+        }
+
+        @Nullable
+        @Override
+        public long[] get(int number) {
+            if (number < start || number - start >= count) return null;
+            int at = offset + (number - start) * rowLength;
+            if (!isTableRow(at)) {
+                // A damaged row; let an older section answer
+                return null;
+            }
+            long position = digits(at, 10);
+            return data.get(at + 17) == 'n' && position > 0
+                    ? new long[]{1, position, digits(at + 11, 5)} : FREE;
+        }
+    }
+
+    /**
+     * Decoded rows of a cross-reference stream
+     */
+    private static final class StreamSection implements XrefSection {
+        private final byte[] rows;
+        private final int[] index;
+        private final int w0;
+        private final int w1;
+        private final int w2;
+
+        StreamSection(byte[] rows, int[] index, int w0, int w1, int w2) {
+            this.rows = rows;
+            this.index = index;
+            this.w0 = w0;
+            this.w1 = w1;
+            this.w2 = w2;
+        }
+
+        @Nullable
+        @Override
+        public long[] get(int number) {
+            int rowLength = w0 + w1 + w2;
+            int row = 0;
+            for (int s = 0; s + 1 < index.length; s += 2) {
+                int start = index[s];
+                int count = index[s + 1];
+                if (number >= start && number - start < count) {
+                    int at = (row + number - start) * rowLength;
+                    if (at + rowLength > rows.length) return null;
+                    // A zero-width type field means type 1
+                    long type = w0 == 0 ? 1 : field(rows, at, w0);
+                    if (type != 1 && type != 2) return FREE;
+                    return new long[]{type, field(rows, at + w0, w1), field(rows, at + w0 + w1, w2)};
+                }
+                row += count;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Entries parsed up front, for irregular tables and files rebuilt by scanning
+     */
+    private static final class MapSection implements XrefSection {
+        private final Map<Integer, long[]> entries;
+
+        MapSection(Map<Integer, long[]> entries) {
+            this.entries = entries;
+        }
+
+        @Nullable
+        @Override
+        public long[] get(int number) {
+            return entries.get(number);
+        }
+    }
+
+    /**
+     * Current entry of an object: the one in the newest section that mentions it, or null if free
+     */
+    @Nullable
+    private long[] entry(int number) {
+        for (XrefSection section : sections) {
+            long[] entry = section.get(number);
+            if (entry != null) return entry[0] == 0 ? null : entry;
+        }
+        return null;
+    }
+
+    private void readCrossReferences() throws IOException {
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(data, 0, true);
+        int startxref = parser.findLast("startxref", 2048);
+        if (startxref < 0) throw new IOException("No startxref");
+        parser.setPosition(startxref + "startxref".length());
+        int offset = intValue(parser.next(), -1);
+
+        Set<Integer> seen = new HashSet<>();
+        Map<String, Object> newest = null;
+        while (offset >= 0 && offset < data.limit() && seen.add(offset)) {
+            Map<String, Object> sectionTrailer = readSection(offset);
+            if (newest == null) newest = sectionTrailer;
+            // Hybrid files keep the compressed objects in a cross-reference stream on the side
+            Object xrefStream = sectionTrailer.get("XRefStm");
+            if (xrefStream instanceof Number && seen.add(((Number) xrefStream).intValue())) {
+                readSection(((Number) xrefStream).intValue());
+            }
+            Object previous = sectionTrailer.get("Prev");
+            offset = previous instanceof Number ? ((Number) previous).intValue() : -1;
+        }
+        if (newest == null) throw new IOException("No cross-reference section");
+        trailer = newest;
+    }
+
+    /**
+     * Add one cross-reference section, table or stream, behind the newer ones already added
+     * @return the section's trailer dictionary
+     */
+    private Map<String, Object> readSection(int offset) throws IOException {
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(data, offset, true);
+        Object first = parser.next();
+        if (first instanceof PdfSyntax.Keyword && ((PdfSyntax.Keyword) first).is("xref")) {
+            return readTable(parser);
+        }
+        Object object = parseObjectAt(offset, -1);
+        if (!(object instanceof PdfSyntax.Stream)) throw new IOException("Bad cross-reference at " + offset);
+        return readXrefStream((PdfSyntax.Stream) object);
+    }
+
+    private Map<String, Object> readTable(PdfSyntax.Parser parser) throws IOException {
+        while (true) {
+            Object token = parser.next();
+            if (token instanceof PdfSyntax.Keyword && ((PdfSyntax.Keyword) token).is("trailer")) {
+                Map<String, Object> dictionary = PdfSyntax.asDict(parser.next());
+                if (dictionary == null) throw new IOException("Bad trailer");
+                return dictionary;
+            }
+            if (!(token instanceof Integer)) throw new IOException("Bad cross-reference table");
+            int start = (Integer) token;
+            int count = intValue(parser.next(), 0);
+            if (count <= 0) continue;
+
+            // Rows are 20 bytes, or 19 from writers that end them with a bare newline
+            parser.skipWhitespace();
+            int offset = parser.getPosition();
+            int rowLength = regularRowLength(offset, count);
+            if (rowLength > 0) {
+                sections.add(new TableSection(start, count, offset, rowLength));
+                parser.setPosition(offset + count * rowLength);
+                continue;
+            }
+
+            // Irregular table: parse it row by row
+            Map<Integer, long[]> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                long position = longValue(parser.next());
+                long generation = longValue(parser.next());
+                Object type = parser.next();
+                if (type instanceof PdfSyntax.Keyword && ((PdfSyntax.Keyword) type).is("n") && position > 0) {
+                    entries.put(start + i, new long[]{1, position, generation});
+                } else {
+                    entries.put(start + i, FREE);
+                }
+            }
+            sections.add(new MapSection(entries));
+        }
+    }
+
+    /**
+     * Length of the rows of a table subsection if the first, middle and last rows line up, else 0
+     */
+    private int regularRowLength(int offset, int count) {
+        for (int rowLength = 20; rowLength >= 19; rowLength--) {
+            long end = offset + (long) count * rowLength;
+            if (end > data.limit()) continue;
+            int last = offset + (count - 1) * rowLength;
+            int middle = offset + (count / 2) * rowLength;
+            if (isTableRow(offset) && isTableRow(middle) && isTableRow(last)) return rowLength;
+        }
+        return 0;
+    }
+
+    private boolean isTableRow(int at) {
+        if (at < 0 || at + 18 > data.limit()) return false;
+        if (digits(at, 10) < 0 || data.get(at + 10) != ' ' || digits(at + 11, 5) < 0
+                || data.get(at + 16) != ' ') {
+            return false;
+        }
+        byte type = data.get(at + 17);
+        return type == 'n' || type == 'f';
+    }
+
+    /**
+     * Value of a run of ASCII digits in the mapping, or -1 if it has anything else
+     */
+    private long digits(int at, int length) {
+        long value = 0;
+        for (int i = at; i < at + length; i++) {
+            int c = data.get(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private Map<String, Object> readXrefStream(PdfSyntax.Stream stream) throws IOException {
+        Map<String, Object> dictionary = stream.dictionary;
+        List<?> widths = (List<?>) dictionary.get("W");
+        if (widths == null || widths.size() < 3) throw new IOException("Bad cross-reference stream");
+        int w0 = intValue(widths.get(0), 0);
+        int w1 = intValue(widths.get(1), 0);
+        int w2 = intValue(widths.get(2), 0);
+        if (w0 < 0 || w1 < 0 || w2 < 0 || w0 + w1 + w2 == 0) throw new IOException("Bad cross-reference stream");
+        int size = intValue(dictionary.get("Size"), 0);
+        List<?> indexList = dictionary.get("Index") instanceof List ? (List<?>) dictionary.get("Index")
+                : java.util.Arrays.asList(0, size);
+        int[] index = new int[indexList.size()];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = intValue(indexList.get(i), 0);
+        }
+        sections.add(new StreamSection(decode(stream), index, w0, w1, w2));
+        return dictionary;
+    }
+
+    private static long field(byte[] rows, int at, int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (rows[at + i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Rebuild the cross-reference table by scanning for "n g obj" headers
+     */
+    private void reconstructCrossReferences() throws IOException {
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(data, 0, true);
+        int limit = data.limit();
+        int position = 0;
+        Map<Integer, long[]> found = new HashMap<>();
+        Map<String, Object> lastTrailer = null;
+        while ((position = parser.find(" obj", position, limit)) >= 0) {
+            // Walk back over "n g"
+            int end = position;
+            int cursor = end - 1;
+            while (cursor >= 0 && Character.isDigit(data.get(cursor))) cursor--;
+            int generationStart = cursor + 1;
+            while (cursor >= 0 && data.get(cursor) == ' ') cursor--;
+            int numberEnd = cursor + 1;
+            while (cursor >= 0 && Character.isDigit(data.get(cursor))) cursor--;
+            int numberStart = cursor + 1;
+            if (numberStart < numberEnd && generationStart < end && numberEnd < generationStart) {
+                try {
+                    int number = Integer.parseInt(parser.ascii(numberStart, numberEnd));
+                    // Later definitions replace earlier ones, as in an incremental update
+                    found.put(number, new long[]{1, numberStart, 0});
+                } catch (NumberFormatException e) {
+                    // Not an object header
+                }
+            }
+            position += 4;
+        }
+        sections.add(new MapSection(found));
+
+        int trailerAt = parser.findLast("trailer", limit);
+        if (trailerAt >= 0) {
+            parser.setPosition(trailerAt + "trailer".length());
+            Map<String, Object> dictionary = PdfSyntax.asDict(parser.next());
+            if (dictionary != null) lastTrailer = dictionary;
+        }
+        if (lastTrailer == null || !lastTrailer.containsKey("Root")) {
+            // Cross-reference streams carry the trailer keys; take the catalog from any of them
+            for (Integer number : new ArrayList<>(found.keySet())) {
+                Object object;
+                try {
+                    object = getObject(number);
+                } catch (IOException | RuntimeException e) {
+                    continue;
+                }
+                Map<String, Object> dictionary = object instanceof PdfSyntax.Stream
+                        ? ((PdfSyntax.Stream) object).dictionary
+                        : PdfSyntax.asDict(object);
+                if (dictionary == null) continue;
+                Object type = dictionary.get("Type");
+                if (type instanceof PdfSyntax.Name && ((PdfSyntax.Name) type).value.equals("Catalog")) {
+                    lastTrailer = new HashMap<>();
+                    lastTrailer.put("Root", new PdfSyntax.Ref(number, 0));
+                    break;
+                }
+            }
+        }
+        if (lastTrailer == null) throw new IOException("No trailer");
+        trailer = lastTrailer;
+    }
+
+    // ----- Streams -----
+
+    /**
+     * Decoded contents of a stream. Supports FlateDecode (with PNG and TIFF predictors),
+     * ASCIIHexDecode and ASCII85Decode; image-only filters are refused.
+     */
+    @NonNull
+    public byte[] decode(@NonNull PdfSyntax.Stream stream) throws IOException {
+        byte[] bytes = stream.rawBytes();
+        Object filters = resolve(stream.dictionary.get("Filter"));
+        Object parameters = resolve(stream.dictionary.get("DecodeParms"));
+        if (filters == null) return bytes;
+
+        List<?> filterList = filters instanceof List ? (List<?>) filters : Collections.singletonList(filters);
+        for (int i = 0; i < filterList.size(); i++) {
+            Object filter = resolve(filterList.get(i));
+            String name = filter instanceof PdfSyntax.Name ? ((PdfSyntax.Name) filter).value : "";
+            Object parameter = parameters instanceof List
+                    ? (i < ((List<?>) parameters).size() ? resolve(((List<?>) parameters).get(i)) : null)
+                    : parameters;
+            switch (name) {
+                case "FlateDecode":
+                case "Fl":
+                    bytes = inflate(bytes);
+                    if (parameter instanceof Map) {
+                        bytes = unpredict(bytes, PdfSyntax.asDict(parameter));
+                    }
+                    break;
+                case "ASCIIHexDecode":
+                case "AHx":
+                    bytes = asciiHex(bytes);
+                    break;
+                case "ASCII85Decode":
+                case "A85":
+                    bytes = ascii85(bytes);
+                    break;
+                default:
+                    throw new IOException("Unsupported filter " + name);
+            }
+        }
+        return bytes;
+    }
+
+    private static byte[] inflate(byte[] input) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length * 4));
+            byte[] buffer = new byte[16 * 1024];
+            while (!inflater.finished()) {
+                int count;
+                try {
+                    count = inflater.inflate(buffer);
+                } catch (DataFormatException e) {
+                    // Keep what inflated before the damage; truncated streams are common
+                    if (out.size() > 0) break;
+                    throw new IOException(e);
+                }
+                if (count == 0) {
+                    if (inflater.needsInput() || inflater.needsDictionary()) break;
+                }
+                out.write(buffer, 0, count);
+                if (out.size() > MAX_DECODED_BYTES) throw new IOException("Stream too large");
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] unpredict(byte[] input, Map<String, Object> parameters) {
+        int predictor = intValue(parameters.get("Predictor"), 1);
+        if (predictor < 2) return input;
+        int colors = intValue(parameters.get("Colors"), 1);
+        int bitsPerComponent = intValue(parameters.get("BitsPerComponent"), 8);
+        int columns = intValue(parameters.get("Columns"), 1);
+        int bytesPerPixel = Math.max(1, colors * bitsPerComponent / 8);
+        int rowLength = (colors * bitsPerComponent * columns + 7) / 8;
+
+        if (predictor == 2) {
+            // TIFF predictor 2, byte-sized components only
+            byte[] out = input.clone();
+            for (int row = 0; row + rowLength <= out.length; row += rowLength) {
+                for (int i = bytesPerPixel; i < rowLength; i++) {
+                    out[row + i] += out[row + i - bytesPerPixel];
+                }
+            }
+            return out;
+        }
+
+        // PNG predictors: every row starts with its own filter type byte
+        int rows = input.length / (rowLength + 1);
+        byte[] out = new byte[rows * rowLength];
+        byte[] previous = new byte[rowLength];
+        for (int row = 0; row < rows; row++) {
+            int in = row * (rowLength + 1);
+            int type = input[in] & 0xff;
+            int at = row * rowLength;
+            for (int i = 0; i < rowLength; i++) {
+                int raw = input[in + 1 + i] & 0xff;
+                int left = i >= bytesPerPixel ? out[at + i - bytesPerPixel] & 0xff : 0;
+                int up = previous[i] & 0xff;
+                int upLeft = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xff : 0;
+                int value;
+                switch (type) {
+                    case 1: value = raw + left; break;
+                    case 2: value = raw + up; break;
+                    case 3: value = raw + ((left + up) >> 1); break;
+                    case 4: {
+                        int estimate = left + up - upLeft;
+                        int distanceLeft = Math.abs(estimate - left);
+                        int distanceUp = Math.abs(estimate - up);
+                        int distanceUpLeft = Math.abs(estimate - upLeft);
+                        int predicted = distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft ? left
+                                : distanceUp <= distanceUpLeft ? up : upLeft;
+                        value = raw + predicted;
+                        break;
+                    }
+                    default: value = raw;
+                }
+                out[at + i] = (byte) value;
+            }
+            System.arraycopy(out, at, previous, 0, rowLength);
+        }
+        return out;
+    }
+
+    private static byte[] ascii85(byte[] input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+        long tuple = 0;
+        int count = 0;
+        for (byte b : input) {
+            int c = b & 0xff;
+            if (c == '~') break;
+            if (PdfSyntax.isWhitespace(c)) continue;
+            if (c == 'z' && count == 0) {
+                out.write(0);
+                out.write(0);
+                out.write(0);
+                out.write(0);
+                continue;
+            }
+            if (c < '!' || c > 'u') continue;
+            tuple = tuple * 85 + (c - '!');
+            if (++count == 5) {
+                for (int shift = 24; shift >= 0; shift -= 8) out.write((int) (tuple >> shift));
+                tuple = 0;
+                count = 0;
+            }
+        }
+        if (count > 1) {
+            for (int i = count; i < 5; i++) tuple = tuple * 85 + 84;
+            for (int i = 0; i < count - 1; i++) out.write((int) (tuple >> (24 - 8 * i)));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] asciiHex(byte[] input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+        int high = -1;
+        for (byte b : input) {
+            if (b == '>') break;
+            int digit = Character.digit(b & 0xff, 16);
+            if (digit < 0) continue;
+            if (high < 0) {
+                high = digit;
+            } else {
+                out.write(high * 16 + digit);
+                high = -1;
+            }
+        }
+        if (high >= 0) out.write(high * 16);
+        return out.toByteArray();
+    }
+
+    // ----- Value helpers -----
+
+    /**
+     * Decode a text string such as a title: UTF-16BE or UTF-8 with a byte order mark,
+     * otherwise PDFDocEncoding
+     */
+    @Nullable
+    static String textString(@Nullable Object value) {
+        if (!(value instanceof byte[])) return null;
+        byte[] bytes = (byte[]) value;
+        if (bytes.length >= 2 && (bytes[0] & 0xff) == 0xfe && (bytes[1] & 0xff) == 0xff) {
+            return new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16BE);
+        }
+        if (bytes.length >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb
+                && (bytes[2] & 0xff) == 0xbf) {
+            return new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        }
+        StringBuilder text = new StringBuilder(bytes.length);
+        for (byte b : bytes) {
+            int c = b & 0xff;
+            text.append(c >= 0x80 && c <= 0xa0 ? PDF_DOC_80.charAt(c - 0x80) : (char) c);
+        }
+        return text.toString();
+    }
+
+    static int intValue(@Nullable Object value, int fallback) {
+        return value instanceof Number ? ((Number) value).intValue() : fallback;
+    }
+
+    private static long longValue(@Nullable Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : -1;
+    }
+
+    @Nullable
+    float[] toRectangle(@Nullable Object value) throws IOException {
+        if (!(value instanceof List) || ((List<?>) value).size() < 4) return null;
+        List<?> list = (List<?>) value;
+        float[] rectangle = new float[4];
+        for (int i = 0; i < 4; i++) {
+            Object item = resolve(list.get(i));
+            if (!(item instanceof Number)) return null;
+            rectangle[i] = ((Number) item).floatValue();
+        }
+        return rectangle;
+    }
+}
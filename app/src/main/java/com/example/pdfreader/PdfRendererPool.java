@@ -0,0 +1,140 @@
+package com.example.pdfreader;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.pdf.PdfRenderer;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Several PdfRenderer instances over duplicated file descriptors of one document.
+ *
+ * A PdfRenderer can have only one page open at a time and is not thread-safe, so each instance
+ * is handed to exactly one {@link RenderScheduler} worker and never touched by another thread.
+ * Note that the framework still serializes the native pdfium calls of all instances behind a
+ * process-wide lock, so the gain is in overlapping page setup, bitmap preparation and caching
+ * with rendering; the pool is kept small for that reason.
+ */
+public class PdfRendererPool implements Closeable {
+
+    private static final int MAX_POOL_SIZE = 4;
+    // Each renderer keeps its own parsed copy of the document, so give one per this many MB of heap
+    private static final int HEAP_MB_PER_RENDERER = 64;
+
+    private final List<PdfRenderer> renderers;
+    private final List<ParcelFileDescriptor> descriptors;
+    private final int pageCount;
+
+    /**
+     * Pool size for this device: bounded by cores, by heap size, and 1 on low-RAM devices
+     */
+    public static int computePoolSize(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null || activityManager.isLowRamDevice()) {
+            return 1;
+        }
+        int byMemory = Math.max(1, activityManager.getMemoryClass() / HEAP_MB_PER_RENDERER);
+        // Leave a core for the UI thread
+        int byCores = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return Math.min(MAX_POOL_SIZE, Math.min(byMemory, byCores));
+    }
+
+    /**
+     * Open size renderers, the first on fileDescriptor and the rest on duplicates of it.
+     * The pool takes ownership of fileDescriptor and closes it with the renderers, even on failure.
+     */
+    public static PdfRendererPool open(@NonNull ParcelFileDescriptor fileDescriptor, int size)
+            throws IOException {
+        List<PdfRenderer> renderers = new ArrayList<>(size);
+        List<ParcelFileDescriptor> descriptors = new ArrayList<>(size);
+        descriptors.add(fileDescriptor);
+        try {
+            renderers.add(new PdfRenderer(fileDescriptor));
+            for (int i = 1; i < size; i++) {
+                // Renderers read with pread, so duplicates sharing a file offset is harmless
+                ParcelFileDescriptor duplicate = fileDescriptor.dup();
+                descriptors.add(duplicate);
+                renderers.add(new PdfRenderer(duplicate));
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAll(renderers, descriptors);
+            throw e;
+        }
+        return new PdfRendererPool(renderers, descriptors);
+    }
+
+    private PdfRendererPool(List<PdfRenderer> renderers, List<ParcelFileDescriptor> descriptors) {
+        this.renderers = Collections.unmodifiableList(renderers);
+        this.descriptors = descriptors;
+        // Read once here, before any worker owns a renderer, so the UI never has to touch one
+        this.pageCount = renderers.get(0).getPageCount();
+    }
+
+    /**
+     * One renderer per worker thread; see {@link RenderScheduler}
+     */
+    @NonNull
+    public List<PdfRenderer> getRenderers() {
+        return renderers;
+    }
+
+    /**
+     * Open one more renderer on a duplicate descriptor, for a render lane outside the pool.
+     * The caller owns it: closing the renderer closes its descriptor.
+     */
+    @NonNull
+    public PdfRenderer openDetachedRenderer() throws IOException {
+        ParcelFileDescriptor duplicate = descriptors.get(0).dup();
+        try {
+            return new PdfRenderer(duplicate);
+        } catch (IOException | RuntimeException e) {
+            duplicate.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return renderers.size();
+    }
+
+    /**
+     * Page count read when the pool was opened, safe to call from any thread
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Close all renderers and descriptors. Only call once no worker is using a renderer any more,
+     * see {@link RenderScheduler#shutdown(Runnable)}.
+     */
+    @Override
+    public void close() {
+        closeAll(renderers, descriptors);
+    }
+
+    private static void closeAll(List<PdfRenderer> renderers, List<ParcelFileDescriptor> descriptors) {
+        for (PdfRenderer renderer : renderers) {
+            try {
+                renderer.close();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        for (ParcelFileDescriptor descriptor : descriptors) {
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.example.pdfreader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PDF object syntax: the object types and a parser over a byte buffer, shared by the file
+ * structure reader ({@link PdfReader}) and the content stream interpreter ({@link PdfTextExtractor}).
+ *
+ * Objects map to Java types: numbers to Integer or Double, strings to byte[], names to
+ * {@link Name}, arrays to List, dictionaries to Map keyed by the name without its slash,
+ * indirect references to {@link Ref}, and the null object to null. Bare keywords such as
+ * content stream operators come back as {@link Keyword}.
+ */
+final class PdfSyntax {
+
+    private PdfSyntax() {
+    }
+
+    static final class Name {
+        final String value;
+
+        Name(@NonNull String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Name && ((Name) o).value.equals(value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "/" + value;
+        }
+    }
+
+    static final class Ref {
+        final int number;
+        final int generation;
+
+        Ref(int number, int generation) {
+            this.number = number;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Ref)) return false;
+            Ref ref = (Ref) o;
+            return ref.number == number && ref.generation == generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return number * 31 + generation;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return number + " " + generation + " R";
+        }
+    }
+
+    /**
+     * A stream object: its dictionary and where its raw, still encoded, data lies in the buffer
+     */
+    static final class Stream {
+        final Map<String, Object> dictionary;
+        final ByteBuffer buffer;
+        final int offset;
+        final int length;
+
+        Stream(Map<String, Object> dictionary, ByteBuffer buffer, int offset, int length) {
+            this.dictionary = dictionary;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        byte[] rawBytes() {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(bytes);
+            return bytes;
+        }
+    }
+
+    static final class Keyword {
+        final String value;
+
+        Keyword(String value) {
+            this.value = value;
+        }
+
+        boolean is(String keyword) {
+            return value.equals(keyword);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    // Returned by the parser at the end of its input
+    static final Keyword END = new Keyword("");
+
+    /**
+     * A parsed object as a dictionary, or null if it is something else
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> asDict(@Nullable Object object) {
+        // The parser keys every dictionary it builds by name
+        return object instanceof Map ? (Map<String, Object>) object : null;
+    }
+
+    /**
+     * A parsed object as an array, or null if it is something else
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    static List<Object> asArray(@Nullable Object object) {
+        return object instanceof List ? (List<Object>) object : null;
+    }
+
+    static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0;
+    }
+
+    static boolean isDelimiter(int c) {
+        return c == '(' || c == ')' || c == '<' || c == '>' || c == '[' || c == ']'
+                || c == '{' || c == '}' || c == '/' || c == '%';
+    }
+
+    /**
+     * Reads objects one after another from a byte buffer, using absolute reads only,
+     * so several parsers can share a buffer across threads.
+     */
+    static final class Parser {
+        private static final int MAX_DEPTH = 64;
+
+        private final ByteBuffer buffer;
+        private final int limit;
+        private int position;
+        // Resolve "n g R" sequences into references; off for content streams
+        private final boolean references;
+
+        Parser(@NonNull ByteBuffer buffer, int position, boolean references) {
+            this.buffer = buffer;
+            this.limit = buffer.limit();
+            this.position = position;
+            this.references = references;
+        }
+
+        Parser(@NonNull byte[] bytes, boolean references) {
+            this(ByteBuffer.wrap(bytes), 0, references);
+        }
+
+        int getPosition() {
+            return position;
+        }
+
+        void setPosition(int position) {
+            this.position = position;
+        }
+
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        boolean atEnd() {
+            skipWhitespace();
+            return position >= limit;
+        }
+
+        private int peek() {
+            return position < limit ? buffer.get(position) & 0xff : -1;
+        }
+
+        void skipWhitespace() {
+            while (position < limit) {
+                int c = buffer.get(position) & 0xff;
+                if (c == '%') {
+                    while (position < limit && buffer.get(position) != '\n' && buffer.get(position) != '\r') {
+                        position++;
+                    }
+                } else if (isWhitespace(c)) {
+                    position++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Next object, a {@link Keyword} for bare words, or {@link #END}
+         */
+        @Nullable
+        Object next() throws IOException {
+            return next(0);
+        }
+
+        private Object next(int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw new IOException("Objects nested too deeply at " + position);
+            }
+            skipWhitespace();
+            if (position >= limit) return END;
+
+            int c = peek();
+            switch (c) {
+                case '/':
+                    return readName();
+                case '(':
+                    return readLiteralString();
+                case '[': {
+                    position++;
+                    List<Object> array = new ArrayList<>();
+                    while (true) {
+                        skipWhitespace();
+                        if (position >= limit) throw new IOException("Unterminated array");
+                        if (peek() == ']') {
+                            position++;
+                            return array;
+                        }
+                        Object item = next(depth + 1);
+                        if (item == END) throw new IOException("Unterminated array");
+                        array.add(item);
+                    }
+                }
+                case '<':
+                    if (position + 1 < limit && buffer.get(position + 1) == '<') {
+                        position += 2;
+                        return readDictionary(depth);
+                    }
+                    return readHexString();
+                case ']':
+                case '>':
+                case ')':
+                case '{':
+                case '}':
+                    // Stray delimiter; step over it so callers make progress
+                    position++;
+                    return new Keyword(String.valueOf((char) c));
+                default:
+                    if (c == '+' || c == '-' || c == '.' || (c >= '0' && c <= '9')) {
+                        return readNumberOrReference();
+                    }
+                    return readKeyword();
+            }
+        }
+
+        private Map<String, Object> readDictionary(int depth) throws IOException {
+            Map<String, Object> dictionary = new HashMap<>();
+            while (true) {
+                skipWhitespace();
+                if (position >= limit) throw new IOException("Unterminated dictionary");
+                if (peek() == '>') {
+                    position += 2;
+                    return dictionary;
+                }
+                Object key = next(depth + 1);
+                if (!(key instanceof Name)) {
+                    if (key == END) throw new IOException("Unterminated dictionary");
+                    // Malformed entry; skip it
+                    continue;
+                }
+                skipWhitespace();
+                if (peek() == '>') {
+                    position += 2;
+                    return dictionary;
+                }
+                Object value = next(depth + 1);
+                if (value != null) {
+                    dictionary.put(((Name) key).value, value);
+                }
+            }
+        }
+
+        private Name readName() {
+            position++;
+            StringBuilder name = new StringBuilder();
+            while (position < limit) {
+                int c = peek();
+                if (isWhitespace(c) || isDelimiter(c)) break;
+                position++;
+                if (c == '#' && position + 1 < limit) {
+                    int high = Character.digit(buffer.get(position), 16);
+                    int low = Character.digit(buffer.get(position + 1), 16);
+                    if (high >= 0 && low >= 0) {
+                        c = high * 16 + low;
+                        position += 2;
+                    }
+                }
+                name.append((char) c);
+            }
+            return new Name(name.toString());
+        }
+
+        private byte[] readLiteralString() {
+            position++;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int nesting = 1;
+            while (position < limit) {
+                int c = buffer.get(position++) & 0xff;
+                if (c == '(') {
+                    nesting++;
+                } else if (c == ')') {
+                    if (--nesting == 0) break;
+                } else if (c == '\\' && position < limit) {
+                    c = buffer.get(position++) & 0xff;
+                    switch (c) {
+                        case 'n': c = '\n'; break;
+                        case 'r': c = '\r'; break;
+                        case 't': c = '\t'; break;
+                        case 'b': c = '\b'; break;
+                        case 'f': c = '\f'; break;
+                        case '\r':
+                            // Line continuation
+                            if (peek() == '\n') position++;
+                            continue;
+                        case '\n':
+                            continue;
+                        default:
+                            if (c >= '0' && c <= '7') {
+                                int value = c - '0';
+                                for (int i = 0; i < 2 && peek() >= '0' && peek() <= '7'; i++) {
+                                    value = value * 8 + (buffer.get(position++) - '0');
+                                }
+                                c = value & 0xff;
+                            }
+                    }
+                }
+                out.write(c);
+            }
+            return out.toByteArray();
+        }
+
+        private byte[] readHexString() {
+            position++;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int high = -1;
+            while (position < limit) {
+                int c = buffer.get(position++) & 0xff;
+                if (c == '>') break;
+                int digit = Character.digit(c, 16);
+                if (digit < 0) continue;
+                if (high < 0) {
+                    high = digit;
+                } else {
+                    out.write(high * 16 + digit);
+                    high = -1;
+                }
+            }
+            if (high >= 0) {
+                out.write(high * 16);
+            }
+            return out.toByteArray();
+        }
+
+        private Object readNumberOrReference() {
+            Object number = readNumber();
+            if (!references || !(number instanceof Integer)) return number;
+
+            // "n g R" is a reference; otherwise rewind to just after the first number
+            int mark = position;
+            skipWhitespace();
+            int c = peek();
+            if (c >= '0' && c <= '9') {
+                Object generation = readNumber();
+                skipWhitespace();
+                if (generation instanceof Integer && peek() == 'R') {
+                    int after = position + 1 < limit ? buffer.get(position + 1) & 0xff : ' ';
+                    if (isWhitespace(after) || isDelimiter(after)) {
+                        position++;
+                        return new Ref((Integer) number, (Integer) generation);
+                    }
+                }
+            }
+            position = mark;
+            return number;
+        }
+
+        private Object readNumber() {
+            int start = position;
+            boolean real = false;
+            while (position < limit) {
+                int c = peek();
+                if (c == '.') {
+                    real = true;
+                } else if (!(c >= '0' && c <= '9') && !((c == '-' || c == '+') && position == start)) {
+                    break;
+                }
+                position++;
+            }
+            String text = ascii(start, position);
+            try {
+                if (!real) {
+                    long value = Long.parseLong(text.startsWith("+") ? text.substring(1) : text);
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                    }
+                    return (double) value;
+                }
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                // "--5", a lone "." and the like show up in broken files; read them as zero
+                return 0;
+            }
+        }
+
+        private Object readKeyword() {
+            int start = position;
+            while (position < limit) {
+                int c = peek();
+                if (isWhitespace(c) || isDelimiter(c)) break;
+                position++;
+            }
+            if (position == start) {
+                position++;
+            }
+            String word = ascii(start, position);
+            switch (word) {
+                case "true":
+                    return Boolean.TRUE;
+                case "false":
+                    return Boolean.FALSE;
+                case "null":
+                    return null;
+                default:
+                    return new Keyword(word);
+            }
+        }
+
+        /**
+         * Skip inline image data after the ID operator, up to and including EI
+         */
+        void skipInlineImage() {
+            // A single whitespace byte separates ID from the data
+            position++;
+            while (position + 2 < limit) {
+                if (buffer.get(position) == 'E' && buffer.get(position + 1) == 'I'
+                        && isWhitespace(buffer.get(position - 1) & 0xff)
+                        && (isWhitespace(buffer.get(position + 2) & 0xff) || isDelimiter(buffer.get(position + 2) & 0xff))) {
+                    position += 2;
+                    return;
+                }
+                position++;
+            }
+            position = limit;
+        }
+
+        /**
+         * Search forward for a keyword; returns its position or -1
+         */
+        int find(@NonNull String keyword, int from, int to) {
+            byte[] pattern = keyword.getBytes(StandardCharsets.US_ASCII);
+            int end = Math.min(to, limit) - pattern.length;
+            outer:
+            for (int i = from; i <= end; i++) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (buffer.get(i + j) != pattern[j]) continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Search backwards from the end of the buffer for a keyword; returns its position or -1
+         */
+        int findLast(@NonNull String keyword, int window) {
+            byte[] pattern = keyword.getBytes(StandardCharsets.US_ASCII);
+            int stop = Math.max(0, limit - window);
+            outer:
+            for (int i = limit - pattern.length; i >= stop; i--) {
+                for (int j = 0; j < pattern.length; j++) {
+                    if (buffer.get(i + j) != pattern[j]) continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        String ascii(int from, int to) {
+            char[] chars = new char[to - from];
+            for (int i = from; i < to; i++) {
+                chars[i - from] = (char) (buffer.get(i) & 0xff);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.pdfreader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts the text of a page by interpreting its content streams with {@link PdfReader}.
+ *
+ * Only what search needs is tracked: the current font for decoding shown strings, and text
+ * positioning operators to tell where words and lines break. Form XObjects are followed;
+ * glyph positions, clipping and rendering modes are ignored, so invisible text is found too.
+ *
+ * Not thread-safe; use one extractor per thread over a shared reader.
+ */
+public class PdfTextExtractor {
+
+    // Form XObjects nested deeper than this are skipped
+    private static final int MAX_FORM_DEPTH = 8;
+    // TJ adjustments beyond this many thousandths of an em are a gap between words
+    private static final int WORD_GAP = 200;
+
+    private final PdfReader reader;
+    // Fonts by their dictionary; the reader hands out the same instance for the same object
+    private final Map<Map<String, Object>, PdfFont> fonts = new IdentityHashMap<>();
+
+    public PdfTextExtractor(@NonNull PdfReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Text of one page, with words separated by spaces and lines by newlines
+     */
+    @NonNull
+    public String extractPage(int pageIndex) throws IOException {
+        PdfReader.Page page = reader.getPages().get(pageIndex);
+        StringBuilder out = new StringBuilder();
+        byte[] content = pageContent(page.dictionary);
+        if (content.length > 0) {
+            interpret(content, page.resources, out, 0);
+        }
+        return out.toString();
+    }
+
+    private byte[] pageContent(Map<String, Object> page) throws IOException {
+        Object contents = reader.resolve(page.get("Contents"));
+        if (contents instanceof PdfSyntax.Stream) {
+            return reader.decode((PdfSyntax.Stream) contents);
+        }
+        if (!(contents instanceof List)) return new byte[0];
+
+        // The parts of a split content stream are one stream; a token may even span the split
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (Object part : (List<?>) contents) {
+            Object stream = reader.resolve(part);
+            if (stream instanceof PdfSyntax.Stream) {
+                try {
+                    byte[] bytes = reader.decode((PdfSyntax.Stream) stream);
+                    joined.write(bytes, 0, bytes.length);
+                    joined.write('\n');
+                } catch (IOException e) {
+                    // Skip an undecodable part, keep the rest of the page
+                }
+            }
+        }
+        return joined.toByteArray();
+    }
+
+    private void interpret(byte[] content, Map<String, Object> resources, StringBuilder out, int depth)
+            throws IOException {
+        PdfSyntax.Parser parser = new PdfSyntax.Parser(content, false);
+        List<Object> operands = new ArrayList<>();
+        PdfFont font = null;
+        // Baseline of the last text matrix set, to tell a new line from a move along the line
+        double lineY = Double.NaN;
+
+        while (true) {
+            Object token;
+            try {
+                token = parser.next();
+            } catch (IOException e) {
+                // Malformed content: keep the text found so far
+                break;
+            }
+            if (token == PdfSyntax.END) break;
+            if (!(token instanceof PdfSyntax.Keyword)) {
+                operands.add(token);
+                continue;
+            }
+
+            String operator = ((PdfSyntax.Keyword) token).value;
+            switch (operator) {
+                case "Tf":
+                    if (operands.size() >= 2 && operands.get(operands.size() - 2) instanceof PdfSyntax.Name) {
+                        font = font(resources, ((PdfSyntax.Name) operands.get(operands.size() - 2)).value);
+                    }
+                    break;
+                case "Tj":
+                    show(font, last(operands), out);
+                    break;
+                case "'":
+                case "\"":
+                    newLine(out);
+                    show(font, last(operands), out);
+                    break;
+                case "TJ": {
+                    Object array = last(operands);
+                    if (array instanceof List) {
+                        for (Object item : (List<?>) array) {
+                            if (item instanceof byte[]) {
+                                show(font, item, out);
+                            } else if (item instanceof Number && ((Number) item).doubleValue() < -WORD_GAP) {
+                                space(out);
+                            }
+                        }
+                    }
+                    break;
+                }
+                case "Td":
+                case "TD":
+                    if (operands.size() >= 2 && operands.get(operands.size() - 1) instanceof Number
+                            && ((Number) operands.get(operands.size() - 1)).doubleValue() != 0) {
+                        newLine(out);
+                    } else {
+                        space(out);
+                    }
+                    break;
+                case "T*":
+                    newLine(out);
+                    break;
+                case "Tm":
+                    if (operands.size() >= 6 && operands.get(operands.size() - 1) instanceof Number) {
+                        double y = ((Number) operands.get(operands.size() - 1)).doubleValue();
+                        if (Double.isNaN(lineY) || Math.abs(y - lineY) > 0.5) {
+                            newLine(out);
+                        } else {
+                            space(out);
+                        }
+                        lineY = y;
+                    }
+                    break;
+                case "BT":
+                    lineY = Double.NaN;
+                    break;
+                case "ET":
+                    space(out);
+                    break;
+                case "Do":
+                    if (depth < MAX_FORM_DEPTH && last(operands) instanceof PdfSyntax.Name) {
+                        Map<String, Object> xObjects = reader.getDictionary(resources, "XObject");
+                        Object xObject = xObjects != null
+                                ? reader.resolve(xObjects.get(((PdfSyntax.Name) last(operands)).value)) : null;
+                        if (xObject instanceof PdfSyntax.Stream && isForm((PdfSyntax.Stream) xObject)) {
+                            PdfSyntax.Stream form = (PdfSyntax.Stream) xObject;
+                            Map<String, Object> formResources = reader.getDictionary(form.dictionary, "Resources");
+                            try {
+                                interpret(reader.decode(form), formResources != null ? formResources : resources,
+                                        out, depth + 1);
+                            } catch (IOException e) {
+                                // Unreadable form, skip it
+                            }
+                        }
+                    }
+                    break;
+                case "ID":
+                    parser.skipInlineImage();
+                    break;
+                default:
+                    break;
+            }
+            operands.clear();
+        }
+    }
+
+    private boolean isForm(PdfSyntax.Stream stream) throws IOException {
+        Object subtype = reader.resolve(stream.dictionary.get("Subtype"));
+        return subtype instanceof PdfSyntax.Name && ((PdfSyntax.Name) subtype).value.equals("Form");
+    }
+
+    @Nullable
+    private PdfFont font(Map<String, Object> resources, String name) throws IOException {
+        Map<String, Object> fontResources = reader.getDictionary(resources, "Font");
+        Map<String, Object> dictionary = reader.getDictionary(fontResources, name);
+        if (dictionary == null) return null;
+        PdfFont font = fonts.get(dictionary);
+        if (font == null) {
+            font = new PdfFont(reader, dictionary);
+            fonts.put(dictionary, font);
+        }
+        return font;
+    }
+
+    private static void show(@Nullable PdfFont font, Object string, StringBuilder out) {
+        if (!(string instanceof byte[])) return;
+        if (font != null) {
+            font.decode((byte[]) string, out);
+        } else {
+            // No usable font: Latin-1 is right more often than not
+            for (byte b : (byte[]) string) {
+                out.append((char) (b & 0xff));
+            }
+        }
+    }
+
+    private static Object last(List<Object> operands) {
+        return operands.isEmpty() ? null : operands.get(operands.size() - 1);
+    }
+
+    private static void space(StringBuilder out) {
+        int length = out.length();
+        if (length > 0 && !Character.isWhitespace(out.charAt(length - 1))) {
+            out.append(' ');
+        }
+    }
+
+    private static void newLine(StringBuilder out) {
+        int length = out.length();
+        if (length > 0 && out.charAt(length - 1) != '\n') {
+            if (out.charAt(length - 1) == ' ') {
+                out.setCharAt(length - 1, '\n');
+            } else {
+                out.append('\n');
+            }
+        }
+    }
+}
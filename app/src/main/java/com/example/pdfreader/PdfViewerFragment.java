@@ -1,24 +1,40 @@
 package com.example.pdfreader;
 
-import android.graphics.pdf.PdfRenderer;
+import android.content.Context;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.ParcelFileDescriptor;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodManager;
+import android.widget.EditText;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.SeekBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Fragment that displays a single PDF document using PdfRenderer.
@@ -29,17 +45,66 @@ public class PdfViewerFragment extends Fragment {
     private static final String ARG_PDF_URI = "pdf_uri";
     private static final String ARG_PDF_NAME = "pdf_name";
     private static final String STATE_SCROLL_POSITION = "scroll_position";
-
-    private RecyclerView recyclerView;
+    private static final String STATE_SCROLL_OFFSET = "scroll_offset";
+    // The navigator hides this long after scrolling or scrubbing stops
+    private static final long NAVIGATOR_HIDE_DELAY_MS = 3000;
+    // Typing pauses this long before the query runs
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+    // The render metrics overlay refreshes this often while shown
+    private static final long METRICS_REFRESH_MS = 500;
+    // Opening progress is only shown for documents that take longer than this
+    private static final long OPEN_PROGRESS_DELAY_MS = 300;
+
+    private ZoomableRecyclerView recyclerView;
+    private ImageView snapshotImageView;
+    private ImageView resumeSnapshotImageView;
+    // Screen of a hibernated tab being woken, shown until its first page is rendered
+    private Bitmap resumeSnapshot;
+    // Document opened ahead of time by the DocumentPrewarmer, until the view takes it over
+    private DocumentPrewarmer.Prewarmed prewarmed;
+    private LinearLayout navigatorLayout;
+    private RecyclerView thumbnailStrip;
+    private LinearLayoutManager stripLayoutManager;
+    private SeekBar pageScrubber;
+    private TextView scrubberPageText;
+    private TextView metricsOverlayText;
+    private LinearLayout openProgressLayout;
+    private TextView openProgressText;
+    private PageStripAdapter stripAdapter;
+    private LinearLayout searchBar;
+    private EditText searchQueryInput;
+    private TextView searchResultText;
+    private DocumentSearch documentSearch;
+    // Pages of the current query's hits, sorted; they stream in while the document is indexed
+    private final List<Integer> searchHits = new ArrayList<>();
+    // Index into searchHits of the hit shown, -1 before the first one
+    private int currentHit = -1;
+    private boolean searchFinished;
+    private DocumentOutline documentOutline;
+    private AlertDialog outlineDialog;
+    // True while the user drags the scrubber; the page list only moves on release
+    private boolean scrubbing;
     private PdfPageAdapter adapter;
-    private PdfRenderer pdfRenderer;
-    private ParcelFileDescriptor fileDescriptor;
-    private LinearLayoutManager layoutManager;
+    private PagePrefetcher prefetcher;
+    private PdfRendererPool rendererPool;
+    // Opens the document in the background; kept until the first page is shown
+    private DocumentOpener documentOpener;
+    private int openStage = -1;
+    // Size the provider reported, -1 if unknown
+    private long documentSize = -1;
+    // Bytes copied of a document the provider streams, -1 if it is not copied
+    private long copiedBytes = -1;
+    private String fingerprint;
+    // Page cache key of the snapshot while it is pinned on screen
+    private PageKey snapshotKey;
+    private PageLayoutManager layoutManager;
     private Handler fadeHandler;
 
     private Uri pdfUri;
     private String pdfName;
     private int savedScrollPosition = 0;
+    // Pixels the saved page was scrolled past the top; exact because page heights are known
+    private int savedScrollOffset = 0;
 
     /**
      * Factory method to create new instance with arguments
@@ -53,6 +118,22 @@ public class PdfViewerFragment extends Fragment {
         return fragment;
     }
 
+    /**
+     * Screen the document showed when its tab was hibernated, to show while it re-opens.
+     * Call before the fragment is added.
+     */
+    public void setResumeSnapshot(@Nullable Bitmap snapshot) {
+        resumeSnapshot = snapshot;
+    }
+
+    /**
+     * The document, already opened with its resume page rendered, so no open is needed.
+     * Call before the fragment is added; the fragment owns it from then on.
+     */
+    public void setPrewarmed(@Nullable DocumentPrewarmer.Prewarmed document) {
+        prewarmed = document;
+    }
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -66,6 +147,15 @@ public class PdfViewerFragment extends Fragment {
         // Restore scroll position if exists
         if (savedInstanceState != null) {
             savedScrollPosition = savedInstanceState.getInt(STATE_SCROLL_POSITION, 0);
+            savedScrollOffset = savedInstanceState.getInt(STATE_SCROLL_OFFSET, 0);
+        } else if (pdfUri != null) {
+            // Reopened document: continue where it was left
+            SessionJournal.DocumentState state = SessionJournal.getInstance(requireContext())
+                    .getDocument(pdfUri.toString());
+            if (state != null) {
+                savedScrollPosition = state.page;
+                savedScrollOffset = state.scrollOffset;
+            }
         }
     }
 
@@ -84,15 +174,54 @@ public class PdfViewerFragment extends Fragment {
 
         // Initialize RecyclerView
         recyclerView = view.findViewById(R.id.pdfRecyclerView);
-        layoutManager = new LinearLayoutManager(getContext());
+        layoutManager = new PageLayoutManager(getContext());
         recyclerView.setLayoutManager(layoutManager);
         recyclerView.setHasFixedSize(false);
+        snapshotImageView = view.findViewById(R.id.snapshotImageView);
+        resumeSnapshotImageView = view.findViewById(R.id.resumeSnapshotImageView);
+        openProgressLayout = view.findViewById(R.id.openProgressLayout);
+        openProgressText = view.findViewById(R.id.openProgressText);
+        if (resumeSnapshot != null) {
+            resumeSnapshotImageView.setImageBitmap(resumeSnapshot);
+            resumeSnapshotImageView.setVisibility(View.VISIBLE);
+        }
+        setupNavigator(view);
+        setupSearch(view);
+        setupMetricsOverlay(view);
 
-        // Add scroll listener to fade FAB while scrolling
+        // Add scroll listener to fade FAB while scrolling and prefetch upcoming pages
         recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                super.onScrolled(recyclerView, dx, dy);
+                if (prefetcher != null) {
+                    prefetcher.onScrolled(dy);
+                }
+                if (adapter != null) {
+                    // Tiles follow the viewport; pages that need none return immediately
+                    adapter.updateVisibleTiles();
+                }
+                if (!scrubbing) {
+                    syncNavigator(layoutManager.findFirstVisibleItemPosition());
+                }
+            }
+
             @Override
             public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
                 super.onScrollStateChanged(recyclerView, newState);
+
+                if (adapter != null) {
+                    // Flinging pages only get their cheap preview pass
+                    adapter.setFlinging(newState == RecyclerView.SCROLL_STATE_SETTLING);
+                }
+                if (newState == RecyclerView.SCROLL_STATE_IDLE && prefetcher != null) {
+                    prefetcher.onScrollIdle();
+                }
+                if (newState == RecyclerView.SCROLL_STATE_DRAGGING) {
+                    showNavigator();
+                } else if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    scheduleHideNavigator();
+                }
                 
                 if (getActivity() instanceof MainActivity) {
                     MainActivity activity = (MainActivity) getActivity();
@@ -106,6 +235,13 @@ public class PdfViewerFragment extends Fragment {
             }
         });
 
+        // Re-render the visible area as tiles once a zoom or pan settles
+        recyclerView.setOnViewportChangedListener(zoom -> {
+            if (adapter != null) {
+                adapter.updateVisibleTiles();
+            }
+        });
+
         // Add tap listener to main view to show FAB at full opacity on single tap
         view.setOnTouchListener((v, event) -> {
             if (event.getAction() == MotionEvent.ACTION_UP) {
@@ -123,7 +259,7 @@ public class PdfViewerFragment extends Fragment {
 
         // Open PDF and setup adapter
         if (pdfUri != null) {
-            openPdfRenderer();
+            openDocument();
         }
     }
 
@@ -133,62 +269,598 @@ public class PdfViewerFragment extends Fragment {
         }
     };
 
+    private final Runnable hideNavigatorRunnable = () -> {
+        if (navigatorLayout != null && !scrubbing) {
+            navigatorLayout.setVisibility(View.GONE);
+        }
+    };
+
     /**
-     * Opens the PDF using PdfRenderer
+     * Fast-scroll navigator: dragging the scrubber only moves the thumbnail strip, and the page
+     * list jumps once on release, so the pages in between are never bound or rendered
      */
-    private void openPdfRenderer() {
-        try {
-            // Open file descriptor from URI
-            fileDescriptor = requireContext().getContentResolver()
-                    .openFileDescriptor(pdfUri, "r");
+    private void setupNavigator(View view) {
+        navigatorLayout = view.findViewById(R.id.navigatorLayout);
+        thumbnailStrip = view.findViewById(R.id.thumbnailStrip);
+        pageScrubber = view.findViewById(R.id.pageScrubber);
+        scrubberPageText = view.findViewById(R.id.scrubberPageText);
 
-            if (fileDescriptor != null) {
-                // Create PdfRenderer
-                pdfRenderer = new PdfRenderer(fileDescriptor);
+        stripLayoutManager = new LinearLayoutManager(getContext(), LinearLayoutManager.HORIZONTAL, false);
+        thumbnailStrip.setLayoutManager(stripLayoutManager);
 
-                // Create and set adapter
-                adapter = new PdfPageAdapter(pdfRenderer);
-                recyclerView.setAdapter(adapter);
+        pageScrubber.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (fromUser) {
+                    syncNavigator(progress);
+                }
+            }
 
-                // Restore scroll position
-                if (savedScrollPosition > 0) {
-                    layoutManager.scrollToPosition(savedScrollPosition);
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+                scrubbing = true;
+                fadeHandler.removeCallbacks(hideNavigatorRunnable);
+                // Nothing near the old position is worth rendering any more
+                if (prefetcher != null) {
+                    prefetcher.cancelAll();
                 }
+            }
 
-                // Notify parent activity of page count
-                if (getActivity() instanceof MainActivity) {
-                    ((MainActivity) getActivity()).onPdfLoaded(pdfUri, pdfRenderer.getPageCount());
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+                scrubbing = false;
+                scrollToPage(seekBar.getProgress());
+                scheduleHideNavigator();
+            }
+        });
+    }
+
+    private final Runnable refreshMetricsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (metricsOverlayText == null || metricsOverlayText.getVisibility() != View.VISIBLE) return;
+            metricsOverlayText.setText(RenderMetrics.getInstance().format(requireContext(),
+                    adapter != null ? adapter.getRenderScheduler() : null));
+            fadeHandler.postDelayed(this, METRICS_REFRESH_MS);
+        }
+    };
+
+    /**
+     * Hidden debug overlay of the render metrics: a long press on the navigator's page number
+     * toggles it, a tap on it saves the metrics to a file for a report
+     */
+    private void setupMetricsOverlay(View view) {
+        metricsOverlayText = view.findViewById(R.id.metricsOverlayText);
+        scrubberPageText.setOnLongClickListener(v -> {
+            boolean show = metricsOverlayText.getVisibility() != View.VISIBLE;
+            metricsOverlayText.setVisibility(show ? View.VISIBLE : View.GONE);
+            fadeHandler.removeCallbacks(refreshMetricsRunnable);
+            if (show) {
+                refreshMetricsRunnable.run();
+            }
+            return true;
+        });
+        metricsOverlayText.setOnClickListener(v -> {
+            try {
+                File file = RenderMetrics.getInstance().dump(requireContext(),
+                        adapter != null ? adapter.getRenderScheduler() : null);
+                Toast.makeText(getContext(), getString(R.string.metrics_dumped, file.getPath()),
+                        Toast.LENGTH_LONG).show();
+            } catch (IOException e) {
+                e.printStackTrace();
+                Toast.makeText(getContext(), R.string.metrics_dump_failed, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private final Runnable searchRunnable = () -> {
+        if (searchQueryInput != null) {
+            runSearch(searchQueryInput.getText().toString());
+        }
+    };
+
+    private void setupSearch(View view) {
+        searchBar = view.findViewById(R.id.searchBar);
+        searchQueryInput = view.findViewById(R.id.searchQueryInput);
+        searchResultText = view.findViewById(R.id.searchResultText);
+
+        searchQueryInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                fadeHandler.removeCallbacks(searchRunnable);
+                fadeHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
+        searchQueryInput.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId != EditorInfo.IME_ACTION_SEARCH) return false;
+            fadeHandler.removeCallbacks(searchRunnable);
+            runSearch(searchQueryInput.getText().toString());
+            setKeyboardVisible(false);
+            return true;
+        });
+        view.findViewById(R.id.searchPreviousButton).setOnClickListener(v -> moveToHit(-1));
+        view.findViewById(R.id.searchNextButton).setOnClickListener(v -> moveToHit(1));
+        view.findViewById(R.id.searchCloseButton).setOnClickListener(v -> hideSearch());
+    }
+
+    /**
+     * Show the search bar and focus the query
+     */
+    public void showSearch() {
+        if (searchBar == null) return;
+        searchBar.setVisibility(View.VISIBLE);
+        searchQueryInput.requestFocus();
+        setKeyboardVisible(true);
+    }
+
+    private void hideSearch() {
+        if (documentSearch != null) {
+            documentSearch.cancel();
+        }
+        setKeyboardVisible(false);
+        searchQueryInput.setText("");
+        fadeHandler.removeCallbacks(searchRunnable);
+        searchBar.setVisibility(View.GONE);
+        clearSearchHits();
+    }
+
+    private void setKeyboardVisible(boolean visible) {
+        InputMethodManager inputMethodManager = (InputMethodManager) requireContext()
+                .getSystemService(Context.INPUT_METHOD_SERVICE);
+        if (inputMethodManager == null) return;
+        if (visible) {
+            inputMethodManager.showSoftInput(searchQueryInput, InputMethodManager.SHOW_IMPLICIT);
+        } else {
+            inputMethodManager.hideSoftInputFromWindow(searchQueryInput.getWindowToken(), 0);
+        }
+    }
+
+    private void runSearch(String query) {
+        clearSearchHits();
+        if (documentSearch == null || query.trim().isEmpty()) {
+            if (documentSearch != null) {
+                documentSearch.cancel();
+            }
+            searchFinished = true;
+            searchResultText.setText("");
+            return;
+        }
+        documentSearch.search(query, new DocumentSearch.Listener() {
+            @Override
+            public void onPageHit(int pageIndex) {
+                int index = Collections.binarySearch(searchHits, pageIndex);
+                if (index >= 0) return;
+                index = -index - 1;
+                searchHits.add(index, pageIndex);
+                if (currentHit < 0) {
+                    // Jump to the first hit as soon as there is one
+                    currentHit = index;
+                    scrollToPage(pageIndex);
+                } else if (index <= currentHit) {
+                    currentHit++;
                 }
+                updateSearchResult(true);
+            }
+
+            @Override
+            public void onSearchFinished(boolean searchable) {
+                searchFinished = true;
+                updateSearchResult(searchable);
+            }
+        });
+        updateSearchResult(true);
+    }
+
+    private void clearSearchHits() {
+        searchHits.clear();
+        currentHit = -1;
+        searchFinished = false;
+    }
+
+    /**
+     * Show "current / total", with an ellipsis while more pages are still being searched
+     */
+    private void updateSearchResult(boolean searchable) {
+        if (!searchable && searchHits.isEmpty()) {
+            searchResultText.setText(R.string.search_not_searchable);
+        } else if (searchHits.isEmpty()) {
+            searchResultText.setText(searchFinished ? getString(R.string.search_no_matches) : "…");
+        } else {
+            searchResultText.setText(String.format("%d / %d%s", currentHit + 1, searchHits.size(),
+                    searchFinished ? "" : "…"));
+        }
+    }
+
+    private void moveToHit(int delta) {
+        if (searchHits.isEmpty()) return;
+        // Wrap around at either end
+        currentHit = (currentHit + delta + searchHits.size()) % searchHits.size();
+        scrollToPage(searchHits.get(currentHit));
+        updateSearchResult(true);
+    }
+
+    private void showNavigator() {
+        if (stripAdapter == null) return;
+        fadeHandler.removeCallbacks(hideNavigatorRunnable);
+        navigatorLayout.setVisibility(View.VISIBLE);
+    }
+
+    private void scheduleHideNavigator() {
+        fadeHandler.removeCallbacks(hideNavigatorRunnable);
+        fadeHandler.postDelayed(hideNavigatorRunnable, NAVIGATOR_HIDE_DELAY_MS);
+    }
+
+    /**
+     * Point the scrubber, page label and thumbnail strip at a page
+     */
+    private void syncNavigator(int pageIndex) {
+        if (stripAdapter == null || pageIndex < 0) return;
+
+        if (pageScrubber.getProgress() != pageIndex) {
+            pageScrubber.setProgress(pageIndex);
+        }
+        scrubberPageText.setText(String.format("%d / %d", pageIndex + 1, stripAdapter.getItemCount()));
+        stripAdapter.setSelectedPage(pageIndex);
+
+        // Center the page's thumbnail in the strip
+        View item = stripLayoutManager.getChildCount() > 0 ? stripLayoutManager.getChildAt(0) : null;
+        int itemWidth = item != null ? item.getWidth() : 0;
+        stripLayoutManager.scrollToPositionWithOffset(pageIndex, (thumbnailStrip.getWidth() - itemWidth) / 2);
+    }
+
+    /**
+     * Opens the PDF in the background: shows the last page read from the disk cache as soon as
+     * the document is identified, then the pages once the renderers are built
+     */
+    private void openDocument() {
+        if (prewarmed != null) {
+            DocumentOpener.Result result = prewarmed.result;
+            if (prewarmed.displayName != null) {
+                onNameResolved(prewarmed.displayName);
             }
+            prewarmed = null;
+            onIdentified(result.fingerprint);
+            createRenderers(result);
+            return;
+        }
+
+        documentOpener = new DocumentOpener(requireContext(), pdfUri, new DocumentOpener.Listener() {
+            @Override
+            public void onStageStarted(int stage) {
+                openStage = stage;
+                updateOpenProgress();
+            }
+
+            @Override
+            public void onResolved(@Nullable String displayName, long size) {
+                documentSize = size;
+                if (displayName != null) {
+                    onNameResolved(displayName);
+                }
+            }
+
+            @Override
+            public void onCopyProgress(long copied, long total) {
+                copiedBytes = copied;
+                if (total > 0) {
+                    documentSize = total;
+                }
+                updateOpenProgress();
+            }
+
+            @Override
+            public void onFingerprint(@Nullable String documentFingerprint) {
+                onIdentified(documentFingerprint);
+            }
+
+            @Override
+            public void onOpened(@NonNull DocumentOpener.Result result) {
+                createRenderers(result);
+            }
+
+            @Override
+            public void onFailed(@NonNull Exception e) {
+                documentOpener = null;
+                hideOpenProgress();
+                hideSnapshot();
+                Toast.makeText(getContext(), "Failed to open PDF: " + e.getMessage(),
+                        Toast.LENGTH_LONG).show();
+            }
+        });
+        if (resumeSnapshot == null) {
+            documentOpener.setSnapshotPage(savedScrollPosition, getResources().getDisplayMetrics().density);
+        }
+        documentOpener.start();
+        fadeHandler.postDelayed(showOpenProgressRunnable, OPEN_PROGRESS_DELAY_MS);
+    }
+
+    /**
+     * The provider has reported the document's current name
+     */
+    private void onNameResolved(@NonNull String displayName) {
+        if (displayName.equals(pdfName)) return;
+        pdfName = displayName;
+        if (getActivity() instanceof MainActivity) {
+            ((MainActivity) getActivity()).onDocumentRenamed(pdfUri, displayName);
+        }
+    }
+
+    /**
+     * The content has been fingerprinted; show its disk-cached page while the renderers are built
+     */
+    private void onIdentified(@Nullable String documentFingerprint) {
+        fingerprint = documentFingerprint;
+        if (fingerprint != null) {
+            SessionJournal.getInstance(requireContext()).recordFingerprint(pdfUri.toString(), fingerprint);
+            if (getActivity() instanceof MainActivity) {
+                // May close this tab if the document is already open under another URI
+                ((MainActivity) getActivity()).onDocumentIdentified(pdfUri, fingerprint);
+            }
+        }
+        showSnapshot();
+    }
+
+    private final Runnable showOpenProgressRunnable = () -> {
+        if (openProgressLayout == null || documentOpener == null) return;
+        openProgressLayout.setVisibility(View.VISIBLE);
+        updateOpenProgress();
+    };
+
+    /**
+     * Say which stage the open is in, with the download size and the bytes copied so far
+     * while the file is fetched
+     */
+    private void updateOpenProgress() {
+        if (openProgressText == null || openProgressLayout.getVisibility() != View.VISIBLE) return;
+        switch (openStage) {
+            case DocumentOpener.STAGE_RESOLVE:
+                openProgressText.setText(R.string.open_stage_resolve);
+                break;
+            case DocumentOpener.STAGE_ACQUIRE:
+                if (copiedBytes >= 0 && documentSize > 0) {
+                    openProgressText.setText(getString(R.string.open_stage_copy_progress,
+                            Formatter.formatShortFileSize(requireContext(), copiedBytes),
+                            Formatter.formatShortFileSize(requireContext(), documentSize)));
+                    break;
+                }
+                long shownSize = copiedBytes >= 0 ? copiedBytes : documentSize;
+                openProgressText.setText(shownSize > 0
+                        ? getString(R.string.open_stage_acquire_size,
+                                Formatter.formatShortFileSize(requireContext(), shownSize))
+                        : getString(R.string.open_stage_acquire));
+                break;
+            case DocumentOpener.STAGE_PARSE:
+                openProgressText.setText(R.string.open_stage_parse);
+                break;
+            case DocumentOpener.STAGE_FIRST_PAGE:
+                openProgressText.setText(R.string.open_stage_first_page);
+                break;
+            default:
+                openProgressText.setText(R.string.loading_pdf);
+                break;
+        }
+    }
+
+    private void hideOpenProgress() {
+        if (fadeHandler != null) {
+            fadeHandler.removeCallbacks(showOpenProgressRunnable);
+        }
+        if (openProgressLayout != null) {
+            openProgressLayout.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Show the cached render of the page to be restored, if there is one. The opener has
+     * already copied it from the disk cache into the page cache, where the adapter will find it
+     * for the real page, so nothing is read from storage here.
+     */
+    private void showSnapshot() {
+        // The hibernated tab's own screen is closer to what comes than a whole page
+        if (fingerprint == null || resumeSnapshot != null) return;
+
+        float scale = getResources().getDisplayMetrics().density;
+        PageKey key = new PageKey(fingerprint, savedScrollPosition, scale);
+        Bitmap bitmap = PageBitmapCache.getInstance(requireContext()).pin(key);
+        if (bitmap == null) return;
+
+        snapshotKey = key;
+        snapshotImageView.setImageBitmap(bitmap);
+        snapshotImageView.setVisibility(View.VISIBLE);
+    }
+
+    private void hideSnapshot() {
+        if (resumeSnapshot != null) {
+            if (resumeSnapshotImageView != null) {
+                resumeSnapshotImageView.setImageDrawable(null);
+                resumeSnapshotImageView.setVisibility(View.GONE);
+            }
+            resumeSnapshot = null;
+        }
+        if (snapshotKey == null) return;
+        if (snapshotImageView != null) {
+            snapshotImageView.setImageDrawable(null);
+            snapshotImageView.setVisibility(View.GONE);
+        }
+        PageBitmapCache.getInstance(requireContext()).release(snapshotKey);
+        snapshotKey = null;
+    }
+
+    /**
+     * Creates the adapter for the renderers built by the document opener
+     */
+    private void createRenderers(DocumentOpener.Result result) {
+        rendererPool = result.rendererPool;
+
+        // Page sizes from an earlier open, so cards and the scrollbar are exact from the start
+        layoutManager.setGeometryIndex(result.geometryIndex);
+
+        // Create and set adapter
+        adapter = new PdfPageAdapter(rendererPool, documentKey(),
+                PageBitmapCache.getInstance(requireContext()),
+                PageBitmapCache.getTileInstance(requireContext()),
+                DiskPageCache.getInstance(requireContext()), fingerprint, result.geometryIndex);
+        // The real page takes over from the snapshot once it has pixels
+        adapter.setOnFirstPageShownListener(() -> {
+            hideSnapshot();
+            hideOpenProgress();
+            if (documentOpener != null) {
+                documentOpener.onFirstPageShown();
+                documentOpener = null;
+            }
+            StartupTimings.mark(StartupTimings.FIRST_PAGE_SHOWN);
+        });
+        recyclerView.setAdapter(adapter);
+        prefetcher = new PagePrefetcher(adapter, layoutManager);
+        createNavigator();
+        createSearch(result.fileDescriptor);
+        createOutline(result.fileDescriptor);
+
+        // Restore scroll position
+        if (savedScrollPosition > 0 || savedScrollOffset > 0) {
+            layoutManager.scrollToPositionWithOffset(savedScrollPosition, -savedScrollOffset);
+        }
+
+        // Notify parent activity of page count
+        if (getActivity() instanceof MainActivity) {
+            ((MainActivity) getActivity()).onPdfLoaded(pdfUri, rendererPool.getPageCount());
+        }
+    }
+
+    /**
+     * Key of the document's rendered pages in the memory caches: its content, so two URIs to one
+     * file share pages and a file changed on disk never shows pages of its old content
+     */
+    private String documentKey() {
+        return fingerprint != null ? fingerprint : pdfUri.toString();
+    }
+
+    /**
+     * Give the navigator its own renderer; without one the document just has no navigator
+     */
+    private void createNavigator() {
+        try {
+            stripAdapter = new PageStripAdapter(rendererPool.openDetachedRenderer(), documentKey(),
+                    rendererPool.getPageCount(), BitmapPool.getInstance(requireContext()),
+                    this::scrollToPage);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return;
+        }
+        thumbnailStrip.setAdapter(stripAdapter);
+        pageScrubber.setMax(Math.max(0, rendererPool.getPageCount() - 1));
+        syncNavigator(savedScrollPosition);
+    }
+
+    /**
+     * Start indexing the document for search; without one the document just is not searchable
+     */
+    private void createSearch(ParcelFileDescriptor fileDescriptor) {
+        try {
+            documentSearch = new DocumentSearch(requireContext(), fileDescriptor, fingerprint,
+                    rendererPool.getPageCount());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void createOutline(ParcelFileDescriptor fileDescriptor) {
+        try {
+            documentOutline = new DocumentOutline(requireContext(), fileDescriptor, fingerprint);
         } catch (IOException e) {
             e.printStackTrace();
-            Toast.makeText(getContext(), "Failed to open PDF: " + e.getMessage(),
-                    Toast.LENGTH_LONG).show();
         }
     }
 
     /**
-     * Closes the PdfRenderer and releases resources
+     * Show the table of contents; picking an entry scrolls to its page
+     */
+    public void showOutline() {
+        if (documentOutline == null) return;
+        DocumentOutline outline = documentOutline;
+        outline.load(() -> {
+            if (getContext() == null || outline != documentOutline) return;
+            List<DocumentOutline.Entry> roots = outline.getRoots();
+            if (roots == null || roots.isEmpty()) {
+                Toast.makeText(getContext(), R.string.no_outline, Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            RecyclerView list = new RecyclerView(requireContext());
+            list.setLayoutManager(new LinearLayoutManager(requireContext()));
+            int indent = Math.round(16 * getResources().getDisplayMetrics().density);
+            list.setAdapter(new OutlineAdapter(outline, roots, indent, entry -> {
+                if (outlineDialog != null) {
+                    outlineDialog.dismiss();
+                    outlineDialog = null;
+                }
+                outline.save();
+                scrollToPage(entry.pageIndex);
+            }));
+            outlineDialog = new AlertDialog.Builder(requireContext())
+                    .setTitle(getString(R.string.contents))
+                    .setView(list)
+                    .setNegativeButton(getString(R.string.close), (dialog, which) -> outline.save())
+                    .create();
+            outlineDialog.show();
+        });
+    }
+
+    /**
+     * Closes the PdfRenderers and releases resources
      */
     private void closePdfRenderer() {
-        if (adapter != null) {
-            adapter.release();
-            adapter = null;
+        if (documentOpener != null) {
+            // Closed mid-open: stop a download in progress and close what was opened
+            documentOpener.cancel();
+            documentOpener = null;
         }
+        if (prewarmed != null) {
+            // Closed before its view was created
+            prewarmed.close();
+            prewarmed = null;
+        }
+        hideOpenProgress();
+        hideSnapshot();
 
-        if (pdfRenderer != null) {
-            pdfRenderer.close();
-            pdfRenderer = null;
+        if (documentSearch != null) {
+            documentSearch.close();
+            documentSearch = null;
+        }
+        if (outlineDialog != null) {
+            outlineDialog.dismiss();
+            outlineDialog = null;
+        }
+        if (documentOutline != null) {
+            // Saves the entries loaded so far
+            documentOutline.close();
+            documentOutline = null;
+        }
+        if (stripAdapter != null) {
+            stripAdapter.release();
+            stripAdapter = null;
+        }
+        if (prefetcher != null) {
+            prefetcher.cancelAll();
+            prefetcher = null;
         }
 
-        if (fileDescriptor != null) {
-            try {
-                fileDescriptor.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            fileDescriptor = null;
+        if (adapter != null) {
+            // Closes the renderer pool once its render threads are idle
+            adapter.release();
+            adapter = null;
+        } else if (rendererPool != null) {
+            rendererPool.close();
         }
+        rendererPool = null;
     }
 
     @Override
@@ -197,21 +869,47 @@ public class PdfViewerFragment extends Fragment {
         
         // Save current scroll position
         if (layoutManager != null) {
-            int position = layoutManager.findFirstVisibleItemPosition();
-            outState.putInt(STATE_SCROLL_POSITION, position);
+            saveScrollPosition();
+            outState.putInt(STATE_SCROLL_POSITION, savedScrollPosition);
+            outState.putInt(STATE_SCROLL_OFFSET, savedScrollOffset);
+        }
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+
+        // Keep the exact position in the session, in case the app is not seen again
+        if (layoutManager != null && pdfUri != null) {
+            saveScrollPosition();
+            SessionJournal.getInstance(requireContext())
+                    .recordPosition(pdfUri.toString(), savedScrollPosition, savedScrollOffset);
         }
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        fadeHandler.removeCallbacks(refreshMetricsRunnable);
         
         // Save scroll position before view is destroyed
         if (layoutManager != null) {
-            savedScrollPosition = layoutManager.findFirstVisibleItemPosition();
+            saveScrollPosition();
         }
     }
 
+    /**
+     * Remember the first visible page and how far it is scrolled past the top
+     */
+    private void saveScrollPosition() {
+        int position = layoutManager.findFirstVisibleItemPosition();
+        if (position == RecyclerView.NO_POSITION) return;
+        savedScrollPosition = position;
+        View first = layoutManager.findViewByPosition(position);
+        savedScrollOffset = first != null
+                ? Math.max(0, layoutManager.getPaddingTop() - layoutManager.getDecoratedTop(first)) : 0;
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -238,6 +936,10 @@ public class PdfViewerFragment extends Fragment {
      */
     public void scrollToPage(int pageIndex) {
         if (layoutManager != null && pageIndex >= 0) {
+            // A jump: drop prefetches around the old position, only the target page gets rendered
+            if (prefetcher != null) {
+                prefetcher.cancelAll();
+            }
             layoutManager.scrollToPositionWithOffset(pageIndex, 0);
         }
     }
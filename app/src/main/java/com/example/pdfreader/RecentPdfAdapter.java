@@ -1,59 +1,149 @@
 package com.example.pdfreader;
 
+import android.graphics.Bitmap;
+import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.List;
-
-public class RecentPdfAdapter extends RecyclerView.Adapter<RecentPdfAdapter.ViewHolder> {
-    private List<PdfDocument> pdfDocuments;
+/**
+ * Grid of documents on the Home screen; follows the {@link DocumentRegistry} while attached
+ */
+public class RecentPdfAdapter extends RecyclerView.Adapter<RecentPdfAdapter.ViewHolder>
+        implements DocumentRegistry.Listener {
+    private DocumentRegistry registry;
     private OnPdfClickListener listener;
+    private ThumbnailPipeline thumbnailPipeline;
 
     public interface OnPdfClickListener {
-        void onPdfClicked(int position);
+        void onPdfClicked(PdfDocument document);
     }
 
-    public RecentPdfAdapter(List<PdfDocument> pdfDocuments, OnPdfClickListener listener) {
-        this.pdfDocuments = pdfDocuments;
+    public RecentPdfAdapter(DocumentRegistry registry, OnPdfClickListener listener) {
+        this.registry = registry;
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
     @Override
     public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        if (thumbnailPipeline == null) {
+            thumbnailPipeline = ThumbnailPipeline.getInstance(parent.getContext());
+        }
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_recent_pdf, parent, false);
         return new ViewHolder(view);
     }
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        PdfDocument doc = pdfDocuments.get(position);
+        PdfDocument doc = registry.get(position);
         holder.pdfNameText.setText(doc.getDisplayName());
+
+        // Thumbnails are only requested for cells being bound, i.e. the ones on screen
+        holder.bindThumbnail(doc.getUri(), doc.getFingerprint());
         
-        // Click to open PDF
+        // Click to open PDF; the cell's position may have moved since it was bound
         holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onPdfClicked(position);
+            int current = holder.getBindingAdapterPosition();
+            if (listener != null && current != RecyclerView.NO_POSITION) {
+                listener.onPdfClicked(registry.get(current));
             }
         });
     }
 
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.unbindThumbnail();
+    }
+
     @Override
     public int getItemCount() {
-        return pdfDocuments.size();
+        return registry.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return registry.getStableId(registry.get(position));
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        registry.addListener(this);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        registry.removeListener(this);
+    }
+
+    @Override
+    public void onDocumentInserted(int position) {
+        notifyItemInserted(position);
     }
 
-    static class ViewHolder extends RecyclerView.ViewHolder {
+    @Override
+    public void onDocumentRemoved(int position) {
+        notifyItemRemoved(position);
+    }
+
+    @Override
+    public void onDocumentChanged(int position) {
+        notifyItemChanged(position);
+    }
+
+    @Override
+    public void onCurrentChanged(int previous, int current) {
+        // The grid does not mark the document on screen
+    }
+
+    class ViewHolder extends RecyclerView.ViewHolder implements ThumbnailPipeline.Listener {
         TextView pdfNameText;
+        ImageView thumbnailImage;
+        private final ThumbnailPipeline.RequestHandle thumbnailRequest = new ThumbnailPipeline.RequestHandle();
+        private Uri boundUri;
+        // Set while a pinned thumbnail is on screen
+        private boolean showingThumbnail;
 
         ViewHolder(View itemView) {
             super(itemView);
             pdfNameText = itemView.findViewById(R.id.recentPdfName);
+            thumbnailImage = itemView.findViewById(R.id.recentPdfThumbnail);
+        }
+
+        void bindThumbnail(Uri uri, String fingerprint) {
+            unbindThumbnail();
+            boundUri = uri;
+            Bitmap cached = thumbnailPipeline.request(uri, fingerprint, this, thumbnailRequest);
+            if (cached != null) {
+                onThumbnailReady(uri, cached);
+            }
+        }
+
+        void unbindThumbnail() {
+            thumbnailRequest.cancel();
+            if (showingThumbnail) {
+                thumbnailImage.setImageResource(R.drawable.ic_pdf_placeholder);
+                thumbnailPipeline.release(thumbnailRequest);
+                showingThumbnail = false;
+            }
+            boundUri = null;
+        }
+
+        @Override
+        public void onThumbnailReady(@NonNull Uri uri, @NonNull Bitmap bitmap) {
+            if (!uri.equals(boundUri)) {
+                thumbnailPipeline.release(thumbnailRequest);
+                return;
+            }
+            thumbnailImage.setImageBitmap(bitmap);
+            showingThumbnail = true;
         }
     }
 }
@@ -0,0 +1,154 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide timings of the page render pipeline, for finding out why a page was slow.
+ *
+ * Every stage of a page's life is a {@link LatencyHistogram}: waiting in the render queue,
+ * reading the disk cache, opening and rendering the page, and the post back to the main thread,
+ * then from bind to first pixels and to the full-quality page. Together with the cache hit rates,
+ * bitmap memory in use and the render queue, they can be shown as an overlay on the viewer or
+ * written to a file to attach to a report. Opening a document has its stages timed the same way.
+ */
+public class RenderMetrics {
+
+    private static final String DIRECTORY = "metrics";
+
+    private static RenderMetrics instance;
+
+    // Render thread stages
+    public final LatencyHistogram queueWait = new LatencyHistogram("queue wait");
+    public final LatencyHistogram diskRead = new LatencyHistogram("disk read");
+    public final LatencyHistogram openPage = new LatencyHistogram("openPage");
+    public final LatencyHistogram render = new LatencyHistogram("render");
+    public final LatencyHistogram renderTile = new LatencyHistogram("render tile");
+    // From the job finishing on its render thread to its callback running on the main thread
+    public final LatencyHistogram mainPost = new LatencyHistogram("main post");
+    // From bind, on the main thread: until the page first shows pixels, preview or full
+    public final LatencyHistogram firstPixel = new LatencyHistogram("first pixel");
+    public final LatencyHistogram fullQuality = new LatencyHistogram("full quality");
+    // Document open stages, see DocumentOpener
+    public final LatencyHistogram openResolve = new LatencyHistogram("open resolve");
+    public final LatencyHistogram openAcquire = new LatencyHistogram("open acquire");
+    public final LatencyHistogram openParse = new LatencyHistogram("open parse");
+    public final LatencyHistogram openFirstPage = new LatencyHistogram("open 1st page");
+    public final LatencyHistogram openTotal = new LatencyHistogram("open total");
+
+    // Bound pages that reached full quality, and those recycled or rebound before it
+    private final AtomicLong pagesShown = new AtomicLong();
+    private final AtomicLong pagesDropped = new AtomicLong();
+
+    public static synchronized RenderMetrics getInstance() {
+        if (instance == null) {
+            instance = new RenderMetrics();
+        }
+        return instance;
+    }
+
+    private RenderMetrics() {
+    }
+
+    public void countPageShown() {
+        pagesShown.incrementAndGet();
+    }
+
+    public void countPageDropped() {
+        pagesDropped.incrementAndGet();
+    }
+
+    private LatencyHistogram[] histograms() {
+        return new LatencyHistogram[] {
+                queueWait, diskRead, openPage, render, renderTile, mainPost, firstPixel, fullQuality,
+                openResolve, openAcquire, openParse, openFirstPage, openTotal
+        };
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms()) {
+            histogram.reset();
+        }
+        pagesShown.set(0);
+        pagesDropped.set(0);
+    }
+
+    /**
+     * Everything as text, one line per figure
+     * @param scheduler Render queue of the document on screen, if any
+     */
+    @NonNull
+    public String format(@NonNull Context context, @Nullable RenderScheduler<?> scheduler) {
+        StringBuilder text = new StringBuilder();
+        for (LatencyHistogram histogram : histograms()) {
+            text.append(histogram).append('\n');
+        }
+        text.append(String.format(Locale.ROOT, "pages          shown=%d dropped=%d\n",
+                pagesShown.get(), pagesDropped.get()));
+        if (scheduler != null) {
+            text.append(String.format(Locale.ROOT, "queue          depth=%d merged=%d dropped=%d stale=%d\n",
+                    scheduler.getQueueDepth(), scheduler.getMergedCount(),
+                    scheduler.getDroppedCount(), scheduler.getStaleCount()));
+        }
+        appendCache(text, "page cache", PageBitmapCache.getInstance(context));
+        appendCache(text, "tile cache", PageBitmapCache.getTileInstance(context));
+        appendCache(text, "thumbnails", PageBitmapCache.getThumbnailInstance(context));
+        BitmapPool pool = BitmapPool.getInstance(context);
+        text.append(String.format(Locale.ROOT, "bitmap pool    %s/%s reuse=%d alloc=%d\n",
+                megabytes(pool.getSizeBytes()), megabytes(pool.getMaxBytes()),
+                pool.getReuseCount(), pool.getAllocationCount()));
+        return text.toString();
+    }
+
+    private static void appendCache(StringBuilder text, String name, PageBitmapCache cache) {
+        long hits = cache.getHitCount();
+        long lookups = hits + cache.getMissCount();
+        text.append(String.format(Locale.ROOT, "%-14s %s/%s hit=%.0f%% (%d/%d)\n", name,
+                megabytes(cache.getSizeBytes()), megabytes(cache.getMaxBytes()),
+                lookups != 0 ? 100.0 * hits / lookups : 0.0, hits, lookups));
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1fMB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Write everything, with the device and startup timings, to a new file in the app's external
+     * files directory, where it can be pulled without root
+     * @return The file written
+     */
+    @NonNull
+    public File dump(@NonNull Context context, @Nullable RenderScheduler<?> scheduler) throws IOException {
+        File base = context.getExternalFilesDir(null);
+        if (base == null) base = context.getFilesDir();
+        File directory = new File(base, DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date());
+        File file = new File(directory, "render-metrics-" + stamp + ".txt");
+
+        try (Writer out = new FileWriter(file)) {
+            out.write(String.format(Locale.ROOT, "%s %s, API %d\n", Build.MANUFACTURER, Build.MODEL,
+                    Build.VERSION.SDK_INT));
+            out.write(format(context, scheduler));
+            for (Map.Entry<String, Long> mark : StartupTimings.getMarks().entrySet()) {
+                out.write(String.format(Locale.ROOT, "startup        %s=%dms\n", mark.getKey(), mark.getValue()));
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.pdfreader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Priority-ordered, cancellable queue of page render jobs.
+ *
+ * Lower priority values run first, and within one priority the most recent request runs first,
+ * so the page the user stopped on after a fling does not wait behind pages flung past.
+ * Requests for a page that is already queued merge into the pending job, and a job whose
+ * requests are all cancelled is dropped before it starts. Callbacks are delivered on the
+ * callback executor (the main thread in the app) and never after their request was cancelled.
+ *
+ * Each worker thread owns one resource (a {@link android.graphics.pdf.PdfRenderer} in the app)
+ * and is the only thread that ever touches it, so resources need no locking of their own.
+ *
+ * @param <R> per-worker resource handed to every task run on that worker
+ */
+public class RenderScheduler<R> {
+
+    // Cheap low-resolution first passes of visible pages, so every visible page shows something fast
+    public static final int PRIORITY_PREVIEW = 0;
+    public static final int PRIORITY_VISIBLE = 1;
+    public static final int PRIORITY_PREFETCH = 2;
+    // Bookkeeping such as learning page sizes, only when nothing on or near screen is waiting
+    public static final int PRIORITY_BACKGROUND = 3;
+
+    /**
+     * Work run on a render thread with that thread's resource; the result is expected to land in a cache
+     */
+    public interface RenderTask<R> {
+        void render(@NonNull R resource) throws Exception;
+    }
+
+    /**
+     * Completion callbacks, invoked on the callback executor
+     */
+    public interface Callback {
+        void onRenderFinished();
+
+        void onRenderFailed(@NonNull Exception e);
+    }
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Job<R>> queue = new PriorityQueue<>();
+    private final Map<PageKey, Job<R>> pendingJobs = new HashMap<>();
+    private final Map<PageKey, Job<R>> runningJobs = new HashMap<>();
+    private final Executor callbackExecutor;
+    private final Thread[] workers;
+    private long nextSequence;
+    private boolean shutdown;
+    private int liveWorkers;
+    private Runnable terminationHook;
+
+    private long submittedCount;
+    private long mergedCount;
+    private long droppedCount;
+    private long staleCount;
+    private long completedCount;
+    // Optional stage timings, see setTimings()
+    private volatile LatencyHistogram queueWaitTimes;
+    private volatile LatencyHistogram callbackDelayTimes;
+
+    /**
+     * Start one worker thread per resource
+     */
+    public RenderScheduler(@NonNull String name, @NonNull List<R> workerResources,
+                           @NonNull Executor callbackExecutor) {
+        this(name, workerResources, callbackExecutor, Thread.NORM_PRIORITY - 1);
+    }
+
+    /**
+     * Start one worker thread per resource, at the given {@link Thread} priority
+     */
+    public RenderScheduler(@NonNull String name, @NonNull List<R> workerResources,
+                           @NonNull Executor callbackExecutor, int threadPriority) {
+        this.callbackExecutor = callbackExecutor;
+        this.workers = new Thread[workerResources.size()];
+        this.liveWorkers = workers.length;
+        for (int i = 0; i < workers.length; i++) {
+            final R resource = workerResources.get(i);
+            workers[i] = new Thread(() -> workerLoop(resource), name + "-" + i);
+            workers[i].setPriority(threadPriority);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Record how long jobs wait in the queue before a worker starts them, and how long their
+     * callbacks take to run once the job is done
+     */
+    public void setTimings(@Nullable LatencyHistogram queueWait, @Nullable LatencyHistogram callbackDelay) {
+        this.queueWaitTimes = queueWait;
+        this.callbackDelayTimes = callbackDelay;
+    }
+
+    /**
+     * Queue a render job for a page, or join the job already queued or running for it.
+     * @param callback may be null for fire-and-forget work such as prefetching
+     * @return handle used to cancel interest in the result
+     */
+    @NonNull
+    public Request submit(@NonNull PageKey key, int priority, @NonNull RenderTask<R> task,
+                          @Nullable Callback callback) {
+        Request request = new Request(this, callback);
+        synchronized (lock) {
+            submittedCount++;
+            if (shutdown) {
+                request.done = true;
+                return request;
+            }
+
+            Job<R> running = runningJobs.get(key);
+            if (running != null) {
+                mergedCount++;
+                request.job = running;
+                running.requests.add(request);
+                return request;
+            }
+
+            Job<R> job = pendingJobs.get(key);
+            if (job != null) {
+                mergedCount++;
+                // Re-queue so the job takes the more urgent priority and counts as the newest request
+                queue.remove(job);
+                job.priority = Math.min(job.priority, priority);
+            } else {
+                job = new Job<>(key, priority, task);
+                pendingJobs.put(key, job);
+            }
+            job.sequence = nextSequence++;
+            request.job = job;
+            job.requests.add(request);
+            queue.add(job);
+            lock.notify();
+        }
+        return request;
+    }
+
+    /**
+     * Stop the workers. Queued jobs are dropped and no further callbacks are delivered.
+     * @param onTerminated run once every worker has finished its current job and exited,
+     *                     on the last worker thread; this is where worker resources get closed
+     */
+    public void shutdown(@Nullable Runnable onTerminated) {
+        synchronized (lock) {
+            if (shutdown) return;
+            shutdown = true;
+            terminationHook = onTerminated;
+            for (Job<R> job : queue) {
+                for (Request request : job.requests) {
+                    request.done = true;
+                }
+            }
+            for (Job<R> job : runningJobs.values()) {
+                for (Request request : job.requests) {
+                    request.done = true;
+                }
+            }
+            droppedCount += queue.size();
+            queue.clear();
+            pendingJobs.clear();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Number of jobs waiting to start
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pendingJobs.size();
+        }
+    }
+
+    public long getSubmittedCount() {
+        synchronized (lock) {
+            return submittedCount;
+        }
+    }
+
+    /**
+     * Requests that joined an existing job instead of creating one
+     */
+    public long getMergedCount() {
+        synchronized (lock) {
+            return mergedCount;
+        }
+    }
+
+    /**
+     * Jobs removed before they started because nobody wanted them any more
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * Jobs that ran to completion after all of their requests had been cancelled
+     */
+    public long getStaleCount() {
+        synchronized (lock) {
+            return staleCount;
+        }
+    }
+
+    public long getCompletedCount() {
+        synchronized (lock) {
+            return completedCount;
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return String.format("RenderScheduler[queued=%d, running=%d, submitted=%d, merged=%d, dropped=%d, stale=%d, completed=%d]",
+                    pendingJobs.size(), runningJobs.size(), submittedCount, mergedCount,
+                    droppedCount, staleCount, completedCount);
+        }
+    }
+
+    private void cancel(Request request) {
+        synchronized (lock) {
+            if (request.done) return;
+            request.done = true;
+
+            Job<?> job = request.job;
+            if (job == null || job.started) return;
+            job.requests.remove(request);
+            if (job.requests.isEmpty()) {
+                queue.remove(job);
+                pendingJobs.remove(job.key);
+                droppedCount++;
+            }
+        }
+    }
+
+    private void workerLoop(R resource) {
+        try {
+            runJobs(resource);
+        } finally {
+            Runnable hook = null;
+            synchronized (lock) {
+                if (--liveWorkers == 0) {
+                    hook = terminationHook;
+                    terminationHook = null;
+                }
+            }
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+
+    private void runJobs(R resource) {
+        while (true) {
+            Job<R> job;
+            synchronized (lock) {
+                while (queue.isEmpty() && !shutdown) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Let whoever interrupted the worker see why it stopped
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (shutdown) return;
+
+                job = queue.poll();
+                pendingJobs.remove(job.key);
+                runningJobs.put(job.key, job);
+                job.started = true;
+            }
+            LatencyHistogram queueWait = queueWaitTimes;
+            if (queueWait != null) {
+                queueWait.recordSince(job.queuedNanos);
+            }
+
+            Exception failure = null;
+            try {
+                job.task.render(resource);
+            } catch (Exception e) {
+                failure = e;
+            } catch (Throwable t) {
+                // An Error such as OutOfMemoryError fails this job only; the worker and its
+                // resource stay in service, and the job leaves runningJobs like any other
+                failure = new ExecutionException(t);
+            }
+
+            final List<Request> requests;
+            synchronized (lock) {
+                runningJobs.remove(job.key);
+                completedCount++;
+                requests = new ArrayList<>(job.requests);
+                boolean anyLive = false;
+                for (Request request : requests) {
+                    anyLive |= !request.done;
+                }
+                if (!anyLive) {
+                    staleCount++;
+                    continue;
+                }
+            }
+
+            final Exception error = failure;
+            final long finishedNanos = System.nanoTime();
+            callbackExecutor.execute(() -> {
+                LatencyHistogram callbackDelay = callbackDelayTimes;
+                if (callbackDelay != null) {
+                    callbackDelay.recordSince(finishedNanos);
+                }
+                for (Request request : requests) {
+                    // Cancellation happens on this same thread, so this check cannot race
+                    if (request.done) continue;
+                    // Fire-and-forget requests are marked done too, so their owners can tell
+                    // a finished request from one still queued
+                    request.done = true;
+                    if (request.callback == null) continue;
+                    if (error == null) {
+                        request.callback.onRenderFinished();
+                    } else {
+                        request.callback.onRenderFailed(error);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * One caller's interest in a render job
+     */
+    public static final class Request {
+        private final RenderScheduler<?> scheduler;
+        private final Callback callback;
+        private Job<?> job;
+        // Set once the request is cancelled or its callback has run
+        private volatile boolean done;
+
+        Request(RenderScheduler<?> scheduler, Callback callback) {
+            this.scheduler = scheduler;
+            this.callback = callback;
+        }
+
+        /**
+         * Withdraw interest. If nobody else wants the page and it has not started, the job is dropped.
+         */
+        public void cancel() {
+            scheduler.cancel(this);
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    private static final class Job<R> implements Comparable<Job<R>> {
+        final PageKey key;
+        final RenderTask<R> task;
+        final List<Request> requests = new ArrayList<>(1);
+        final long queuedNanos = System.nanoTime();
+        int priority;
+        long sequence;
+        boolean started;
+
+        Job(PageKey key, int priority, RenderTask<R> task) {
+            this.key = key;
+            this.priority = priority;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Job<R> other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            // Newest request first
+            return Long.compare(other.sequence, sequence);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.pdfreader;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Inverted index of a document's words: every distinct word with the sorted list of pages it
+ * occurs on. Queries match each query word as a prefix and return the pages containing all of
+ * them, which takes a binary search and a few bit set operations.
+ *
+ * Words are case- and accent-folded, so "Resume" finds "résumé". On disk the words are stored
+ * sorted with their page lists delta- and varint-encoded.
+ */
+public class SearchIndex {
+
+    private static final int MAGIC = 0x4a525349; // "JRSI"
+    private static final int VERSION = 1;
+
+    private final int pageCount;
+    // Sorted; postings[i] are the ascending pages of terms[i]
+    private final String[] terms;
+    private final int[][] postings;
+
+    private SearchIndex(int pageCount, String[] terms, int[][] postings) {
+        this.pageCount = pageCount;
+        this.terms = terms;
+        this.postings = postings;
+    }
+
+    /**
+     * Index from each page's distinct words, as returned by {@link #pageTerms}
+     */
+    @NonNull
+    public static SearchIndex build(@NonNull String[][] pageTerms) {
+        TreeMap<String, List<Integer>> pagesByTerm = new TreeMap<>();
+        for (int page = 0; page < pageTerms.length; page++) {
+            if (pageTerms[page] == null) continue;
+            for (String term : pageTerms[page]) {
+                List<Integer> pages = pagesByTerm.get(term);
+                if (pages == null) {
+                    pages = new ArrayList<>(2);
+                    pagesByTerm.put(term, pages);
+                }
+                pages.add(page);
+            }
+        }
+
+        String[] terms = new String[pagesByTerm.size()];
+        int[][] postings = new int[terms.length][];
+        int i = 0;
+        for (Map.Entry<String, List<Integer>> entry : pagesByTerm.entrySet()) {
+            terms[i] = entry.getKey();
+            List<Integer> pages = entry.getValue();
+            int[] list = new int[pages.size()];
+            for (int j = 0; j < list.length; j++) {
+                list[j] = pages.get(j);
+            }
+            postings[i++] = list;
+        }
+        return new SearchIndex(pageTerms.length, terms, postings);
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    /**
+     * Pages containing every word of the query, each as a word prefix, in page order
+     */
+    @NonNull
+    public int[] search(@NonNull String query) {
+        String[] words = queryWords(query);
+        if (words.length == 0) return new int[0];
+
+        BitSet result = null;
+        for (String word : words) {
+            BitSet pages = new BitSet(pageCount);
+            int first = firstAtLeast(terms, word);
+            for (int i = first; i < terms.length && terms[i].startsWith(word); i++) {
+                for (int page : postings[i]) {
+                    pages.set(page);
+                }
+            }
+            if (result == null) {
+                result = pages;
+            } else {
+                result.and(pages);
+            }
+            if (result.isEmpty()) break;
+        }
+
+        int[] hits = new int[result.cardinality()];
+        int n = 0;
+        for (int page = result.nextSetBit(0); page >= 0; page = result.nextSetBit(page + 1)) {
+            hits[n++] = page;
+        }
+        return hits;
+    }
+
+    /**
+     * Whether one page's sorted distinct words contain every query word as a prefix
+     */
+    public static boolean matches(@NonNull String[] sortedPageTerms, @NonNull String[] queryWords) {
+        if (queryWords.length == 0) return false;
+        for (String word : queryWords) {
+            int i = firstAtLeast(sortedPageTerms, word);
+            if (i >= sortedPageTerms.length || !sortedPageTerms[i].startsWith(word)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Folded words of a query
+     */
+    @NonNull
+    public static String[] queryWords(@NonNull String query) {
+        List<String> words = tokenize(query);
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * Sorted distinct folded words of a page's text
+     */
+    @NonNull
+    public static String[] pageTerms(@NonNull String text) {
+        List<String> words = tokenize(text);
+        String[] terms = words.toArray(new String[0]);
+        Arrays.sort(terms);
+        int distinct = 0;
+        for (int i = 0; i < terms.length; i++) {
+            if (distinct == 0 || !terms[i].equals(terms[distinct - 1])) {
+                terms[distinct++] = terms[i];
+            }
+        }
+        return Arrays.copyOf(terms, distinct);
+    }
+
+    /**
+     * Split text into words of letters and digits, lowercased with accents removed.
+     * A word hyphenated across a line break is joined back together.
+     */
+    @NonNull
+    static List<String> tokenize(@NonNull String text) {
+        // Compatibility decomposition also splits ligatures such as "fi" into letters
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKD).toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        int length = folded.length();
+        for (int i = 0; i < length; i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                // Accent split off by the decomposition
+                continue;
+            } else if ((c == '-' || c == '\u00ad') && word.length() > 0 && i + 1 < length
+                    && folded.charAt(i + 1) == '\n') {
+                // "exam-\nple" is one word
+                i++;
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private static int firstAtLeast(String[] sorted, String key) {
+        int index = Arrays.binarySearch(sorted, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // ----- Persistence -----
+
+    public void save(@NonNull File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        // Write aside and rename, so a reader never sees half an index
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pageCount);
+            out.writeInt(terms.length);
+            for (int i = 0; i < terms.length; i++) {
+                out.writeUTF(terms[i]);
+                writeVarint(out, postings[i].length);
+                int previous = 0;
+                for (int page : postings[i]) {
+                    writeVarint(out, page - previous);
+                    previous = page;
+                }
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    @NonNull
+    public static SearchIndex load(@NonNull File file, int expectedPageCount) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a search index: " + file);
+            }
+            int pageCount = in.readInt();
+            int termCount = in.readInt();
+            if (pageCount != expectedPageCount || termCount < 0) {
+                throw new IOException("Stale search index: " + file);
+            }
+            String[] terms = new String[termCount];
+            int[][] postings = new int[termCount][];
+            for (int i = 0; i < termCount; i++) {
+                terms[i] = in.readUTF();
+                int count = readVarint(in);
+                if (count < 0 || count > pageCount) throw new IOException("Corrupt search index: " + file);
+                int[] pages = new int[count];
+                int page = 0;
+                for (int j = 0; j < count; j++) {
+                    page += readVarint(in);
+                    pages[j] = page;
+                }
+                postings[i] = pages;
+            }
+            return new SearchIndex(pageCount, terms, postings);
+        }
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new IOException("Truncated search index");
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt search index");
+    }
+}
@@ -0,0 +1,704 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * The reading session: open tabs and the state of every document ever opened (name, fingerprint,
+ * page count, exact scroll position, timestamps), in an append-only binary journal.
+ *
+ * Once the journal is loaded, reads are answered from memory, apart from the state of a document
+ * outside the open tabs, which reads its one record. Changes are collected in memory and appended
+ * as records by a background thread at most once a second, so recording one never waits for
+ * storage. The journal and the tabs' states start loading on that thread when
+ * {@link #getInstance} first creates it; a call made before the load is done, on the main thread
+ * too, waits for it.
+ *
+ * When enough records have piled up, the journal is compacted into a snapshot that starts with
+ * an index of documents sorted by URI hash, so loading one document's state reads the index and
+ * a single record rather than the whole file. Records carry a checksum; a torn record at the end,
+ * from a write cut short, is dropped on load.
+ */
+public class SessionJournal {
+
+    private static final String FILE_NAME = "session.journal";
+    private static final int MAGIC = 0x4a52534a; // "JRSJ"
+    private static final int VERSION = 1;
+    // magic, version, index entry count, snapshot tabs record offset, tail start
+    private static final int HEADER_SIZE = 20;
+    // uri hash (long), record offset (int)
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final byte TYPE_DOCUMENT = 1;
+    private static final byte TYPE_TABS = 2;
+    // Largest document record the writer produces: three strings of up to 64 KB, three ints, two longs
+    private static final int MAX_DOCUMENT_LENGTH = 3 * (2 + 65535) + 3 * 4 + 2 * 8;
+
+    // Appended records beyond these trigger a compaction
+    private static final int COMPACT_RECORDS = 256;
+    private static final long COMPACT_BYTES = 256 * 1024;
+    // Least recently used documents beyond this are forgotten at compaction
+    private static final int MAX_DOCUMENTS = 5000;
+    private static final long FLUSH_DELAY_MS = 1000;
+
+    /**
+     * Saved state of one document
+     */
+    public static final class DocumentState {
+        @NonNull
+        public final String uri;
+        @NonNull
+        public final String displayName;
+        // Empty when not known
+        @NonNull
+        public final String fingerprint;
+        public final int pageCount;
+        public final int page;
+        // Pixels the page is scrolled past the top of the screen
+        public final int scrollOffset;
+        public final long openedAt;
+        public final long updatedAt;
+
+        public DocumentState(@NonNull String uri, @NonNull String displayName, @NonNull String fingerprint,
+                             int pageCount, int page, int scrollOffset, long openedAt, long updatedAt) {
+            this.uri = uri;
+            this.displayName = displayName;
+            this.fingerprint = fingerprint;
+            this.pageCount = pageCount;
+            this.page = page;
+            this.scrollOffset = scrollOffset;
+            this.openedAt = openedAt;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    private static SessionJournal instance;
+
+    private final File file;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SessionJournal");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Held while the file is written, outside the lock on this, so one write runs at a time even
+    // when benchmarks call writePending() alongside the writer thread
+    private final Object writeLock = new Object();
+
+    // Everything below is guarded by this. The file is only written under writeLock, outside
+    // this lock, except that a compacted file replaces it under both.
+
+    private boolean loaded;
+    // Snapshot index, sorted by hash
+    private long[] indexHashes = new long[0];
+    private int[] indexOffsets = new int[0];
+    // Documents read from the snapshot so far, by URI
+    private final Map<String, DocumentState> indexedDocuments = new HashMap<>();
+    // Documents appended since the snapshot, or being appended, by URI
+    private final Map<String, DocumentState> tailDocuments = new HashMap<>();
+    private int tailRecords;
+    // Where appended records begin, and where the next one goes
+    private long tailStart = HEADER_SIZE;
+    private long fileLength;
+    private List<String> tabs = Collections.emptyList();
+    private int currentTab = -1;
+
+    // Not written yet
+    private final Map<String, DocumentState> pendingDocuments = new LinkedHashMap<>();
+    private boolean pendingTabs;
+    private boolean flushScheduled;
+
+    public static synchronized SessionJournal getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new SessionJournal(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+            instance.preload();
+        }
+        return instance;
+    }
+
+    // Package-private for the benchmarks, which run without a Context
+    SessionJournal(File file) {
+        this.file = file;
+    }
+
+    // ----- Reading -----
+
+    /**
+     * Load the journal and the states of the open tabs on the writer thread, so the first reads
+     * on the main thread find them in memory
+     */
+    private void preload() {
+        writer.execute(() -> {
+            synchronized (this) {
+                ensureLoaded();
+                for (String uri : tabs) {
+                    getDocument(uri);
+                }
+            }
+        });
+    }
+
+    /**
+     * Saved state of a document, or null if it was never opened
+     */
+    @Nullable
+    public synchronized DocumentState getDocument(@NonNull String uri) {
+        ensureLoaded();
+        DocumentState state = pendingDocuments.get(uri);
+        if (state == null) state = tailDocuments.get(uri);
+        if (state == null) state = indexedDocuments.get(uri);
+        if (state == null) {
+            state = readIndexed(uri);
+            if (state != null) indexedDocuments.put(uri, state);
+        }
+        return state;
+    }
+
+    /**
+     * URIs of the open tabs, in order
+     */
+    @NonNull
+    public synchronized List<String> getTabs() {
+        ensureLoaded();
+        return new ArrayList<>(tabs);
+    }
+
+    public synchronized int getCurrentTab() {
+        ensureLoaded();
+        return currentTab;
+    }
+
+    /**
+     * Whether anything has ever been saved
+     */
+    public synchronized boolean isEmpty() {
+        ensureLoaded();
+        return fileLength <= HEADER_SIZE && pendingDocuments.isEmpty() && !pendingTabs;
+    }
+
+    // ----- Writing -----
+
+    public synchronized void putDocument(@NonNull DocumentState state) {
+        ensureLoaded();
+        pendingDocuments.put(state.uri, state);
+        scheduleFlush();
+    }
+
+    /**
+     * A document was opened; creates its state the first time
+     */
+    public synchronized void recordOpened(@NonNull String uri, @NonNull String displayName) {
+        long now = System.currentTimeMillis();
+        DocumentState old = getDocument(uri);
+        putDocument(old == null
+                ? new DocumentState(uri, displayName, "", 0, 0, 0, now, now)
+                : new DocumentState(uri, displayName, old.fingerprint, old.pageCount, old.page,
+                        old.scrollOffset, now, now));
+    }
+
+    public synchronized void recordName(@NonNull String uri, @NonNull String displayName) {
+        DocumentState old = getDocument(uri);
+        if (old == null || old.displayName.equals(displayName)) return;
+        putDocument(new DocumentState(uri, displayName, old.fingerprint, old.pageCount, old.page,
+                old.scrollOffset, old.openedAt, System.currentTimeMillis()));
+    }
+
+    public synchronized void recordPageCount(@NonNull String uri, int pageCount) {
+        DocumentState old = getDocument(uri);
+        if (old == null || old.pageCount == pageCount) return;
+        putDocument(new DocumentState(uri, old.displayName, old.fingerprint, pageCount, old.page,
+                old.scrollOffset, old.openedAt, System.currentTimeMillis()));
+    }
+
+    public synchronized void recordFingerprint(@NonNull String uri, @NonNull String fingerprint) {
+        DocumentState old = getDocument(uri);
+        if (old == null || old.fingerprint.equals(fingerprint)) return;
+        // Changed content: the page count recorded for the old one no longer holds
+        int pageCount = old.fingerprint.isEmpty() ? old.pageCount : 0;
+        putDocument(new DocumentState(uri, old.displayName, fingerprint, pageCount, old.page,
+                old.scrollOffset, old.openedAt, System.currentTimeMillis()));
+    }
+
+    public synchronized void recordPosition(@NonNull String uri, int page, int scrollOffset) {
+        DocumentState old = getDocument(uri);
+        if (old == null || (old.page == page && old.scrollOffset == scrollOffset)) return;
+        putDocument(new DocumentState(uri, old.displayName, old.fingerprint, old.pageCount, page,
+                scrollOffset, old.openedAt, System.currentTimeMillis()));
+    }
+
+    public synchronized void setTabs(@NonNull List<String> uris, int current) {
+        ensureLoaded();
+        if (uris.equals(tabs) && current == currentTab) return;
+        tabs = new ArrayList<>(uris);
+        currentTab = current;
+        pendingTabs = true;
+        scheduleFlush();
+    }
+
+    /**
+     * Write pending changes now instead of after the throttling delay, e.g. when the app goes away
+     */
+    public void flush() {
+        writer.execute(this::writePending);
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        writer.schedule(this::writePending, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Append what is pending, compacting if due; on the writer thread, or directly in benchmarks.
+     * Only the encoding happens under the lock: the append, its sync and compaction run outside it.
+     */
+    void writePending() {
+        synchronized (writeLock) {
+            appendPending();
+        }
+    }
+
+    private void appendPending() {
+        Map<String, DocumentState> documents;
+        boolean tabsWritten;
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int recordCount = 0;
+        long start;
+        synchronized (this) {
+            flushScheduled = false;
+            ensureLoaded();
+            if (pendingDocuments.isEmpty() && !pendingTabs) return;
+
+            documents = new LinkedHashMap<>(pendingDocuments);
+            tabsWritten = pendingTabs;
+            for (DocumentState state : documents.values()) {
+                recordCount += encodeRecord(records, TYPE_DOCUMENT, state, null);
+            }
+            if (tabsWritten) {
+                recordCount += encodeRecord(records, TYPE_TABS, null, tabs);
+            }
+            pendingDocuments.clear();
+            pendingTabs = false;
+            // Found here by readers while they are written
+            tailDocuments.putAll(documents);
+            start = fileLength;
+        }
+
+        long end;
+        try {
+            end = append(start, records);
+        } catch (IOException e) {
+            // Kept pending, tried again with the next change; changes made meanwhile are newer
+            e.printStackTrace();
+            synchronized (this) {
+                for (DocumentState state : documents.values()) {
+                    if (!pendingDocuments.containsKey(state.uri)) pendingDocuments.put(state.uri, state);
+                }
+                pendingTabs |= tabsWritten;
+            }
+            return;
+        }
+
+        boolean compactDue;
+        synchronized (this) {
+            if (start < HEADER_SIZE) {
+                tailStart = HEADER_SIZE;
+            }
+            fileLength = end;
+            tailRecords += recordCount;
+            compactDue = tailRecords > COMPACT_RECORDS || fileLength - tailStart > COMPACT_BYTES;
+        }
+        if (compactDue) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The appended journal is still complete; compacted again after the next append
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Encode one record into records; a document or tabs too large for the format is skipped
+     * @return 1 if the record was encoded, else 0
+     */
+    private int encodeRecord(ByteArrayOutputStream records, byte type, @Nullable DocumentState state,
+                             @Nullable List<String> uris) {
+        try {
+            byte[] payload = type == TYPE_DOCUMENT ? encodeDocument(state) : encodeTabs(uris, currentTab);
+            writeRecord(records, type, payload);
+            return 1;
+        } catch (IOException e) {
+            // A string over 64 KB, which no retry will fix
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Append records at the end of the journal, creating it if needed, and sync them to storage.
+     * A partial append is cut off again, so no torn record hides the ones appended after it.
+     * @param start Length of the journal, below HEADER_SIZE if it has no header yet
+     * @return New length of the journal
+     */
+    private long append(long start, ByteArrayOutputStream records) throws IOException {
+        if (start < HEADER_SIZE) {
+            writeEmptyHeader();
+            start = HEADER_SIZE;
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            try {
+                records.writeTo(out);
+                out.getFD().sync();
+            } catch (IOException e) {
+                out.getChannel().truncate(start);
+                throw e;
+            }
+        }
+        return start + records.size();
+    }
+
+    private void writeEmptyHeader() throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0);
+            out.writeInt(-1);
+            out.writeInt(HEADER_SIZE);
+        }
+    }
+
+    // ----- Compaction -----
+
+    /**
+     * Rewrite the journal as a snapshot: header, index sorted by URI hash, tabs, then the latest
+     * record of every document. The old snapshot is read and the new one written outside the lock;
+     * only replacing the file and swapping in its index happen under it.
+     */
+    private void compact() throws IOException {
+        int[] oldOffsets;
+        Map<String, DocumentState> compacted;
+        List<String> openTabs;
+        int current;
+        synchronized (this) {
+            oldOffsets = indexOffsets;
+            // Only changes when records are appended, which waits for writeLock
+            compacted = new HashMap<>(tailDocuments);
+            openTabs = tabs;
+            current = currentTab;
+        }
+
+        Map<String, DocumentState> all = new HashMap<>();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (int offset : oldOffsets) {
+                DocumentState state = decodeDocument(readRecord(in, offset, TYPE_DOCUMENT));
+                if (state != null) all.put(state.uri, state);
+            }
+        }
+        all.putAll(compacted);
+
+        List<DocumentState> documents = new ArrayList<>(all.values());
+        if (documents.size() > MAX_DOCUMENTS) {
+            // Forget the documents untouched the longest, but never an open tab
+            Collections.sort(documents, (a, b) -> Long.compare(b.updatedAt, a.updatedAt));
+            List<DocumentState> newest = new ArrayList<>(documents.subList(0, MAX_DOCUMENTS));
+            for (DocumentState state : documents.subList(MAX_DOCUMENTS, documents.size())) {
+                if (openTabs.contains(state.uri)) newest.add(state);
+            }
+            documents = newest;
+        }
+        Collections.sort(documents, Comparator.comparingLong(state -> hash(state.uri)));
+        Set<String> kept = new HashSet<>();
+        for (DocumentState state : documents) {
+            kept.add(state.uri);
+        }
+
+        // Records first, into memory, to know their offsets
+        int recordsStart = HEADER_SIZE + documents.size() * INDEX_ENTRY_SIZE;
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        int tabsOffset = recordsStart;
+        writeRecord(records, TYPE_TABS, encodeTabs(openTabs, current));
+        long[] hashes = new long[documents.size()];
+        int[] offsets = new int[documents.size()];
+        for (int i = 0; i < documents.size(); i++) {
+            hashes[i] = hash(documents.get(i).uri);
+            offsets[i] = recordsStart + records.size();
+            writeRecord(records, TYPE_DOCUMENT, encodeDocument(documents.get(i)));
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(documents.size());
+            data.writeInt(tabsOffset);
+            data.writeInt(recordsStart + records.size());
+            for (int i = 0; i < hashes.length; i++) {
+                data.writeLong(hashes[i]);
+                data.writeInt(offsets[i]);
+            }
+            records.writeTo(data);
+            data.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        synchronized (this) {
+            // Under the lock, so no reader looks up an old offset in the new file
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Cannot replace " + file);
+            }
+            indexHashes = hashes;
+            indexOffsets = offsets;
+            // What was read from the tail is now in the snapshot, and newer than what was read before
+            indexedDocuments.keySet().retainAll(kept);
+            indexedDocuments.putAll(compacted);
+            tailDocuments.clear();
+            tailRecords = 0;
+            fileLength = recordsStart + records.size();
+            tailStart = fileLength;
+        }
+    }
+
+    // ----- Loading -----
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.isFile()) return;
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "rw")) {
+            long length = in.length();
+            if (length < HEADER_SIZE) throw new IOException("Truncated header");
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a session journal");
+            int entryCount = in.readInt();
+            int tabsOffset = in.readInt();
+            int snapshotEnd = in.readInt();
+            if (entryCount < 0 || HEADER_SIZE + (long) entryCount * INDEX_ENTRY_SIZE > snapshotEnd
+                    || snapshotEnd > length) {
+                throw new IOException("Corrupt session journal header");
+            }
+
+            byte[] index = new byte[entryCount * INDEX_ENTRY_SIZE];
+            in.readFully(index);
+            DataInputStream indexData = new DataInputStream(new ByteArrayInputStream(index));
+            indexHashes = new long[entryCount];
+            indexOffsets = new int[entryCount];
+            for (int i = 0; i < entryCount; i++) {
+                indexHashes[i] = indexData.readLong();
+                indexOffsets[i] = indexData.readInt();
+            }
+            if (tabsOffset >= 0) {
+                readTabs(readRecord(in, tabsOffset, TYPE_TABS));
+            }
+
+            // Replay what was appended since the snapshot
+            long position = snapshotEnd;
+            while (position < length) {
+                if (position + 9 > length) break;
+                in.seek(position);
+                int recordLength = in.readInt();
+                byte type = in.readByte();
+                if (recordLength < 0 || recordLength > maxLength(type)
+                        || position + 9 + recordLength > length) {
+                    break;
+                }
+                byte[] payload = new byte[recordLength];
+                in.readFully(payload);
+                if (in.readInt() != checksum(type, payload)) break;
+                if (type == TYPE_DOCUMENT) {
+                    DocumentState state = decodeDocument(payload);
+                    if (state != null) tailDocuments.put(state.uri, state);
+                } else if (type == TYPE_TABS) {
+                    readTabs(payload);
+                }
+                tailRecords++;
+                position += 9 + recordLength;
+            }
+            if (position < length) {
+                // A torn or damaged record: drop it and whatever follows
+                in.setLength(position);
+            }
+            fileLength = position;
+            tailStart = snapshotEnd;
+        } catch (IOException e) {
+            // Start over rather than fail to launch
+            e.printStackTrace();
+            file.delete();
+            indexHashes = new long[0];
+            indexOffsets = new int[0];
+            indexedDocuments.clear();
+            tailDocuments.clear();
+            tailRecords = 0;
+            fileLength = 0;
+            tabs = Collections.emptyList();
+            currentTab = -1;
+        }
+    }
+
+    @Nullable
+    private DocumentState readIndexed(String uri) {
+        if (indexHashes.length == 0) return null;
+        long hash = hash(uri);
+        int at = Arrays.binarySearch(indexHashes, hash);
+        if (at < 0) return null;
+        // Equal hashes are adjacent; back up to the first
+        while (at > 0 && indexHashes[at - 1] == hash) at--;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (; at < indexHashes.length && indexHashes[at] == hash; at++) {
+                DocumentState state = decodeDocument(readRecord(in, indexOffsets[at], TYPE_DOCUMENT));
+                if (state != null && state.uri.equals(uri)) return state;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    private void readTabs(@Nullable byte[] payload) throws IOException {
+        if (payload == null) return;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int current = in.readInt();
+        int count = in.readInt();
+        List<String> uris = new ArrayList<>(Math.max(0, count));
+        for (int i = 0; i < count; i++) {
+            uris.add(in.readUTF());
+        }
+        tabs = uris;
+        currentTab = current;
+    }
+
+    // ----- Records -----
+
+    private static void writeRecord(ByteArrayOutputStream out, byte type, byte[] payload) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(payload.length);
+        data.writeByte(type);
+        data.write(payload);
+        data.writeInt(checksum(type, payload));
+        data.flush();
+    }
+
+    /**
+     * Payload of the record at an offset, or null if it is damaged or of another type
+     */
+    @Nullable
+    private static byte[] readRecord(RandomAccessFile in, long offset, byte expectedType) throws IOException {
+        if (offset < HEADER_SIZE || offset + 9 > in.length()) return null;
+        in.seek(offset);
+        int length = in.readInt();
+        byte type = in.readByte();
+        if (type != expectedType || length < 0 || length > maxLength(type)
+                || offset + 9 + length > in.length()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        if (in.readInt() != checksum(type, payload)) return null;
+        return payload;
+    }
+
+    /**
+     * Longest payload a record of a type can have, to tell a torn length from a real one.
+     * The tabs hold any number of URIs, so only the file bounds them.
+     */
+    private static long maxLength(byte type) {
+        switch (type) {
+            case TYPE_DOCUMENT:
+                return MAX_DOCUMENT_LENGTH;
+            case TYPE_TABS:
+                return Integer.MAX_VALUE;
+            default:
+                return -1;
+        }
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encodeDocument(DocumentState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(state.uri);
+        out.writeUTF(state.displayName);
+        out.writeUTF(state.fingerprint);
+        out.writeInt(state.pageCount);
+        out.writeInt(state.page);
+        out.writeInt(state.scrollOffset);
+        out.writeLong(state.openedAt);
+        out.writeLong(state.updatedAt);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Nullable
+    private static DocumentState decodeDocument(@Nullable byte[] payload) {
+        if (payload == null) return null;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            return new DocumentState(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readInt(),
+                    in.readInt(), in.readLong(), in.readLong());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encodeTabs(List<String> uris, int current) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * uris.size() + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(current);
+        out.writeInt(uris.size());
+        for (String uri : uris) {
+            out.writeUTF(uri);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 64-bit FNV-1a of the URI, the key of the snapshot index
+     */
+    private static long hash(String uri) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : uri.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.pdfreader;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * When each startup phase was reached, in milliseconds since the process started. Only the first
+ * time a phase is reached counts, so phases that repeat later in the process are not skewed.
+ */
+public final class StartupTimings {
+
+    private static final String TAG = "StartupTimings";
+
+    public static final String ACTIVITY_CREATE = "activity_create";
+    public static final String CONTENT_VIEW = "content_view";
+    // The last active document is on screen, from cached metadata
+    public static final String ACTIVE_TAB_RESTORED = "active_tab_restored";
+    public static final String FIRST_PAGE_SHOWN = "first_page_shown";
+    // Every saved tab has been checked and restored or dropped
+    public static final String ALL_TABS_RESTORED = "all_tabs_restored";
+
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+
+    private StartupTimings() {
+    }
+
+    /**
+     * Record that a phase has been reached, unless it was before
+     */
+    public static synchronized void mark(@NonNull String phase) {
+        if (marks.containsKey(phase)) return;
+        long sinceStart = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+        marks.put(phase, sinceStart);
+        Log.i(TAG, phase + " at " + sinceStart + " ms");
+    }
+
+    /**
+     * Phases reached so far, in the order they were reached
+     */
+    @NonNull
+    public static synchronized Map<String, Long> getMarks() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(marks));
+    }
+}
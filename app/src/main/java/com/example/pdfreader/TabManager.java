@@ -0,0 +1,163 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.net.Uri;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which tabs are live and which are hibernated.
+ *
+ * A live tab has a viewer fragment with its descriptors, renderers, render threads and bitmaps.
+ * Only the tabs used most recently are kept live, as many as the {@link MemoryGovernor} allows; the others are
+ * hibernated, which releases all of that and keeps only a small snapshot of the screen the tab
+ * last showed. Switching back shows the snapshot at once while the document re-opens behind it.
+ * Snapshots have their own byte budget and the oldest are dropped beyond it; such a tab falls
+ * back to the disk-cached page on switching back.
+ */
+public class TabManager {
+
+    // Snapshots are drawn at this fraction of the screen size, in RGB_565
+    private static final float SNAPSHOT_SCALE = 0.5f;
+
+    private final int maxLiveTabs;
+    private final long maxSnapshotBytes;
+    // Live tabs, least recently shown first
+    private final LinkedHashSet<Uri> liveTabs = new LinkedHashSet<>();
+    // Snapshots of hibernated tabs, oldest first
+    private final LinkedHashMap<Uri, Bitmap> snapshots = new LinkedHashMap<>();
+    private long snapshotBytes;
+
+    public TabManager(@NonNull Context context) {
+        MemoryGovernor governor = MemoryGovernor.getInstance(context);
+        maxLiveTabs = governor.getMaxLiveTabs();
+        maxSnapshotBytes = governor.getTabSnapshotBytes();
+    }
+
+    public int getMaxLiveTabs() {
+        return maxLiveTabs;
+    }
+
+    public int getLiveCount() {
+        return liveTabs.size();
+    }
+
+    public boolean isLive(@NonNull Uri uri) {
+        return liveTabs.contains(uri);
+    }
+
+    /**
+     * A tab is shown and therefore live
+     * @return Tabs that are now beyond the live budget and should be hibernated, oldest first
+     */
+    @NonNull
+    public List<Uri> onTabShown(@NonNull Uri uri) {
+        liveTabs.remove(uri);
+        liveTabs.add(uri);
+        List<Uri> excess = new ArrayList<>();
+        Iterator<Uri> iterator = liveTabs.iterator();
+        for (int i = liveTabs.size(); i > maxLiveTabs; i--) {
+            excess.add(iterator.next());
+        }
+        return excess;
+    }
+
+    /**
+     * A tab's fragment has been released
+     * @param snapshot What the tab last showed, null if it was never laid out
+     */
+    public void hibernate(@NonNull Uri uri, @Nullable Bitmap snapshot) {
+        liveTabs.remove(uri);
+        dropSnapshot(uri);
+        if (snapshot == null) return;
+        snapshots.put(uri, snapshot);
+        snapshotBytes += snapshot.getByteCount();
+
+        Iterator<Map.Entry<Uri, Bitmap>> iterator = snapshots.entrySet().iterator();
+        while (snapshotBytes > maxSnapshotBytes && iterator.hasNext()) {
+            snapshotBytes -= iterator.next().getValue().getByteCount();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * The snapshot of a hibernated tab that is about to be shown again; the caller owns it
+     */
+    @Nullable
+    public Bitmap takeSnapshot(@NonNull Uri uri) {
+        Bitmap snapshot = snapshots.remove(uri);
+        if (snapshot != null) {
+            snapshotBytes -= snapshot.getByteCount();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Live tabs other than the one on screen, least recently shown first
+     */
+    @NonNull
+    public List<Uri> getBackgroundTabs(@NonNull Uri current) {
+        List<Uri> background = new ArrayList<>(liveTabs);
+        background.remove(current);
+        return background;
+    }
+
+    /**
+     * Drop every snapshot, e.g. under memory pressure
+     * @return Bytes freed
+     */
+    public long dropSnapshots() {
+        long freed = snapshotBytes;
+        snapshots.clear();
+        snapshotBytes = 0;
+        return freed;
+    }
+
+    /**
+     * A tab was closed
+     */
+    public void remove(@NonNull Uri uri) {
+        liveTabs.remove(uri);
+        dropSnapshot(uri);
+    }
+
+    private void dropSnapshot(Uri uri) {
+        Bitmap old = snapshots.remove(uri);
+        if (old != null) {
+            snapshotBytes -= old.getByteCount();
+        }
+    }
+
+    /**
+     * Draw a view, scaled down, into a new bitmap
+     * @return Null if the view has not been laid out
+     */
+    @Nullable
+    public static Bitmap captureSnapshot(@Nullable View view) {
+        if (view == null || view.getWidth() == 0 || view.getHeight() == 0) return null;
+        int width = Math.max(1, Math.round(view.getWidth() * SNAPSHOT_SCALE));
+        int height = Math.max(1, Math.round(view.getHeight() * SNAPSHOT_SCALE));
+        Bitmap snapshot;
+        try {
+            snapshot = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        } catch (OutOfMemoryError e) {
+            // The snapshot is a nicety; hibernating frees far more than it would take
+            return null;
+        }
+        Canvas canvas = new Canvas(snapshot);
+        canvas.scale(SNAPSHOT_SCALE, SNAPSHOT_SCALE);
+        view.draw(canvas);
+        return snapshot;
+    }
+}
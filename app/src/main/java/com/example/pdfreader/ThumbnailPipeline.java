@@ -0,0 +1,277 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Produces first-page thumbnails of documents for the Home grid.
+ *
+ * Thumbnails are rendered on a single minimum-priority thread, so they never compete with the
+ * page renderers of an open document, and kept in a small memory cache backed by WebP files in
+ * the app cache dir. Both are keyed by {@link DocumentFingerprint}, so a document reached
+ * through two URIs shares one thumbnail and a document changed on disk gets a fresh one.
+ * Nothing happens until a grid cell asks for its thumbnail, so the cost is proportional to the
+ * cells on screen, not to the number of recent documents.
+ */
+public class ThumbnailPipeline {
+
+    /**
+     * Receives a thumbnail on the main thread. The bitmap is pinned, by the request's handle,
+     * until {@link #release}.
+     */
+    public interface Listener {
+        void onThumbnailReady(@NonNull Uri uri, @NonNull Bitmap bitmap);
+    }
+
+    private static final int THUMBNAIL_WIDTH_DP = 180;
+    // Very tall pages are cut off rather than making a tall cell
+    private static final float MAX_ASPECT_RATIO = 1.5f;
+    private static final int WEBP_QUALITY = 80;
+    private static final String DIRECTORY = "thumbnails";
+
+    private static ThumbnailPipeline instance;
+
+    private final PageBitmapCache memoryCache;
+    private final File directory;
+    private final int thumbnailWidth;
+    private final RenderScheduler<DocumentSource> scheduler;
+    // Content of each document as the worker last found it, by URI
+    private final Map<String, String> fingerprints = Collections.synchronizedMap(new HashMap<>());
+
+    public static synchronized ThumbnailPipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailPipeline(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ThumbnailPipeline(Context context) {
+        this.memoryCache = PageBitmapCache.getThumbnailInstance(context);
+        this.directory = new File(context.getCacheDir(), DIRECTORY);
+        this.thumbnailWidth = Math.round(THUMBNAIL_WIDTH_DP * context.getResources().getDisplayMetrics().density);
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        this.scheduler = new RenderScheduler<>("Thumbnail",
+                Collections.singletonList(DocumentSource.getInstance(context)), mainHandler::post,
+                Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Ask for a document's thumbnail. The handle holds the thumbnail's pin once it is returned
+     * or passed to the listener.
+     * @param fingerprint The document's content as last known, or null; without it the memory
+     *                    cache can only be searched once the worker has read the file
+     * @return the thumbnail, pinned, if it is in memory; otherwise null and the listener is
+     *         called once it has been loaded or rendered
+     */
+    @Nullable
+    public Bitmap request(@NonNull Uri uri, @Nullable String fingerprint, @NonNull Listener listener,
+                          @NonNull RequestHandle handle) {
+        if (fingerprint == null) {
+            fingerprint = fingerprints.get(uri.toString());
+        }
+        if (fingerprint != null) {
+            PageKey key = keyFor(fingerprint);
+            Bitmap cached = memoryCache.acquire(key);
+            if (cached != null) {
+                return handle.pin(memoryCache, key) ? cached : null;
+            }
+        }
+
+        // One job per URI: the worker finds the content, which may since have changed
+        PageKey jobKey = new PageKey(uri.toString(), 0, 0f);
+        handle.request = scheduler.submit(jobKey, RenderScheduler.PRIORITY_VISIBLE,
+                source -> load(source, uri),
+                new RenderScheduler.Callback() {
+                    @Override
+                    public void onRenderFinished() {
+                        handle.request = null;
+                        String found = fingerprints.get(uri.toString());
+                        if (found == null) return;
+                        PageKey key = keyFor(found);
+                        Bitmap bitmap = memoryCache.pin(key);
+                        if (bitmap != null && handle.pin(memoryCache, key)) {
+                            listener.onThumbnailReady(uri, bitmap);
+                        }
+                    }
+
+                    @Override
+                    public void onRenderFailed(@NonNull Exception e) {
+                        // The grid keeps its placeholder
+                        handle.request = null;
+                        e.printStackTrace();
+                    }
+                });
+        return null;
+    }
+
+    /**
+     * Delete the saved thumbnail of a document, e.g. because it changed on disk
+     */
+    public static void remove(@NonNull Context context, @NonNull String fingerprint) {
+        new File(new File(context.getCacheDir(), DIRECTORY), fingerprint + ".webp").delete();
+    }
+
+    /**
+     * Unpin the thumbnail a handle holds, if any
+     */
+    public void release(@NonNull RequestHandle handle) {
+        if (handle.pinned != null) {
+            memoryCache.release(handle.pinned);
+            handle.pinned = null;
+        }
+    }
+
+    /**
+     * Outstanding request and shown thumbnail of one grid cell; main thread
+     */
+    public static final class RequestHandle {
+        private RenderScheduler.Request request;
+        private PageKey pinned;
+
+        public void cancel() {
+            if (request != null) {
+                request.cancel();
+                request = null;
+            }
+        }
+
+        /**
+         * Take over a pin, unless one is held already, in which case it is given back
+         * @return Whether the handle took it
+         */
+        private boolean pin(PageBitmapCache memoryCache, PageKey key) {
+            if (pinned != null) {
+                memoryCache.release(key);
+                return false;
+            }
+            pinned = key;
+            return true;
+        }
+    }
+
+    private static PageKey keyFor(String fingerprint) {
+        // Thumbnails have a cache of their own and one size, so the content alone identifies them
+        return new PageKey(fingerprint, 0, 0f);
+    }
+
+    /**
+     * Put the thumbnail in the memory cache, from disk or by rendering page 0, and remember the
+     * content found under the URI. Runs on the worker.
+     */
+    private void load(DocumentSource source, Uri uri) throws IOException {
+        // A document the provider only streams is not fetched for a thumbnail
+        ParcelFileDescriptor fileDescriptor = source.openLocal(uri);
+        if (fileDescriptor == null) {
+            throw new IOException("Not available locally: " + uri);
+        }
+
+        String fingerprint;
+        try {
+            fingerprint = DocumentFingerprint.compute(fileDescriptor);
+        } catch (IOException e) {
+            fileDescriptor.close();
+            throw e;
+        }
+        fingerprints.put(uri.toString(), fingerprint);
+        PageKey key = keyFor(fingerprint);
+        if (memoryCache.contains(key)) {
+            fileDescriptor.close();
+            return;
+        }
+
+        File file = new File(directory, fingerprint + ".webp");
+        if (file.isFile()) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            // Mutable, so the bitmap can go back to the pool when evicted
+            options.inMutable = true;
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+            if (bitmap != null) {
+                fileDescriptor.close();
+                memoryCache.put(key, bitmap);
+                return;
+            }
+        }
+
+        Bitmap bitmap = render(fileDescriptor, uri);
+        // Save first: once in the cache the bitmap may be evicted and reused at any time
+        save(bitmap, file);
+        memoryCache.put(key, bitmap);
+    }
+
+    /**
+     * Render page 0; the descriptor is closed whether or not this succeeds
+     */
+    private Bitmap render(ParcelFileDescriptor fileDescriptor, Uri uri) throws IOException {
+        BitmapPool bitmapPool = memoryCache.getBitmapPool();
+        PdfRenderer pdfRenderer;
+        try {
+            pdfRenderer = new PdfRenderer(fileDescriptor);
+        } catch (IOException | RuntimeException e) {
+            // The renderer only takes over the descriptor once it is constructed
+            fileDescriptor.close();
+            throw e;
+        }
+        try (PdfRenderer renderer = pdfRenderer) {
+            if (renderer.getPageCount() == 0) {
+                throw new IOException("No pages in " + uri);
+            }
+            PdfRenderer.Page page = renderer.openPage(0);
+            try {
+                float scale = (float) thumbnailWidth / page.getWidth();
+                int height = Math.min(Math.max(1, (int) (page.getHeight() * scale)),
+                        (int) (thumbnailWidth * MAX_ASPECT_RATIO));
+                // One scale for both axes: a page taller than the cell is cut off, not squashed
+                Matrix transform = new Matrix();
+                transform.setScale(scale, scale);
+                Bitmap bitmap = bitmapPool.acquire(thumbnailWidth, height);
+                try {
+                    page.render(bitmap, null, transform, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                } catch (RuntimeException e) {
+                    bitmapPool.release(bitmap);
+                    throw e;
+                }
+                return bitmap;
+            } finally {
+                page.close();
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void save(Bitmap bitmap, File file) {
+        if (!directory.isDirectory() && !directory.mkdirs()) return;
+
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+        // Write aside and rename, so a half-written file is never decoded
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(format, WEBP_QUALITY, out);
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
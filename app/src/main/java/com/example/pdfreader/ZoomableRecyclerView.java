@@ -0,0 +1,193 @@
+package com.example.pdfreader;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * RecyclerView that can be pinch-zoomed as a whole.
+ *
+ * Children keep their fit-width layout; zoom and horizontal pan are applied when drawing, and
+ * touch events are mapped back into layout coordinates so vertical scrolling and clicks keep
+ * working at any zoom. Pages stay sharp because {@link PdfPageAdapter} re-renders the visible
+ * area as tiles whenever {@link OnViewportChangedListener} fires.
+ */
+public class ZoomableRecyclerView extends RecyclerView {
+
+    public static final float MIN_ZOOM = 1f;
+    public static final float MAX_ZOOM = 4f;
+    private static final float DOUBLE_TAP_ZOOM = 2f;
+
+    /**
+     * Notified when a zoom or pan gesture settles
+     */
+    public interface OnViewportChangedListener {
+        void onViewportChanged(float zoom);
+    }
+
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final Matrix touchMatrix = new Matrix();
+    private OnViewportChangedListener viewportListener;
+
+    private float zoom = MIN_ZOOM;
+    private float panX;
+    private float panY;
+    // True from the moment a second finger lands until the whole gesture ends
+    private boolean multiTouchGesture;
+
+    public ZoomableRecyclerView(@NonNull Context context) {
+        this(context, null);
+    }
+
+    public ZoomableRecyclerView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ZoomableRecyclerView(@NonNull Context context, @Nullable AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoomTo(zoom * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+
+            @Override
+            public void onScaleEnd(ScaleGestureDetector detector) {
+                notifyViewportChanged();
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                // Vertical movement scrolls the list; horizontal movement pans the zoomed content
+                if (zoom > MIN_ZOOM && !multiTouchGesture) {
+                    panX = clamp(panX - distanceX, getWidth() * (1 - zoom), 0);
+                    invalidate();
+                }
+                return false;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                float target = zoom > MIN_ZOOM ? MIN_ZOOM : DOUBLE_TAP_ZOOM;
+                zoomTo(target, e.getX(), e.getY());
+                notifyViewportChanged();
+                return true;
+            }
+        });
+    }
+
+    public void setOnViewportChangedListener(@Nullable OnViewportChangedListener listener) {
+        this.viewportListener = listener;
+    }
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    /**
+     * The part of the layout (unzoomed child coordinates) that is currently on screen
+     */
+    public void getVisibleContentRect(@NonNull Rect out) {
+        out.set((int) Math.floor(-panX / zoom),
+                (int) Math.floor(-panY / zoom),
+                (int) Math.ceil((getWidth() - panX) / zoom),
+                (int) Math.ceil((getHeight() - panY) / zoom));
+    }
+
+    /**
+     * Zoom around a focus point given in screen coordinates, keeping that point still
+     */
+    private void zoomTo(float newZoom, float focusX, float focusY) {
+        newZoom = clamp(newZoom, MIN_ZOOM, MAX_ZOOM);
+        float ratio = newZoom / zoom;
+        panX = clamp(focusX - (focusX - panX) * ratio, getWidth() * (1 - newZoom), 0);
+        panY = clamp(focusY - (focusY - panY) * ratio, getHeight() * (1 - newZoom), 0);
+        zoom = newZoom;
+        invalidate();
+    }
+
+    private void notifyViewportChanged() {
+        if (viewportListener != null) {
+            viewportListener.onViewportChanged(zoom);
+        }
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+        scaleDetector.onTouchEvent(ev);
+        gestureDetector.onTouchEvent(ev);
+
+        int action = ev.getActionMasked();
+        if (ev.getPointerCount() > 1 || scaleDetector.isInProgress()) {
+            if (!multiTouchGesture) {
+                // Pinch started: stop whatever scroll the first finger began
+                multiTouchGesture = true;
+                MotionEvent cancel = MotionEvent.obtain(ev);
+                cancel.setAction(MotionEvent.ACTION_CANCEL);
+                super.dispatchTouchEvent(cancel);
+                cancel.recycle();
+            }
+            return true;
+        }
+        if (multiTouchGesture) {
+            // Swallow the rest of a pinch so the last finger lifting does not fling the list
+            if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+                multiTouchGesture = false;
+            }
+            return true;
+        }
+
+        if (action == MotionEvent.ACTION_UP && zoom > MIN_ZOOM) {
+            // A horizontal pan may have uncovered new area
+            notifyViewportChanged();
+        }
+
+        if (zoom == MIN_ZOOM) {
+            return super.dispatchTouchEvent(ev);
+        }
+        // Map the screen position into layout coordinates
+        touchMatrix.setTranslate(-panX, -panY);
+        touchMatrix.postScale(1f / zoom, 1f / zoom);
+        MotionEvent transformed = MotionEvent.obtain(ev);
+        transformed.transform(touchMatrix);
+        boolean handled = super.dispatchTouchEvent(transformed);
+        transformed.recycle();
+        return handled;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        if (zoom == MIN_ZOOM) {
+            super.dispatchDraw(canvas);
+            return;
+        }
+        canvas.save();
+        canvas.translate(panX, panY);
+        canvas.scale(zoom, zoom);
+        super.dispatchDraw(canvas);
+        canvas.restore();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        panX = clamp(panX, w * (1 - zoom), 0);
+        panY = clamp(panY, h * (1 - zoom), 0);
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
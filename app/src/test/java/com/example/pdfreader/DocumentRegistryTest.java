@@ -0,0 +1,227 @@
+package com.example.pdfreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lookups, stable IDs, the current document and the events fired as documents are inserted,
+ * removed and shift position. Runs on Robolectric for {@link Uri}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DocumentRegistryTest {
+
+    private DocumentRegistry registry;
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        registry = new DocumentRegistry();
+        registry.addListener(new DocumentRegistry.Listener() {
+            @Override
+            public void onDocumentInserted(int position) {
+                events.add("inserted " + position);
+            }
+
+            @Override
+            public void onDocumentRemoved(int position) {
+                events.add("removed " + position);
+            }
+
+            @Override
+            public void onDocumentChanged(int position) {
+                events.add("changed " + position);
+            }
+
+            @Override
+            public void onCurrentChanged(int previous, int current) {
+                events.add("current " + previous + " -> " + current);
+            }
+        });
+    }
+
+    @Test
+    public void insertRenumbersLaterDocumentsAndKeepsTheirIds() {
+        PdfDocument a = add("a");
+        PdfDocument c = add("c");
+        long idA = registry.getStableId(a);
+        long idC = registry.getStableId(c);
+
+        PdfDocument b = document("b");
+        registry.add(1, b);
+
+        assertEquals(0, registry.indexOf(a.getUri()));
+        assertEquals(1, registry.indexOf(b.getUri()));
+        assertEquals(2, registry.indexOf(c.getUri()));
+        assertSame(c, registry.findByUri(c.getUri()));
+        assertEquals(idA, registry.getStableId(a));
+        assertEquals(idC, registry.getStableId(c));
+        assertNotEquals(idA, registry.getStableId(b));
+        assertNotEquals(idC, registry.getStableId(b));
+        assertEquals(Arrays.asList("inserted 0", "inserted 1", "inserted 1"), events);
+    }
+
+    @Test
+    public void removeRenumbersLaterDocumentsAndForgetsTheRemovedOne() {
+        PdfDocument a = add("a");
+        PdfDocument b = add("b");
+        PdfDocument c = add("c");
+        long idC = registry.getStableId(c);
+        events.clear();
+
+        assertSame(b, registry.remove(1));
+
+        assertEquals(2, registry.size());
+        assertEquals(0, registry.indexOf(a.getUri()));
+        assertEquals(-1, registry.indexOf(b.getUri()));
+        assertEquals(1, registry.indexOf(c.getUri()));
+        assertNull(registry.findByUri(b.getUri()));
+        assertEquals(-1, registry.getStableId(b));
+        assertEquals(idC, registry.getStableId(c));
+        assertEquals(Arrays.asList("removed 1"), events);
+    }
+
+    @Test
+    public void reopenedDocumentGetsANewId() {
+        PdfDocument a = add("a");
+        long first = registry.getStableId(a);
+        registry.remove(0);
+        PdfDocument again = add("a");
+        assertNotEquals(first, registry.getStableId(again));
+    }
+
+    @Test
+    public void addingAnOpenUriAgainIsIgnored() {
+        PdfDocument a = add("a");
+        events.clear();
+        registry.add(document("a"));
+        assertEquals(1, registry.size());
+        assertSame(a, registry.get(0));
+        assertEquals(new ArrayList<String>(), events);
+    }
+
+    @Test
+    public void currentIndexFollowsTheShownDocumentAsItShifts() {
+        add("a");
+        PdfDocument b = add("b");
+        registry.setCurrentIndex(1);
+        events.clear();
+
+        // Shifted right by an insert before it
+        registry.add(0, document("z"));
+        assertEquals(2, registry.getCurrentIndex());
+        assertSame(b, registry.getCurrent());
+
+        // And back left by a remove before it
+        registry.remove(0);
+        assertEquals(1, registry.getCurrentIndex());
+        assertSame(b, registry.getCurrent());
+
+        // Neither shift is a change of the shown document
+        assertEquals(Arrays.asList("inserted 0", "removed 0"), events);
+    }
+
+    @Test
+    public void removingTheShownDocumentLeavesNoneShown() {
+        add("a");
+        add("b");
+        registry.setCurrentIndex(1);
+        events.clear();
+
+        registry.remove(1);
+
+        assertEquals(-1, registry.getCurrentIndex());
+        assertNull(registry.getCurrent());
+        assertEquals(Arrays.asList("removed 1", "current -1 -> -1"), events);
+    }
+
+    @Test
+    public void setCurrentIndexReportsPreviousAndCurrent() {
+        add("a");
+        add("b");
+        registry.setCurrentIndex(0);
+        registry.setCurrentIndex(1);
+        // Unchanged and out of range: no event
+        registry.setCurrentIndex(1);
+        registry.setCurrentIndex(5);
+
+        assertEquals(Arrays.asList("inserted 0", "inserted 1", "current -1 -> 0", "current 0 -> 1"), events);
+    }
+
+    @Test
+    public void fingerprintFindsFirstDocumentWithThatContent() {
+        PdfDocument a = add("a");
+        PdfDocument b = add("b");
+        registry.setFingerprint(a, "same");
+        registry.setFingerprint(b, "same");
+        assertSame(a, registry.findByFingerprint("same"));
+
+        // The remaining copy takes over
+        registry.remove(0);
+        assertSame(b, registry.findByFingerprint("same"));
+        assertEquals(0, registry.indexOf(b.getUri()));
+
+        registry.remove(0);
+        assertNull(registry.findByFingerprint("same"));
+    }
+
+    @Test
+    public void changedFingerprintHandsTheOldOneToTheNextCopy() {
+        PdfDocument a = add("a");
+        PdfDocument b = add("b");
+        PdfDocument c = add("c");
+        registry.setFingerprint(a, "same");
+        registry.setFingerprint(b, "other");
+        registry.setFingerprint(c, "same");
+
+        registry.setFingerprint(a, "changed");
+        assertSame(c, registry.findByFingerprint("same"));
+        assertSame(a, registry.findByFingerprint("changed"));
+
+        // Replacing the indexed copy with a model of other content does the same
+        registry.setFingerprint(b, "same");
+        PdfDocument renamed = new PdfDocument(c.getUri(), "Renamed.pdf");
+        renamed.setFingerprint("other");
+        registry.replace(2, renamed);
+        assertSame(b, registry.findByFingerprint("same"));
+        assertSame(renamed, registry.findByFingerprint("other"));
+    }
+
+    @Test
+    public void replaceKeepsPositionAndIdAndReportsAChange() {
+        add("a");
+        PdfDocument b = add("b");
+        long id = registry.getStableId(b);
+        events.clear();
+
+        PdfDocument renamed = new PdfDocument(b.getUri(), "Renamed.pdf");
+        registry.replace(1, renamed);
+
+        assertSame(renamed, registry.findByUri(b.getUri()));
+        assertEquals(1, registry.indexOf(b.getUri()));
+        assertEquals(id, registry.getStableId(renamed));
+        assertEquals(Arrays.asList("changed 1"), events);
+    }
+
+    private PdfDocument add(String name) {
+        PdfDocument document = document(name);
+        registry.add(document);
+        return document;
+    }
+
+    private static PdfDocument document(String name) {
+        return new PdfDocument(Uri.parse("content://test/" + name), name + ".pdf");
+    }
+}
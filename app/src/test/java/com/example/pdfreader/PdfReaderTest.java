@@ -0,0 +1,232 @@
+package com.example.pdfreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Cross-reference tables, cross-reference streams and object streams, on small documents built
+ * here. Each document has an object in its body that the cross-reference data marks free, which
+ * only a reader that followed the cross-reference data ignores: rebuilding the table by scanning,
+ * the reader's fallback, would find it.
+ */
+public class PdfReaderTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void readsClassicCrossReferenceTable() throws IOException {
+        PdfBuilder pdf = new PdfBuilder();
+        writeBody(pdf, true);
+        int xref = pdf.position();
+        StringBuilder table = new StringBuilder("xref\n0 7\n0000000000 65535 f\r\n");
+        for (int number = 1; number < 7; number++) {
+            table.append(number == 5 ? String.format("%010d %05d f\r\n", 0, 1)
+                    : String.format("%010d %05d n\r\n", pdf.offset(number), 0));
+        }
+        pdf.write(table + "trailer\n<< /Size 7 /Root 1 0 R /Info 6 0 R >>\n");
+        pdf.finish(xref);
+
+        PdfReader reader = new PdfReader(pdf.toBuffer());
+        assertDocument(reader);
+    }
+
+    @Test
+    public void readsPredictedCompressedCrossReferenceStream() throws IOException {
+        PdfBuilder pdf = new PdfBuilder();
+        writeBody(pdf, true);
+        int xref = pdf.position();
+        long[][] rows = new long[8][];
+        rows[0] = new long[]{0, 0, 65535};
+        for (int number = 1; number < 7; number++) {
+            rows[number] = number == 5 ? new long[]{0, 0, 1} : new long[]{1, pdf.offset(number), 0};
+        }
+        rows[7] = new long[]{1, xref, 0};
+        pdf.stream(7, "/Type /XRef /Size 8 /W [1 4 2] /Root 1 0 R /Info 6 0 R /Filter /FlateDecode"
+                + " /DecodeParms << /Predictor 12 /Columns 7 >>", deflate(pngUp(xrefRows(rows), 7)));
+        pdf.finish(xref);
+
+        PdfReader reader = new PdfReader(pdf.toBuffer());
+        assertDocument(reader);
+    }
+
+    @Test
+    public void readsObjectsFromObjectStream() throws IOException {
+        PdfBuilder pdf = new PdfBuilder();
+        writeBody(pdf, false);
+        // The pages live in a compressed object stream
+        String page3 = "<< /Type /Page /Parent 2 0 R >>";
+        String page4 = "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 300 400] /Rotate 90 >>";
+        String header = "3 0 4 " + (page3.length() + 1) + " ";
+        byte[] objects = (header + page3 + "\n" + page4).getBytes(StandardCharsets.ISO_8859_1);
+        pdf.stream(8, "/Type /ObjStm /N 2 /First " + header.length() + " /Filter /FlateDecode",
+                deflate(objects));
+
+        int xref = pdf.position();
+        long[][] rows = new long[9][];
+        rows[0] = new long[]{0, 0, 65535};
+        rows[1] = new long[]{1, pdf.offset(1), 0};
+        rows[2] = new long[]{1, pdf.offset(2), 0};
+        rows[3] = new long[]{2, 8, 0};
+        rows[4] = new long[]{2, 8, 1};
+        rows[5] = new long[]{0, 0, 1};
+        rows[6] = new long[]{1, pdf.offset(6), 0};
+        rows[7] = new long[]{1, xref, 0};
+        rows[8] = new long[]{1, pdf.offset(8), 0};
+        pdf.stream(7, "/Type /XRef /Size 9 /W [1 4 2] /Root 1 0 R /Info 6 0 R", xrefRows(rows));
+        pdf.finish(xref);
+
+        PdfReader reader = new PdfReader(pdf.toBuffer());
+        assertDocument(reader);
+        assertTrue(reader.getObject(3) instanceof Map);
+    }
+
+    @Test
+    public void newestSectionWinsAfterIncrementalUpdate() throws IOException {
+        PdfBuilder pdf = new PdfBuilder();
+        writeBody(pdf, true);
+        int firstXref = pdf.position();
+        StringBuilder table = new StringBuilder("xref\n0 7\n0000000000 65535 f\r\n");
+        for (int number = 1; number < 7; number++) {
+            table.append(number == 5 ? String.format("%010d %05d f\r\n", 0, 1)
+                    : String.format("%010d %05d n\r\n", pdf.offset(number), 0));
+        }
+        pdf.write(table + "trailer\n<< /Size 7 /Root 1 0 R /Info 6 0 R >>\n");
+        pdf.write("startxref\n" + firstXref + "\n%%EOF\n");
+
+        // The update replaces the information dictionary
+        pdf.object(6, "<< /Title (Updated) >>");
+        int secondXref = pdf.position();
+        pdf.write(String.format("xref\n6 1\n%010d %05d n\r\n", pdf.offset(6), 0)
+                + "trailer\n<< /Size 7 /Root 1 0 R /Info 6 0 R /Prev " + firstXref + " >>\n");
+        pdf.finish(secondXref);
+
+        PdfReader reader = new PdfReader(pdf.toBuffer());
+        assertEquals("Updated", PdfReader.textString(reader.getInfo().get("Title")));
+        assertEquals(2, reader.getPageCount());
+        assertNull(reader.getObject(5));
+    }
+
+    /**
+     * Two pages, the second rotated with its own media box, a stale object 5 and an information
+     * dictionary. Pages 3 and 4 are only written if withPages, else they go in an object stream.
+     */
+    private static void writeBody(PdfBuilder pdf, boolean withPages) {
+        pdf.object(1, "<< /Type /Catalog /Pages 2 0 R >>");
+        pdf.object(2, "<< /Type /Pages /Kids [3 0 R 4 0 R] /Count 2 /MediaBox [0 0 612 792] >>");
+        if (withPages) {
+            pdf.object(3, "<< /Type /Page /Parent 2 0 R >>");
+            pdf.object(4, "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 300 400] /Rotate 90 >>");
+        }
+        pdf.object(5, "<< /Title (Stale) >>");
+        pdf.object(6, "<< /Title (Test) >>");
+    }
+
+    private static void assertDocument(PdfReader reader) throws IOException {
+        assertEquals(2, reader.getPageCount());
+        // Rotated a quarter turn, so width and height swap
+        PdfReader.Page second = reader.getPage(1);
+        assertEquals(400, second.getWidth(), DELTA);
+        assertEquals(300, second.getHeight(), DELTA);
+        // The media box is inherited from the page tree
+        PdfReader.Page first = reader.getPages().get(0);
+        assertEquals(612, first.getWidth(), DELTA);
+        assertEquals(792, first.getHeight(), DELTA);
+        assertEquals("Test", PdfReader.textString(reader.getInfo().get("Title")));
+        assertNull(reader.getObject(5));
+    }
+
+    /**
+     * Rows of a cross-reference stream with field widths 1, 4 and 2
+     */
+    private static byte[] xrefRows(long[][] rows) {
+        ByteBuffer buffer = ByteBuffer.allocate(rows.length * 7);
+        for (long[] row : rows) {
+            buffer.put((byte) row[0]).putInt((int) row[1]).putShort((short) row[2]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Apply the PNG Up predictor, as writers do before compressing cross-reference streams
+     */
+    private static byte[] pngUp(byte[] data, int columns) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int row = 0; row < data.length; row += columns) {
+            out.write(2);
+            for (int i = 0; i < columns; i++) {
+                int up = row >= columns ? data[row - columns + i] : 0;
+                out.write(data[row + i] - up);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a PDF file body, remembering where each object starts
+     */
+    private static final class PdfBuilder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final Map<Integer, Integer> offsets = new HashMap<>();
+
+        PdfBuilder() {
+            write("%PDF-1.7\n");
+        }
+
+        void object(int number, String body) {
+            offsets.put(number, out.size());
+            write(number + " 0 obj\n" + body + "\nendobj\n");
+        }
+
+        void stream(int number, String dictionary, byte[] data) {
+            offsets.put(number, out.size());
+            write(number + " 0 obj\n<< " + dictionary + " /Length " + data.length + " >>\nstream\n");
+            out.write(data, 0, data.length);
+            write("\nendstream\nendobj\n");
+        }
+
+        void finish(int xrefOffset) {
+            write("startxref\n" + xrefOffset + "\n%%EOF\n");
+        }
+
+        int offset(int number) {
+            return offsets.get(number);
+        }
+
+        int position() {
+            return out.size();
+        }
+
+        void write(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(out.toByteArray());
+        }
+    }
+}
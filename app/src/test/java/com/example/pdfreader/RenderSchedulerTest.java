@@ -0,0 +1,209 @@
+package com.example.pdfreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-worker RenderScheduler: a job holds the worker while others are queued, so what runs
+ * next is decided by the queue alone. Callbacks run on the worker thread.
+ */
+public class RenderSchedulerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private RenderScheduler<Object> scheduler;
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        scheduler = new RenderScheduler<>("Test", Collections.singletonList(new Object()), Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown(null);
+    }
+
+    @Test
+    public void runsMostUrgentPriorityFirstAndNewestWithinPriority() throws Exception {
+        CountDownLatch release = occupyWorker();
+        CountDownLatch done = new CountDownLatch(4);
+        submit("prefetch", RenderScheduler.PRIORITY_PREFETCH, done);
+        submit("visible-old", RenderScheduler.PRIORITY_VISIBLE, done);
+        submit("visible-new", RenderScheduler.PRIORITY_VISIBLE, done);
+        submit("preview", RenderScheduler.PRIORITY_PREVIEW, done);
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("blocker", "preview", "visible-new", "visible-old", "prefetch"), ran);
+    }
+
+    @Test
+    public void requestForPendingPageJoinsItsJobAtTheMoreUrgentPriority() throws Exception {
+        CountDownLatch release = occupyWorker();
+        CountDownLatch done = new CountDownLatch(3);
+        submit("other", RenderScheduler.PRIORITY_VISIBLE, done);
+        submit("page", RenderScheduler.PRIORITY_PREFETCH, done);
+        // Same key as "page": merged, and now ahead of "other"
+        submit("page", RenderScheduler.PRIORITY_PREVIEW, done);
+        assertEquals(2, scheduler.getQueueDepth());
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("blocker", "page", "other"), ran);
+        assertEquals(1, scheduler.getMergedCount());
+    }
+
+    @Test
+    public void requestForRunningPageJoinsItsJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(2);
+        RenderScheduler.RenderTask<Object> task = resource -> {
+            renders.incrementAndGet();
+            started.countDown();
+            release.await();
+        };
+        scheduler.submit(key("page"), RenderScheduler.PRIORITY_VISIBLE, task, callback(done));
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        RenderScheduler.Request joined = scheduler.submit(key("page"), RenderScheduler.PRIORITY_VISIBLE,
+                task, callback(done));
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, renders.get());
+        assertEquals(1, scheduler.getMergedCount());
+        assertTrue(joined.isDone());
+    }
+
+    @Test
+    public void cancelledJobIsDroppedBeforeItStarts() throws Exception {
+        CountDownLatch release = occupyWorker();
+        CountDownLatch cancelledDone = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        RenderScheduler.Request cancelled = submit("cancelled", RenderScheduler.PRIORITY_PREVIEW, cancelledDone);
+        submit("kept", RenderScheduler.PRIORITY_PREFETCH, done);
+        cancelled.cancel();
+        assertEquals(1, scheduler.getQueueDepth());
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("blocker", "kept"), ran);
+        assertEquals(1, scheduler.getDroppedCount());
+        assertEquals(1, cancelledDone.getCount());
+    }
+
+    @Test
+    public void jobKeepsRunningForRemainingRequestsWhenOneIsCancelled() throws Exception {
+        CountDownLatch release = occupyWorker();
+        CountDownLatch cancelledDone = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        RenderScheduler.Request cancelled = submit("page", RenderScheduler.PRIORITY_VISIBLE, cancelledDone);
+        submit("page", RenderScheduler.PRIORITY_VISIBLE, done);
+        cancelled.cancel();
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("blocker", "page"), ran);
+        assertEquals(0, scheduler.getDroppedCount());
+        // Both callbacks are handled in one pass, the cancelled one first and skipped
+        assertEquals(1, cancelledDone.getCount());
+    }
+
+    @Test
+    public void requestWithoutCallbackIsDoneWhenItsJobFinishes() throws Exception {
+        CountDownLatch release = occupyWorker();
+        RenderScheduler.Request prefetch = scheduler.submit(key("prefetch"), RenderScheduler.PRIORITY_PREFETCH,
+                resource -> ran.add("prefetch"), null);
+        // Runs after the prefetch on the only worker
+        CountDownLatch done = new CountDownLatch(1);
+        submit("background", RenderScheduler.PRIORITY_BACKGROUND, done);
+        assertFalse(prefetch.isDone());
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("blocker", "prefetch", "background"), ran);
+        assertTrue(prefetch.isDone());
+    }
+
+    @Test
+    public void errorFailsTheJobAndKeepsTheWorker() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+        scheduler.submit(key("page"), RenderScheduler.PRIORITY_VISIBLE, resource -> {
+            throw new OutOfMemoryError("test");
+        }, new RenderScheduler.Callback() {
+            @Override
+            public void onRenderFinished() {
+                throw new AssertionError("Finished despite the error");
+            }
+
+            @Override
+            public void onRenderFailed(@NonNull Exception e) {
+                failures.add(e);
+                failed.countDown();
+            }
+        });
+        assertTrue(failed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(failures.get(0).getCause() instanceof OutOfMemoryError);
+
+        // The same page renders again, on the same worker
+        CountDownLatch done = new CountDownLatch(1);
+        submit("page", RenderScheduler.PRIORITY_VISIBLE, done);
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("page"), ran);
+    }
+
+    /**
+     * Start a job that holds the only worker until the returned latch is released
+     */
+    private CountDownLatch occupyWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(key("blocker"), RenderScheduler.PRIORITY_PREVIEW, resource -> {
+            ran.add("blocker");
+            started.countDown();
+            release.await();
+        }, null);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private RenderScheduler.Request submit(String name, int priority, CountDownLatch done) {
+        return scheduler.submit(key(name), priority, resource -> ran.add(name), callback(done));
+    }
+
+    private static PageKey key(String name) {
+        return new PageKey(name, 0, 1f);
+    }
+
+    private static RenderScheduler.Callback callback(CountDownLatch done) {
+        return new RenderScheduler.Callback() {
+            @Override
+            public void onRenderFinished() {
+                done.countDown();
+            }
+
+            @Override
+            public void onRenderFailed(@NonNull Exception e) {
+                throw new AssertionError(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.pdfreader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reloading the journal from its file: after clean appends, after a crash mid-append, and after
+ * compaction. Writes are made directly instead of after the throttling delay.
+ */
+public class SessionJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.newFolder(), "session.journal");
+    }
+
+    @Test
+    public void reloadsAppendedDocumentsAndTabs() {
+        SessionJournal journal = new SessionJournal(file);
+        journal.recordOpened(uri(1), "One.pdf");
+        journal.recordOpened(uri(2), "Two.pdf");
+        journal.recordPageCount(uri(1), 40);
+        journal.recordPosition(uri(1), 12, 345);
+        journal.setTabs(Arrays.asList(uri(1), uri(2)), 1);
+        journal.writePending();
+
+        SessionJournal reloaded = new SessionJournal(file);
+        SessionJournal.DocumentState state = reloaded.getDocument(uri(1));
+        assertNotNull(state);
+        assertEquals("One.pdf", state.displayName);
+        assertEquals(40, state.pageCount);
+        assertEquals(12, state.page);
+        assertEquals(345, state.scrollOffset);
+        assertEquals(Arrays.asList(uri(1), uri(2)), reloaded.getTabs());
+        assertEquals(1, reloaded.getCurrentTab());
+        assertNull(reloaded.getDocument(uri(3)));
+    }
+
+    @Test
+    public void dropsTornTailAndKeepsEverythingBefore() throws IOException {
+        SessionJournal journal = new SessionJournal(file);
+        journal.recordOpened(uri(1), "One.pdf");
+        journal.recordPosition(uri(1), 5, 0);
+        journal.writePending();
+        long intact = file.length();
+        journal.recordPosition(uri(1), 9, 0);
+        journal.writePending();
+
+        // A crash in the middle of the second append
+        truncate(file.length() - 3);
+
+        SessionJournal reloaded = new SessionJournal(file);
+        assertEquals(5, reloaded.getDocument(uri(1)).page);
+        assertEquals(intact, file.length());
+
+        // Appending goes on after the good records
+        reloaded.recordPosition(uri(1), 7, 0);
+        reloaded.writePending();
+        assertEquals(7, new SessionJournal(file).getDocument(uri(1)).page);
+    }
+
+    @Test
+    public void dropsTailTooShortForARecordHeader() throws IOException {
+        SessionJournal journal = new SessionJournal(file);
+        journal.recordOpened(uri(1), "One.pdf");
+        journal.writePending();
+        long intact = file.length();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(intact);
+            out.write(new byte[]{0, 0});
+        }
+
+        SessionJournal reloaded = new SessionJournal(file);
+        assertNotNull(reloaded.getDocument(uri(1)));
+        assertEquals(intact, file.length());
+    }
+
+    @Test
+    public void dropsRecordWithBadChecksum() throws IOException {
+        SessionJournal journal = new SessionJournal(file);
+        journal.recordOpened(uri(1), "One.pdf");
+        journal.writePending();
+        long intact = file.length();
+        journal.recordOpened(uri(2), "Two.pdf");
+        journal.writePending();
+
+        // Flip a byte of the last record's checksum
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            long at = out.length() - 1;
+            out.seek(at);
+            int value = out.read();
+            out.seek(at);
+            out.write(value ^ 0xff);
+        }
+
+        SessionJournal reloaded = new SessionJournal(file);
+        assertNotNull(reloaded.getDocument(uri(1)));
+        assertNull(reloaded.getDocument(uri(2)));
+        assertEquals(intact, file.length());
+    }
+
+    @Test
+    public void compactionKeepsLatestStateOfEveryDocument() {
+        SessionJournal journal = new SessionJournal(file);
+        int documents = 100;
+        for (int i = 0; i < documents; i++) {
+            journal.recordOpened(uri(i), "Document " + i + ".pdf");
+        }
+        journal.setTabs(Arrays.asList(uri(3), uri(50)), 0);
+        journal.writePending();
+        // One record per append, far more than a compaction allows
+        int appends = 600;
+        for (int i = 0; i < appends; i++) {
+            journal.recordPosition(uri(i % documents), i, i % 7);
+            journal.writePending();
+        }
+        // Every record takes more than 100 bytes
+        long uncompacted = (long) appends * 100;
+        assertTrue("Journal was not compacted: " + file.length(), file.length() < uncompacted);
+
+        for (SessionJournal check : Arrays.asList(journal, new SessionJournal(file))) {
+            for (int i = 0; i < documents; i++) {
+                SessionJournal.DocumentState state = check.getDocument(uri(i));
+                assertNotNull(state);
+                assertEquals("Document " + i + ".pdf", state.displayName);
+                // The last append for document i was the largest index with that remainder
+                int last = appends - documents + i;
+                assertEquals(last, state.page);
+                assertEquals(last % 7, state.scrollOffset);
+            }
+            assertEquals(Arrays.asList(uri(3), uri(50)), check.getTabs());
+            assertEquals(0, check.getCurrentTab());
+        }
+    }
+
+    @Test
+    public void reloadsTabsLongerThanADocumentRecord() {
+        SessionJournal journal = new SessionJournal(file);
+        List<String> tabs = new ArrayList<>();
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            padding.append('x');
+        }
+        for (int i = 0; i < 1000; i++) {
+            tabs.add(uri(i) + "/" + padding);
+        }
+        journal.setTabs(tabs, 999);
+        journal.recordOpened(uri(1), "One.pdf");
+        journal.writePending();
+
+        SessionJournal reloaded = new SessionJournal(file);
+        assertEquals(tabs, reloaded.getTabs());
+        assertEquals(999, reloaded.getCurrentTab());
+        assertNotNull(reloaded.getDocument(uri(1)));
+    }
+
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(length);
+        }
+    }
+
+    private static String uri(int document) {
+        return "content://com.android.providers.downloads.documents/document/" + document;
+    }
+}
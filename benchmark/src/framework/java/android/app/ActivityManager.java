@@ -0,0 +1,15 @@
+package android.app;
+
+/**
+ * JVM stand-in: a mid-range device with a 256 MB heap
+ */
+public class ActivityManager {
+
+    public int getMemoryClass() {
+        return 256;
+    }
+
+    public boolean isLowRamDevice() {
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package android.content;
+
+import android.app.ActivityManager;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for the few Context calls of the benchmarked classes, rooted at a directory
+ */
+public class Context {
+
+    public static final String ACTIVITY_SERVICE = "activity";
+
+    private final File directory;
+
+    public Context(File directory) {
+        this.directory = directory;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public Object getSystemService(String name) {
+        return ACTIVITY_SERVICE.equals(name) ? new ActivityManager() : null;
+    }
+
+    public File getFilesDir() {
+        return new File(directory, "files");
+    }
+
+    public File getCacheDir() {
+        return new File(directory, "cache");
+    }
+}
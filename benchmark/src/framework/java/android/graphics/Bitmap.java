@@ -0,0 +1,68 @@
+package android.graphics;
+
+/**
+ * JVM stand-in that keeps a bitmap's size and config but no pixels, so the caches' bookkeeping
+ * is measured without the cost of allocating and clearing pixel memory
+ */
+public final class Bitmap {
+
+    public enum Config {
+        ALPHA_8(1), RGB_565(2), ARGB_8888(4);
+
+        final int bytesPerPixel;
+
+        Config(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final Config config;
+    private boolean recycled;
+
+    private Bitmap(int width, int height, Config config) {
+        this.width = width;
+        this.height = height;
+        this.config = config;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height, config);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public int getByteCount() {
+        return width * height * config.bytesPerPixel;
+    }
+
+    public int getAllocationByteCount() {
+        return getByteCount();
+    }
+
+    public boolean isMutable() {
+        return true;
+    }
+
+    public boolean isRecycled() {
+        return recycled;
+    }
+
+    public void recycle() {
+        recycled = true;
+    }
+
+    public void eraseColor(int color) {
+    }
+}
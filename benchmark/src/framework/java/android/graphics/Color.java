@@ -0,0 +1,8 @@
+package android.graphics;
+
+/**
+ * JVM stand-in
+ */
+public class Color {
+    public static final int WHITE = 0xFFFFFFFF;
+}
@@ -0,0 +1,24 @@
+package android.os;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * JVM stand-in; the benchmarks hand documents to PdfReader as buffers, never as descriptors
+ */
+public class ParcelFileDescriptor {
+
+    public ParcelFileDescriptor dup() throws IOException {
+        throw new UnsupportedOperationException("Not available on the JVM");
+    }
+
+    public void close() throws IOException {
+    }
+
+    public static class AutoCloseInputStream extends FileInputStream {
+        public AutoCloseInputStream(ParcelFileDescriptor fileDescriptor) throws FileNotFoundException {
+            super((String) null);
+        }
+    }
+}
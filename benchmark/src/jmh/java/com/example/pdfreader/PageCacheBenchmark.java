@@ -0,0 +1,91 @@
+package com.example.pdfreader;
+
+import android.graphics.Bitmap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Page cache and bitmap pool bookkeeping while scrolling: lookups, pinning, eviction and reuse
+ * of evicted bitmaps. Bitmaps carry no pixels here, so only the bookkeeping is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PageCacheBenchmark {
+
+    private static final String DOCUMENT = "content://benchmark/document.pdf";
+    private static final int PAGE_COUNT = 2000;
+    // A letter page at 2x: about 7.4 MB per page
+    private static final int PAGE_WIDTH = 1224;
+    private static final int PAGE_HEIGHT = 1584;
+    private static final float SCALE = 2f;
+    // Pages on screen at once, pinned
+    private static final int VISIBLE_PAGES = 3;
+    // Pages scrolled back and forth over in the re-reading case
+    private static final int REREAD_WINDOW = 12;
+
+    @Param({"64", "256"})
+    public int cacheMegabytes;
+
+    private PageBitmapCache cache;
+    private BitmapPool pool;
+    private final PageKey[] visible = new PageKey[VISIBLE_PAGES];
+    private int step;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        pool = new BitmapPool(32L * 1024 * 1024);
+        cache = new PageBitmapCache((long) cacheMegabytes * 1024 * 1024, pool);
+        for (int i = 0; i < VISIBLE_PAGES; i++) {
+            visible[i] = null;
+        }
+        step = 0;
+    }
+
+    /**
+     * Reading straight through: every page is a miss that evicts the oldest page
+     */
+    @Benchmark
+    public Bitmap scrollForward() {
+        return bind(step++ % PAGE_COUNT);
+    }
+
+    /**
+     * Going back and forth over a few pages: mostly hits once the window is cached
+     */
+    @Benchmark
+    public Bitmap scrollBackAndForth() {
+        int position = step++ % (2 * REREAD_WINDOW);
+        return bind(position < REREAD_WINDOW ? position : 2 * REREAD_WINDOW - 1 - position);
+    }
+
+    /**
+     * What the page adapter does on bind: show the cached page or render into a pooled bitmap,
+     * and unpin the page that scrolled off
+     */
+    private Bitmap bind(int pageIndex) {
+        PageKey key = new PageKey(DOCUMENT, pageIndex, SCALE);
+        Bitmap bitmap = cache.acquire(key);
+        if (bitmap == null) {
+            cache.put(key, pool.acquire(PAGE_WIDTH, PAGE_HEIGHT));
+            bitmap = cache.pin(key);
+        }
+
+        int slot = step % VISIBLE_PAGES;
+        if (visible[slot] != null) {
+            cache.release(visible[slot]);
+        }
+        visible[slot] = key;
+        return bitmap;
+    }
+}
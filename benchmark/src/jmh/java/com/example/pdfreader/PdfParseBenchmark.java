@@ -0,0 +1,134 @@
+package com.example.pdfreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDF structure parsing on a generated document: reading the cross-reference table and trailer,
+ * the page count, one page found by descending the page tree, and the whole page tree; plus
+ * opening a document whose cross-reference table is broken and must be rebuilt by scanning.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PdfParseBenchmark {
+
+    // Kids per page tree node, as common writers do
+    private static final int FANOUT = 16;
+
+    @Param({"10", "1000"})
+    public int pageCount;
+
+    private ByteBuffer document;
+    private ByteBuffer brokenDocument;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] bytes = generate(pageCount);
+        document = ByteBuffer.wrap(bytes);
+        // Point startxref past the end, as a truncated download would
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        String broken = text.substring(0, text.lastIndexOf("startxref")) + "startxref\n999999999\n%%EOF\n";
+        brokenDocument = ByteBuffer.wrap(broken.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Benchmark
+    public int openAndCount() throws IOException {
+        return new PdfReader(document.duplicate()).getPageCount();
+    }
+
+    @Benchmark
+    public float openAndFindLastPage() throws IOException {
+        return new PdfReader(document.duplicate()).getPage(pageCount - 1).getWidth();
+    }
+
+    @Benchmark
+    public int openAndWalkPages() throws IOException {
+        return new PdfReader(document.duplicate()).getPages().size();
+    }
+
+    @Benchmark
+    public int openBroken() throws IOException {
+        return new PdfReader(brokenDocument.duplicate()).getPageCount();
+    }
+
+    /**
+     * A document with a balanced page tree, a cross-reference table and no page content
+     */
+    static byte[] generate(int pages) {
+        // Object 1 is the catalog, 2 the root of the page tree, then pages and inner nodes
+        StringBuilder out = new StringBuilder("%PDF-1.7\n%\u00e2\u00e3\u00cf\u00d3\n");
+        // Every inner node has at least two kids, so there are fewer of them than pages
+        int[] offsets = new int[2 + 2 * pages];
+        int[] nextNumber = {3};
+
+        offsets[1] = out.length();
+        out.append("1 0 obj\n<< /Type /Catalog /Pages 2 0 R >>\nendobj\n");
+        writeNode(out, offsets, nextNumber, 2, 0, 0, pages);
+
+        int size = nextNumber[0];
+        int xref = out.length();
+        out.append("xref\n0 ").append(size).append('\n');
+        out.append("0000000000 65535 f \n");
+        for (int number = 1; number < size; number++) {
+            out.append(String.format("%010d 00000 n \n", offsets[number]));
+        }
+        out.append("trailer\n<< /Size ").append(size).append(" /Root 1 0 R >>\n");
+        out.append("startxref\n").append(xref).append("\n%%EOF\n");
+        return out.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Write the page tree node for pages [first, first + count) as object number, then its kids
+     */
+    private static void writeNode(StringBuilder out, int[] offsets, int[] nextNumber, int number,
+                                  int parent, int first, int count) {
+        int kidCount = Math.min(FANOUT, count);
+        int perKid = (count + kidCount - 1) / kidCount;
+        int[] kids = new int[kidCount];
+        int[] kidFirst = new int[kidCount];
+        int[] kidSize = new int[kidCount];
+        int n = 0;
+        for (int start = first; start < first + count; start += perKid) {
+            kids[n] = nextNumber[0]++;
+            kidFirst[n] = start;
+            kidSize[n] = Math.min(perKid, first + count - start);
+            n++;
+        }
+
+        offsets[number] = out.length();
+        out.append(number).append(" 0 obj\n<< /Type /Pages");
+        if (parent != 0) {
+            out.append(" /Parent ").append(parent).append(" 0 R");
+        } else {
+            out.append(" /MediaBox [0 0 612 792]");
+        }
+        out.append(" /Count ").append(count).append(" /Kids [");
+        for (int i = 0; i < n; i++) {
+            out.append(kids[i]).append(" 0 R ");
+        }
+        out.append("] >>\nendobj\n");
+
+        for (int i = 0; i < n; i++) {
+            if (kidSize[i] == 1) {
+                offsets[kids[i]] = out.length();
+                out.append(kids[i]).append(" 0 obj\n<< /Type /Page /Parent ").append(number)
+                        .append(" 0 R >>\nendobj\n");
+            } else {
+                writeNode(out, offsets, nextNumber, kids[i], number, kidFirst[i], kidSize[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.pdfreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render queue scheduling and cancellation. The queue-only case has no workers, so it measures
+ * submitting, merging, reprioritizing and cancelling alone; the end-to-end case adds the hand-off
+ * to two worker threads and the callbacks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderSchedulerBenchmark {
+
+    private static final String DOCUMENT = "content://benchmark/document.pdf";
+
+    @Param({"16", "256"})
+    public int jobs;
+
+    private RenderScheduler<Object> queueOnly;
+    private RenderScheduler<Object> withWorkers;
+    private PageKey[] keys;
+    private RenderScheduler.Request[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        queueOnly = new RenderScheduler<>("bench-queue", Collections.emptyList(), Runnable::run);
+        withWorkers = new RenderScheduler<>("bench-render", Arrays.asList(new Object(), new Object()),
+                Runnable::run);
+        keys = new PageKey[jobs];
+        for (int i = 0; i < jobs; i++) {
+            keys[i] = new PageKey(DOCUMENT, i, 2f);
+        }
+        requests = new RenderScheduler.Request[jobs + jobs / 4];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        queueOnly.shutdown(null);
+        withWorkers.shutdown(null);
+    }
+
+    /**
+     * A fling: every page flung past is queued for prefetch, the pages it settles on are asked
+     * for again as visible, then the holders are recycled and everything is cancelled
+     */
+    @Benchmark
+    public int flingSubmitAndCancel() {
+        int n = 0;
+        for (PageKey key : keys) {
+            requests[n++] = queueOnly.submit(key, RenderScheduler.PRIORITY_PREFETCH, resource -> { }, null);
+        }
+        for (int i = jobs - jobs / 4; i < jobs; i++) {
+            requests[n++] = queueOnly.submit(keys[i], RenderScheduler.PRIORITY_VISIBLE, resource -> { }, null);
+        }
+        int depth = queueOnly.getQueueDepth();
+        for (int i = 0; i < n; i++) {
+            requests[i].cancel();
+        }
+        return depth;
+    }
+
+    /**
+     * Submit no-op jobs to two workers and wait for every callback
+     */
+    @Benchmark
+    public void submitAndComplete() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(jobs);
+        RenderScheduler.Callback callback = new RenderScheduler.Callback() {
+            @Override
+            public void onRenderFinished() {
+                done.countDown();
+            }
+
+            @Override
+            public void onRenderFailed(Exception e) {
+                done.countDown();
+            }
+        };
+        for (PageKey key : keys) {
+            withWorkers.submit(key, RenderScheduler.PRIORITY_VISIBLE, resource -> { }, callback);
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.pdfreader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session store serialization: loading the journal and looking up one document at startup, and
+ * appending a scroll position, including the compactions that appending brings about
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SessionJournalBenchmark {
+
+    @Param({"100", "5000"})
+    public int documentCount;
+
+    private File directory;
+    private File file;
+    private SessionJournal journal;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark").toFile();
+        file = new File(directory, "session.journal");
+        journal = new SessionJournal(file);
+        for (int i = 0; i < documentCount; i++) {
+            journal.recordOpened(uri(i), "Document " + i + ".pdf");
+            journal.recordPageCount(uri(i), 100 + i % 400);
+            journal.recordPosition(uri(i), i % 100, i % 700);
+            if (i % 64 == 63) {
+                journal.writePending();
+            }
+        }
+        journal.setTabs(Arrays.asList(uri(0), uri(documentCount / 2), uri(documentCount - 1)), 1);
+        journal.writePending();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Startup: open the journal, read the tabs and the state of the active one
+     */
+    @Benchmark
+    public SessionJournal.DocumentState loadAndLookup() {
+        SessionJournal loaded = new SessionJournal(file);
+        return loaded.getDocument(loaded.getTabs().get(loaded.getCurrentTab()));
+    }
+
+    /**
+     * Scrolling: record a new position and append it at once instead of after the throttle
+     */
+    @Benchmark
+    public void recordAndAppend() {
+        int document = next++ % documentCount;
+        journal.recordPosition(uri(document), next % 100, next % 700);
+        journal.writePending();
+    }
+
+    private static String uri(int document) {
+        return "content://com.android.providers.downloads.documents/document/" + document;
+    }
+}
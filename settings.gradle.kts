@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "PDFReader"
 include(":app")
+include(":benchmark")